@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * A tool to evaluate the beam search against the exact search.
+ *
+ * <p>
+ * This tool tokenizes each line of the input texts with and without the beam,
+ * and reports how much the segmentations agree and how fast the searches are.
+ */
+public class BeamSearchEvaluator {
+
+    static class Result {
+        int sentences;
+        int identicalSentences;
+        long exactBoundaries;
+        long beamBoundaries;
+        long matchedBoundaries;
+        long exactNanos;
+        long beamNanos;
+        long prunedNodes;
+        long fallbacks;
+
+        double getSentenceAgreement() {
+            return ratio(identicalSentences, sentences);
+        }
+
+        double getPrecision() {
+            return ratio(matchedBoundaries, beamBoundaries);
+        }
+
+        double getRecall() {
+            return ratio(matchedBoundaries, exactBoundaries);
+        }
+
+        double getFMeasure() {
+            double precision = getPrecision();
+            double recall = getRecall();
+            return (precision + recall == 0.0) ? 0.0 : 2 * precision * recall / (precision + recall);
+        }
+
+        void print(PrintStream output) {
+            output.printf("sentences:\t%d%n", sentences);
+            output.printf("identical sentences:\t%d (%.2f%%)%n", identicalSentences, getSentenceAgreement() * 100);
+            output.printf("boundary precision:\t%.4f%n", getPrecision());
+            output.printf("boundary recall:\t%.4f%n", getRecall());
+            output.printf("boundary F-measure:\t%.4f%n", getFMeasure());
+            output.printf("pruned nodes:\t%d%n", prunedNodes);
+            output.printf("fallbacks to exact search:\t%d%n", fallbacks);
+            output.printf("exact search:\t%d ms%n", exactNanos / 1000000);
+            output.printf("beam search:\t%d ms%n", beamNanos / 1000000);
+        }
+
+        private static double ratio(long numerator, long denominator) {
+            return (denominator == 0) ? 1.0 : (double) numerator / denominator;
+        }
+    }
+
+    static void evaluate(Tokenizer exact, Tokenizer beam, Tokenizer.SplitMode mode, InputStream input, Result result)
+            throws IOException {
+
+        try (InputStreamReader inputReader = new InputStreamReader(input);
+                BufferedReader reader = new BufferedReader(inputReader)) {
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                long prunedNodes = beam.getPrunedNodeCount();
+                long fallbacks = getFallbackCount(beam);
+
+                long start = System.nanoTime();
+                List<Morpheme> expected = exact.tokenize(mode, line);
+                long middle = System.nanoTime();
+                List<Morpheme> actual = beam.tokenize(mode, line);
+                long end = System.nanoTime();
+
+                result.exactNanos += middle - start;
+                result.beamNanos += end - middle;
+                result.prunedNodes += beam.getPrunedNodeCount() - prunedNodes;
+                result.fallbacks += getFallbackCount(beam) - fallbacks;
+                compare(expected, actual, result);
+            }
+        }
+    }
+
+    static void compare(List<Morpheme> expected, List<Morpheme> actual, Result result) {
+        result.sentences++;
+        result.exactBoundaries += expected.size();
+        result.beamBoundaries += actual.size();
+        boolean isIdentical = expected.size() == actual.size();
+        for (int i = 0, j = 0; i < expected.size() && j < actual.size();) {
+            int expectedEnd = expected.get(i).end();
+            int actualEnd = actual.get(j).end();
+            if (expectedEnd == actualEnd) {
+                result.matchedBoundaries++;
+                i++;
+                j++;
+            } else if (expectedEnd < actualEnd) {
+                isIdentical = false;
+                i++;
+            } else {
+                isIdentical = false;
+                j++;
+            }
+        }
+        if (isIdentical) {
+            result.identicalSentences++;
+        }
+    }
+
+    private static long getFallbackCount(Tokenizer tokenizer) {
+        return (tokenizer instanceof JapaneseTokenizer) ? ((JapaneseTokenizer) tokenizer).getBeamFallbackCount() : 0;
+    }
+
+    /**
+     * Evaluates the beam search with the input texts.
+     *
+     * <p>
+     * Usage:
+     * {@code BeamSearchEvaluator [-r file] [-m A|B|C] [-w width] [-t threshold] [file ...]}
+     * <p>
+     * The following are the options.
+     * <dl>
+     * <dt>{@code -r file}</dt>
+     * <dd>the settings file in JSON format (overrides -s)</dd>
+     * <dt>{@code -s string}</dt>
+     * <dd>an additional settings string in JSON format (overrides -r)</dd>
+     * <dt>{@code -p directory}</dt>
+     * <dd>the root directory of resources</dd>
+     * <dt>{@code -m {A|B|C}}</dt>
+     * <dd>the mode of splitting</dd>
+     * <dt>{@code -w width}</dt>
+     * <dd>the width of the beam (overrides {@code beamWidth} in the settings)</dd>
+     * <dt>{@code -t threshold}</dt>
+     * <dd>the threshold of the beam (overrides {@code beamThreshold} in the
+     * settings), or a negative value for no limit</dd>
+     * <dt>{@code -h}</dt>
+     * <dd>show the usage</dd>
+     * </dl>
+     * <p>
+     * The {@code file} operands are processed in command-line order. If
+     * {@code file} is absent, this tool reads from the standard input.
+     *
+     * <p>
+     * This tool processes a line as a sentence, and writes the report to the
+     * standard output.
+     *
+     * @param args
+     *            the options and the input filenames
+     * @throws IOException
+     *             if IO is failed
+     */
+    public static void main(String[] args) throws IOException {
+        SudachiCommandLine.Options options = new SudachiCommandLine.Options();
+        Integer width = null;
+        Integer threshold = null;
+
+        int i = 0;
+        for (i = 0; i < args.length; i++) {
+            int last = options.parse(args, i);
+            if (last >= 0) {
+                i = last;
+            } else if (args[i].equals("-w") && i + 1 < args.length) {
+                width = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                threshold = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-h")) {
+                System.out.print(
+                        "usage: BeamSearchEvaluator [-r file] [-m A|B|C] [-w width] [-t threshold] [file ...]\n");
+                System.out.print(SudachiCommandLine.Options.USAGE);
+                System.out.print("\t-w width\twidth of the beam\n");
+                System.out.print("\t-t threshold\tthreshold of the beam, negative for no limit\n");
+                return;
+            } else {
+                break;
+            }
+        }
+
+        try (Dictionary dict = options.createDictionary()) {
+            Tokenizer exact = dict.create();
+            exact.setBeam(0, -1);
+            Tokenizer beam = dict.create();
+            if (width != null || threshold != null) {
+                beam.setBeam(width == null ? 0 : width, threshold == null ? -1 : threshold);
+            }
+
+            Result result = new Result();
+            if (i < args.length) {
+                for (; i < args.length; i++) {
+                    try (FileInputStream input = new FileInputStream(args[i])) {
+                        evaluate(exact, beam, options.mode, input, result);
+                    }
+                }
+            } else {
+                evaluate(exact, beam, options.mode, System.in, result);
+            }
+            result.print(System.out);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The compiled rules of {@link DefaultInputTextPlugin}.
+ *
+ * <p>
+ * The replacement rules are compiled into a trie of characters for the longest
+ * match. The lower casing and the NFKC normalization are precomputed for all
+ * the characters when the rules are compiled. The table of the Basic
+ * Multilingual Plane shares one entry for the blocks of 256 characters which
+ * are left unchanged, and the supplementary characters which are changed are
+ * kept in a sorted array. Looking up a character does not allocate anything.
+ */
+final class CharacterNormalizer {
+
+    static final int NEED_MORE = -2;
+
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int BMP_SIZE = 0x10000;
+
+    private static final String[] UNCHANGED_BLOCK = new String[BLOCK_SIZE];
+
+    private final String[][] bmpTable = new String[BMP_SIZE >> BLOCK_BITS][];
+    // the supplementary characters which are changed, in ascending order
+    private final int[] supplementaryCodePoints;
+    private final String[] supplementaryForms;
+
+    private final long[] firstChars = new long[BMP_SIZE >> 6];
+    private final char[][] labels;
+    private final int[][] children;
+    private final int[] keyLengths;
+    private final String[] replacements;
+
+    CharacterNormalizer(Map<String, String> replaceCharMap, Set<Integer> ignoreNormalizeSet) {
+        List<TreeMap<Character, Integer>> nodes = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        nodes.add(new TreeMap<>());
+        values.add(null);
+        depths.add(0);
+        for (Map.Entry<String, String> entry : replaceCharMap.entrySet()) {
+            String key = entry.getKey();
+            firstChars[key.charAt(0) >> 6] |= 1L << key.charAt(0);
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                Integer child = nodes.get(node).get(key.charAt(i));
+                if (child == null) {
+                    child = nodes.size();
+                    nodes.get(node).put(key.charAt(i), child);
+                    nodes.add(new TreeMap<>());
+                    values.add(null);
+                    depths.add(i + 1);
+                }
+                node = child;
+            }
+            values.set(node, entry.getValue());
+        }
+
+        int size = nodes.size();
+        labels = new char[size][];
+        children = new int[size][];
+        keyLengths = new int[size];
+        replacements = values.toArray(new String[size]);
+        for (int n = 0; n < size; n++) {
+            TreeMap<Character, Integer> node = nodes.get(n);
+            labels[n] = new char[node.size()];
+            children[n] = new int[node.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : node.entrySet()) {
+                labels[n][i] = child.getKey();
+                children[n][i] = child.getValue();
+                i++;
+            }
+            keyLengths[n] = depths.get(n);
+        }
+
+        for (int blockId = 0; blockId < bmpTable.length; blockId++) {
+            bmpTable[blockId] = computeBlock(blockId, ignoreNormalizeSet);
+        }
+        List<Integer> codePoints = new ArrayList<>();
+        List<String> forms = new ArrayList<>();
+        for (int codePoint = BMP_SIZE; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+            // the unassigned characters are left unchanged by both
+            if (!Character.isDefined(codePoint)) {
+                continue;
+            }
+            String replace = computeNormalizedForm(codePoint, ignoreNormalizeSet);
+            if (replace != null) {
+                codePoints.add(codePoint);
+                forms.add(replace);
+            }
+        }
+        supplementaryCodePoints = codePoints.stream().mapToInt(Integer::intValue).toArray();
+        supplementaryForms = forms.toArray(new String[forms.size()]);
+    }
+
+    /**
+     * Returns the longest rule whose target begins at the specified index.
+     *
+     * @param text
+     *            the text
+     * @param begin
+     *            the index of the text
+     * @return the ID of the rule, or -1 if no rule matches
+     */
+    int longestMatch(String text, int begin) {
+        char c = text.charAt(begin);
+        if ((firstChars[c >> 6] & (1L << c)) == 0) {
+            return -1;
+        }
+        int matched = -1;
+        int node = 0;
+        for (int i = begin; i < text.length(); i++) {
+            int index = Arrays.binarySearch(labels[node], text.charAt(i));
+            if (index < 0) {
+                break;
+            }
+            node = children[node][index];
+            if (replacements[node] != null) {
+                matched = node;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Returns the longest rule whose target begins at the specified index of the
+     * characters.
+     *
+     * @param chars
+     *            the buffer of the characters
+     * @param begin
+     *            the index of the buffer
+     * @param end
+     *            the end of the characters in the buffer
+     * @param isLast
+     *            {@code true} if no character follows the buffer
+     * @return the ID of the rule, -1 if no rule matches, or {@link #NEED_MORE} if a
+     *         longer rule may match the following characters
+     */
+    int longestMatch(char[] chars, int begin, int end, boolean isLast) {
+        char c = chars[begin];
+        if ((firstChars[c >> 6] & (1L << c)) == 0) {
+            return -1;
+        }
+        int matched = -1;
+        int node = 0;
+        for (int i = begin; i < end; i++) {
+            int index = Arrays.binarySearch(labels[node], chars[i]);
+            if (index < 0) {
+                return matched;
+            }
+            node = children[node][index];
+            if (replacements[node] != null) {
+                matched = node;
+            }
+        }
+        return (isLast || labels[node].length == 0) ? matched : NEED_MORE;
+    }
+
+    int getKeyLength(int rule) {
+        return keyLengths[rule];
+    }
+
+    String getReplacement(int rule) {
+        return replacements[rule];
+    }
+
+    /**
+     * Returns the lower-cased and normalized form of the character.
+     *
+     * @param codePoint
+     *            the code point of the character
+     * @return the normalized form, or {@code null} if the character is not changed
+     */
+    String getNormalizedForm(int codePoint) {
+        if (codePoint < BMP_SIZE) {
+            return bmpTable[codePoint >> BLOCK_BITS][codePoint & BLOCK_MASK];
+        }
+        int index = Arrays.binarySearch(supplementaryCodePoints, codePoint);
+        return (index >= 0) ? supplementaryForms[index] : null;
+    }
+
+    private static String[] computeBlock(int blockId, Set<Integer> ignoreNormalizeSet) {
+        String[] block = null;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            String replace = computeNormalizedForm((blockId << BLOCK_BITS) | i, ignoreNormalizeSet);
+            if (replace != null) {
+                if (block == null) {
+                    block = new String[BLOCK_SIZE];
+                }
+                block[i] = replace;
+            }
+        }
+        return (block == null) ? UNCHANGED_BLOCK : block;
+    }
+
+    private static String computeNormalizedForm(int codePoint, Set<Integer> ignoreNormalizeSet) {
+        int lower = Character.toLowerCase(codePoint);
+        String replace;
+        if (ignoreNormalizeSet.contains(lower)) {
+            if (codePoint == lower) {
+                return null;
+            }
+            replace = new String(Character.toChars(lower));
+        } else {
+            replace = Normalizer.normalize(new String(Character.toChars(lower)), Form.NFKC);
+        }
+        if (replace.length() != Character.charCount(codePoint) || codePoint != replace.codePointAt(0)) {
+            return replace;
+        }
+        return null;
+    }
+}
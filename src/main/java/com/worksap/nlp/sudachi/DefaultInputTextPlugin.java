@@ -22,8 +22,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.nio.charset.StandardCharsets;
-import java.text.Normalizer;
-import java.text.Normalizer.Form;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -74,8 +73,8 @@ class DefaultInputTextPlugin extends InputTextPlugin {
     String rewriteDef;
 
     private Set<Integer> ignoreNormalizeSet = new HashSet<>();
-    private Map<Character, Integer> keyLengths = new HashMap<>();
     private Map<String, String> replaceCharMap = new HashMap<>();
+    private CharacterNormalizer normalizer;
 
     /**
      * Reads the rewriting rules from the specified file.
@@ -99,47 +98,122 @@ class DefaultInputTextPlugin extends InputTextPlugin {
             throw new IOException("rewriteDef is not defined");
         }
         readRewriteLists(is);
+        normalizer = new CharacterNormalizer(replaceCharMap, ignoreNormalizeSet);
     }
 
     @Override
     public void rewrite(InputTextBuilder builder) {
         int offset = 0;
-        int nextOffset = 0;
         String text = builder.getText();
-        textloop: for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
-            offset += nextOffset;
-            nextOffset = 0;
+        int length = text.length();
+        for (int i = 0; i < length;) {
             // 1. replace char without normalize
-            for (int l = Math.min(keyLengths.getOrDefault(text.charAt(i), 0), text.length() - i); l > 0; l--) {
-                String replace = replaceCharMap.get(text.substring(i, i + l));
-                if (replace != null) {
-                    builder.replace(i + offset, i + l + offset, replace);
-                    nextOffset += replace.length() - l;
-                    i += l - 1;
-                    continue textloop;
-                }
+            int rule = normalizer.longestMatch(text, i);
+            if (rule >= 0) {
+                int l = normalizer.getKeyLength(rule);
+                String replace = normalizer.getReplacement(rule);
+                builder.replace(i + offset, i + l + offset, replace);
+                offset += replace.length() - l;
+                i = text.offsetByCodePoints(i + l - 1, 1);
+                continue;
             }
 
             // 2. normalize
+            // 2-1. capital alphabet (not only latin but greek, cyrillic, etc) -> small
+            // 2-2. normalize (except in ignoreNormalize)
+            // e.g. full-width alphabet -> half-width / ligature / etc.
             int original = text.codePointAt(i);
-            int charLength = text.offsetByCodePoints(i, 1) - i;
+            int charLength = Character.charCount(original);
+            String replace = normalizer.getNormalizedForm(original);
+            if (replace != null) {
+                builder.replace(i + offset, i + charLength + offset, replace);
+                offset += replace.length() - charLength;
+            }
+            i += charLength;
+        }
+    }
 
-            // 2-1. capital alphabet (not only latin but greek, cyrillic, etc) -> small
-            int lower = Character.toLowerCase(original);
-            String replace;
-            if (ignoreNormalizeSet.contains(lower)) {
-                if (original == lower) {
+    @Override
+    public InputTextTransducer createTransducer(InputTextTransducer downstream) {
+        return new Transducer(downstream);
+    }
+
+    /**
+     * Rewrites the characters as {@link #rewrite}, keeping the characters which may
+     * begin the target of a rule until the rule is determined.
+     */
+    private class Transducer implements InputTextTransducer {
+
+        private final InputTextTransducer downstream;
+        private char[] chars = new char[16];
+        private int[] offsets = new int[16];
+        private int size;
+
+        Transducer(InputTextTransducer downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void begin(String originalText) {
+            size = 0;
+            downstream.begin(originalText);
+        }
+
+        @Override
+        public void accept(int codePoint, int offset) {
+            if (size + 2 > chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int count = Character.toChars(codePoint, chars, size);
+            for (int i = 0; i < count; i++) {
+                offsets[size++] = offset;
+            }
+            process(false);
+        }
+
+        @Override
+        public void end() {
+            process(true);
+            downstream.end();
+        }
+
+        @Override
+        public boolean isIdle() {
+            return size == 0 && downstream.isIdle();
+        }
+
+        private void process(boolean isLast) {
+            int i = 0;
+            while (i < size) {
+                int rule = normalizer.longestMatch(chars, i, size, isLast);
+                if (rule == CharacterNormalizer.NEED_MORE) {
+                    break;
+                } else if (rule >= 0) {
+                    send(normalizer.getReplacement(rule), offsets[i]);
+                    i += normalizer.getKeyLength(rule);
                     continue;
                 }
-                replace = new String(Character.toChars(lower));
-            } else {
-                // 2-2. normalize (except in ignoreNormalize)
-                // e.g. full-width alphabet -> half-width / ligature / etc.
-                replace = Normalizer.normalize(new String(Character.toChars(lower)), Form.NFKC);
+
+                int original = Character.codePointAt(chars, i, size);
+                String replace = normalizer.getNormalizedForm(original);
+                if (replace == null) {
+                    downstream.accept(original, offsets[i]);
+                } else {
+                    send(replace, offsets[i]);
+                }
+                i += Character.charCount(original);
             }
-            nextOffset = replace.length() - charLength;
-            if (replace.length() != charLength || original != replace.codePointAt(0)) {
-                builder.replace(i + offset, i + charLength + offset, replace);
+            size -= i;
+            System.arraycopy(chars, i, chars, 0, size);
+            System.arraycopy(offsets, i, offsets, 0, size);
+        }
+
+        private void send(String str, int offset) {
+            for (int i = 0; i < str.length();) {
+                int codePoint = str.codePointAt(i);
+                downstream.accept(codePoint, offset);
+                i += Character.charCount(codePoint);
             }
         }
     }
@@ -168,10 +242,6 @@ class DefaultInputTextPlugin extends InputTextPlugin {
                         throw new IllegalArgumentException(
                                 cols[0] + " is already defined at line " + reader.getLineNumber());
                     }
-                    if (keyLengths.getOrDefault(cols[0].charAt(0), -1) < cols[0].length()) {
-                        // store the longest key length
-                        keyLengths.put(cols[0].charAt(0), cols[0].length());
-                    }
                     replaceCharMap.put(cols[0], cols[1]);
                 } else {
                     throw new IllegalArgumentException("invalid format at line " + reader.getLineNumber());
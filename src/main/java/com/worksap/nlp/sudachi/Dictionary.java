@@ -17,7 +17,16 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
+import com.worksap.nlp.sudachi.dictionary.WordInfoCache;
 
 /**
  * A lexicon and a grammar for morphological analysis.
@@ -39,6 +48,154 @@ public interface Dictionary extends AutoCloseable {
      */
     public Tokenizer create();
 
+    /**
+     * Creates a thread-safe tokenizer backed by a pool of tokenizers.
+     *
+     * The working memory of a tokenizer returned to the pool is limited to
+     * {@link TokenizerPool#DEFAULT_MAX_SCRATCH_BYTES}.
+     *
+     * @param size
+     *            the maximum number of the tokenizers in the pool
+     * @return a thread-safe tokenizer
+     * @throws IllegalArgumentException
+     *             if {@code size} is not positive
+     * @see #createTokenizerPool(int, long)
+     */
+    public default TokenizerPool createTokenizerPool(int size) {
+        return createTokenizerPool(size, TokenizerPool.DEFAULT_MAX_SCRATCH_BYTES);
+    }
+
+    /**
+     * Creates a thread-safe tokenizer backed by a pool of tokenizers.
+     *
+     * At most {@code size} tokenizers are created lazily, and the calls wait while
+     * all of them are in use. A tokenizer whose working memory exceeds
+     * {@code maxScratchBytes} after a call is discarded.
+     *
+     * The default implementation pools the tokenizers created by {@link #create}.
+     * Their working memory is not known, so they are never discarded.
+     *
+     * @param size
+     *            the maximum number of the tokenizers in the pool
+     * @param maxScratchBytes
+     *            the maximum size in bytes of the working memory of a tokenizer
+     *            returned to the pool
+     * @return a thread-safe tokenizer
+     * @throws IllegalArgumentException
+     *             if {@code size} is not positive, or {@code maxScratchBytes} is
+     *             negative
+     */
+    public default TokenizerPool createTokenizerPool(int size, long maxScratchBytes) {
+        return new TokenizerPool(this::create, size, maxScratchBytes);
+    }
+
+    /**
+     * Tokenizes texts in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @return the results in the order of {@code texts}
+     * @see #tokenizeAll(List, Tokenizer.SplitMode, Executor)
+     */
+    public default List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, Tokenizer.SplitMode mode) {
+        return tokenizeAll(texts, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes texts in parallel.
+     *
+     * The texts are tokenized by a pool of as many tokenizers as the available
+     * processors, which is shared by the batches of this dictionary. An exception
+     * thrown by a text is held in its result, and the other texts are tokenized.
+     *
+     * The default implementation tokenizes the texts one by one on the calling
+     * thread, with a tokenizer created by {@link #create}.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @param executor
+     *            the executor which runs the tasks
+     * @return the results in the order of {@code texts}
+     * @see TokenizerPool#tokenizeAll(List, Tokenizer.SplitMode, Executor)
+     */
+    public default List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, Tokenizer.SplitMode mode,
+            Executor executor) {
+        Tokenizer tokenizer = create();
+        List<TokenizeResult> results = new ArrayList<>(texts.size());
+        for (CharSequence text : texts) {
+            try {
+                results.add(new TokenizeResult(tokenizer.tokenize(mode, text.toString()), null));
+            } catch (RuntimeException e) {
+                results.add(new TokenizeResult(null, e));
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Tokenizes a stream of texts in parallel.
+     *
+     * The texts are tokenized by the pool shared by the batches of this dictionary.
+     * The returned stream is parallel, and the results are in the encounter order
+     * of {@code texts}. As {@code texts} may be made parallel, its intermediate
+     * operations must be safe to run in parallel.
+     *
+     * The default implementation collects the texts, and tokenizes them by
+     * {@link #tokenizeAll(List, Tokenizer.SplitMode)}.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @return the stream of the results
+     * @see TokenizerPool#tokenizeAll(Stream, Tokenizer.SplitMode)
+     */
+    public default Stream<TokenizeResult> tokenizeAll(Stream<? extends CharSequence> texts, Tokenizer.SplitMode mode) {
+        return tokenizeAll(texts.collect(Collectors.toList()), mode).stream();
+    }
+
+    /**
+     * Tokenizes a long text on the common {@link ForkJoinPool}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            input text
+     * @return a result of tokenizing
+     * @see #tokenizeInParallel(Tokenizer.SplitMode, CharSequence, Executor)
+     */
+    public default List<Morpheme> tokenizeInParallel(Tokenizer.SplitMode mode, CharSequence text) {
+        return tokenizeInParallel(mode, text, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes a long text on multiple threads.
+     *
+     * The text is divided into chunks which are tokenized concurrently by the pool
+     * shared by the batches of this dictionary. The result is the same as the one
+     * of tokenizing the whole text by a tokenizer.
+     *
+     * The default implementation tokenizes the whole text on the calling thread,
+     * with a tokenizer created by {@link #create}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            input text
+     * @param executor
+     *            the executor which runs the tasks
+     * @return a result of tokenizing
+     * @see TokenizerPool#tokenizeInParallel(Tokenizer.SplitMode, CharSequence,
+     *      Executor)
+     */
+    public default List<Morpheme> tokenizeInParallel(Tokenizer.SplitMode mode, CharSequence text, Executor executor) {
+        return create().tokenize(mode, text.toString());
+    }
+
     @Override
     public void close() throws IOException;
 
@@ -64,4 +221,54 @@ public interface Dictionary extends AutoCloseable {
      *             if {@code posId} is out of the range
      */
     public List<String> getPartOfSpeechString(short posId);
+
+    /**
+     * Returns the cache of the informations of morphemes.
+     *
+     * The cache is enabled by setting {@code wordInfoCacheSize} in the settings to
+     * the maximum number of entries.
+     *
+     * @return the cache, or {@code null} if the cache is disabled, which is the
+     *         default
+     */
+    public default WordInfoCache getWordInfoCache() {
+        return null;
+    }
+
+    /**
+     * Returns the time spent to set up this dictionary.
+     *
+     * The steps of the setup run concurrently when {@code startupThreads} in the
+     * settings is greater than 1, or 0 to use all the available processors.
+     *
+     * @return the breakdown of the time by phase, which has no phases by default
+     */
+    public default StartupTimings getStartupTimings() {
+        return new StartupTimings();
+    }
+
+    /**
+     * Makes the grammar and the lexicon of this dictionary immutable.
+     *
+     * The connection costs, the part-of-speech names and the parameters of the
+     * words are copied into arrays held by final fields, which the tokenizers
+     * created after this read without synchronization. Any later modification of
+     * them, such as by {@link EditConnectionCostPlugin}, throws
+     * {@link IllegalStateException}. The informations of the words returned after
+     * it are immutable: {@link WordInfo#setPOSId} throws
+     * {@link IllegalStateException}, and the arrays of the splits are copies.
+     * Calling this method again has no effect.
+     *
+     * The copied tables take the heap memory instead of the mapped dictionary
+     * files. When the dictionary is shared by
+     * {@link DictionaryFactory#createShared}, the other holders are also affected.
+     */
+    public void freeze();
+
+    /**
+     * Returns whether {@link #freeze} has been called.
+     *
+     * @return {@code true} if this dictionary is frozen, otherwise {@code false}
+     */
+    public boolean isFrozen();
 }
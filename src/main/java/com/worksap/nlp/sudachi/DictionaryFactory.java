@@ -17,6 +17,10 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
 
 /**
  * Build a {@link Dictionary} instance from a dictionary file.
@@ -80,4 +84,78 @@ public class DictionaryFactory {
     public Dictionary create(String path, String settings, boolean mergeSettings) throws IOException {
         return new JapaneseDictionary(path, settings, mergeSettings);
     }
+
+    /**
+     * Creates {@code Dictionary} with the given system dictionary.
+     *
+     * <p>
+     * {@code "systemDict"} in the settings is ignored. The system dictionary is
+     * closed when the returned dictionary is closed.
+     *
+     * @param systemDict
+     *            the path of the system dictionary file, which is mapped into
+     *            memory
+     * @param path
+     *            the base path if "path" is undefined in settings
+     * @param settings
+     *            settings in JSON string
+     * @param mergeSettings
+     *            if true, settings is merged with the default settings
+     * @return {@link Dictionary}
+     * @throws IOException
+     *             if reading a file is failed
+     */
+    public Dictionary create(Path systemDict, String path, String settings, boolean mergeSettings) throws IOException {
+        Settings s = JapaneseDictionary.buildSettings(path, settings, mergeSettings);
+        return new JapaneseDictionary(BinaryDictionary.readSystemDictionary(systemDict), s, null);
+    }
+
+    /**
+     * Creates {@code Dictionary} with the given system dictionary.
+     *
+     * <p>
+     * {@code "systemDict"} in the settings is ignored. The buffer is not released
+     * when the returned dictionary is closed.
+     *
+     * @param systemDict
+     *            the content of the system dictionary
+     * @param path
+     *            the base path if "path" is undefined in settings
+     * @param settings
+     *            settings in JSON string
+     * @param mergeSettings
+     *            if true, settings is merged with the default settings
+     * @return {@link Dictionary}
+     * @throws IOException
+     *             if reading a file is failed
+     */
+    public Dictionary create(ByteBuffer systemDict, String path, String settings, boolean mergeSettings)
+            throws IOException {
+        Settings s = JapaneseDictionary.buildSettings(path, settings, mergeSettings);
+        return new JapaneseDictionary(BinaryDictionary.readSystemDictionary(systemDict), s, null);
+    }
+
+    /**
+     * Creates {@code Dictionary} shared in the process.
+     *
+     * <p>
+     * If a dictionary created with the same settings and the same dictionary files
+     * is still open, its grammar, lexicons and plugins are reused. The dictionary
+     * files are mapped only once even if they are used with different settings. The
+     * shared resources are released when the last dictionary using them is closed.
+     *
+     * @param path
+     *            the base path if "path" is undefined in settings
+     * @param settings
+     *            settings in JSON string
+     * @param mergeSettings
+     *            if true, settings is merged with the default settings
+     * @return {@link Dictionary}
+     * @throws IOException
+     *             if reading a file is failed
+     * @see DictionaryRegistry
+     */
+    public Dictionary createShared(String path, String settings, boolean mergeSettings) throws IOException {
+        return DictionaryRegistry.getInstance().acquire(path, settings, mergeSettings);
+    }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import com.worksap.nlp.sudachi.dictionary.WordInfoCache;
+
+/**
+ * A registry of the dictionaries shared in the process.
+ *
+ * <p>
+ * The dictionaries are keyed by the resolved settings and the identities of the
+ * dictionary files, and the mapped dictionary files are keyed by their
+ * identities. Both are reference-counted, and are dropped from the registry
+ * when the last holder is closed. The dropped mappings are not unmapped
+ * explicitly, since the morphemes may still read them, and are left to the
+ * garbage collector.
+ *
+ * <p>
+ * Only the dictionaries with the same settings share their grammar, lexicons
+ * and plugins. The dictionaries with different settings read their own grammars
+ * and lexicons from the shared mappings of the files.
+ *
+ * <p>
+ * This class is thread-safe. A dictionary is set up without locking the
+ * registry, and the others acquiring the same dictionary meanwhile wait for it.
+ *
+ * @see DictionaryFactory#createShared
+ */
+public final class DictionaryRegistry {
+
+    private static final DictionaryRegistry INSTANCE = new DictionaryRegistry();
+
+    /** The settings of the plugins naming the files which the plugins read. */
+    private static final List<String> PLUGIN_FILE_SETTINGS = Arrays.asList("charDef", "unkDef", "rewriteDef");
+
+    private final ConcurrentMap<String, DictionaryEntry> dictionaries = new ConcurrentHashMap<>();
+    private final Map<String, MappingEntry> mappings = new HashMap<>();
+
+    DictionaryRegistry() {
+    }
+
+    /**
+     * Returns the registry of the process.
+     *
+     * @return the registry
+     */
+    public static DictionaryRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the number of the dictionaries which are open.
+     *
+     * @return the number of the shared dictionaries
+     */
+    public int getLiveDictionaryCount() {
+        return dictionaries.size();
+    }
+
+    /**
+     * Returns the number of the mappings of the dictionary files held by the
+     * registry.
+     *
+     * <p>
+     * The mappings dropped from the registry are not counted, though they stay
+     * mapped until they are garbage collected.
+     *
+     * @return the number of the mappings held by the registry
+     */
+    public int getLiveMappingCount() {
+        synchronized (mappings) {
+            return mappings.size();
+        }
+    }
+
+    Dictionary acquire(String path, String jsonString, boolean mergeSettings) throws IOException {
+        Settings settings = JapaneseDictionary.buildSettings(path, jsonString, mergeSettings);
+        String key = dictionaryKey(settings);
+        DictionaryEntry entry;
+        boolean builds;
+        while (true) {
+            entry = dictionaries.computeIfAbsent(key, k -> new DictionaryEntry());
+            synchronized (entry) {
+                if (entry.isRemoved) {
+                    continue;
+                }
+                entry.count++;
+                builds = !entry.isStarted;
+                entry.isStarted = true;
+            }
+            break;
+        }
+
+        if (builds) {
+            try {
+                entry.dictionary.complete(new JapaneseDictionary(null, settings, this));
+            } catch (IOException | RuntimeException | Error e) {
+                entry.dictionary.completeExceptionally(e);
+            }
+        }
+        try {
+            return new SharedDictionary(key, entry.dictionary.join());
+        } catch (CompletionException e) {
+            release(key);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    void release(String key) throws IOException {
+        DictionaryEntry entry = dictionaries.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (--entry.count > 0) {
+                return;
+            }
+            entry.isRemoved = true;
+            dictionaries.remove(key, entry);
+        }
+        // the last holder has waited for the setup
+        if (!entry.dictionary.isCompletedExceptionally()) {
+            entry.dictionary.join().close();
+        }
+    }
+
+    String acquireMapping(String filename) throws IOException {
+        String key = fileIdentity(filename);
+        synchronized (mappings) {
+            MappingEntry entry = mappings.get(key);
+            if (entry == null) {
+                entry = new MappingEntry(MMap.map(filename));
+                mappings.put(key, entry);
+            }
+            entry.count++;
+        }
+        return key;
+    }
+
+    ByteBuffer getMapping(String key) {
+        synchronized (mappings) {
+            return mappings.get(key).buffer;
+        }
+    }
+
+    void releaseMapping(String key) {
+        synchronized (mappings) {
+            MappingEntry entry = mappings.get(key);
+            if (entry != null && --entry.count == 0) {
+                // not unmapped, since the morphemes may still read it
+                mappings.remove(key);
+            }
+        }
+    }
+
+    static String dictionaryKey(Settings settings) throws IOException {
+        StringBuilder key = new StringBuilder();
+        key.append(settings.basePath).append('\n');
+        appendCanonical(key, settings.root);
+        key.append('\n');
+        key.append(fileIdentity(settings.getPath("systemDict"))).append('\n');
+        for (String filename : settings.getPathList("userDict")) {
+            key.append(fileIdentity(filename)).append('\n');
+        }
+        key.append(fileIdentity(settings.getPath("characterDefinitionFile"))).append('\n');
+        for (JsonValue value : settings.root.values()) {
+            if (!(value instanceof JsonArray)) {
+                continue;
+            }
+            for (JsonValue element : (JsonArray) value) {
+                if (!(element instanceof JsonObject)) {
+                    continue;
+                }
+                Settings pluginSettings = new Settings((JsonObject) element, settings.basePath);
+                for (String setting : PLUGIN_FILE_SETTINGS) {
+                    key.append(fileIdentity(pluginSettings.getPath(setting))).append('\n');
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends the JSON value with the members of the objects sorted by their names,
+     * so that the same settings give the same string whatever their order.
+     */
+    private static void appendCanonical(StringBuilder builder, JsonValue value) {
+        if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject) value;
+            builder.append('{');
+            boolean isFirst = true;
+            for (String name : new TreeSet<>(object.keySet())) {
+                if (!isFirst) {
+                    builder.append(',');
+                }
+                isFirst = false;
+                builder.append(Json.createValue(name)).append(':');
+                appendCanonical(builder, object.get(name));
+            }
+            builder.append('}');
+        } else if (value instanceof JsonArray) {
+            builder.append('[');
+            boolean isFirst = true;
+            for (JsonValue element : (JsonArray) value) {
+                if (!isFirst) {
+                    builder.append(',');
+                }
+                isFirst = false;
+                appendCanonical(builder, element);
+            }
+            builder.append(']');
+        } else {
+            builder.append(value);
+        }
+    }
+
+    /**
+     * Returns the string identifying the content of the file, or of the class path
+     * resource if the file does not exist.
+     */
+    static String fileIdentity(String filename) throws IOException {
+        if (filename == null) {
+            return "";
+        }
+        Path path;
+        try {
+            path = Paths.get(filename);
+        } catch (InvalidPathException e) {
+            path = null;
+        }
+        if (path == null || !Files.isRegularFile(path)) {
+            return "resource:" + filename;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return "file:" + path.toRealPath() + ":" + (fileKey != null ? fileKey : "") + ":" + attributes.size() + ":"
+                + attributes.lastModifiedTime().toMillis();
+    }
+
+    private static class DictionaryEntry {
+        final CompletableFuture<JapaneseDictionary> dictionary = new CompletableFuture<>();
+        int count;
+        boolean isStarted;
+        boolean isRemoved;
+    }
+
+    private static class MappingEntry {
+        final ByteBuffer buffer;
+        int count;
+
+        MappingEntry(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private class SharedDictionary implements Dictionary {
+
+        private final String key;
+        private JapaneseDictionary dictionary;
+
+        SharedDictionary(String key, JapaneseDictionary dictionary) {
+            this.key = key;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Tokenizer create() {
+            return get().create();
+        }
+
+        @Override
+        public TokenizerPool createTokenizerPool(int size, long maxScratchBytes) {
+            return get().createTokenizerPool(size, maxScratchBytes);
+        }
+
+        @Override
+        public List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, Tokenizer.SplitMode mode,
+                Executor executor) {
+            return get().tokenizeAll(texts, mode, executor);
+        }
+
+        @Override
+        public Stream<TokenizeResult> tokenizeAll(Stream<? extends CharSequence> texts, Tokenizer.SplitMode mode) {
+            return get().tokenizeAll(texts, mode);
+        }
+
+        @Override
+        public List<Morpheme> tokenizeInParallel(Tokenizer.SplitMode mode, CharSequence text, Executor executor) {
+            return get().tokenizeInParallel(mode, text, executor);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (dictionary != null) {
+                dictionary = null;
+                release(key);
+            }
+        }
+
+        @Override
+        public int getPartOfSpeechSize() {
+            return get().getPartOfSpeechSize();
+        }
+
+        @Override
+        public List<String> getPartOfSpeechString(short posId) {
+            return get().getPartOfSpeechString(posId);
+        }
+
+        @Override
+        public WordInfoCache getWordInfoCache() {
+            return get().getWordInfoCache();
+        }
+
+        @Override
+        public StartupTimings getStartupTimings() {
+            return get().getStartupTimings();
+        }
+
+        @Override
+        public void freeze() {
+            get().freeze();
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return get().isFrozen();
+        }
+
+        private synchronized JapaneseDictionary get() {
+            if (dictionary == null) {
+                throw new IllegalStateException("the dictionary is closed");
+            }
+            return dictionary;
+        }
+    }
+}
@@ -59,4 +59,19 @@ public abstract class InputTextPlugin extends Plugin {
      *            the input text
      */
     public abstract void rewrite(InputTextBuilder builder);
+
+    /**
+     * Creates the transducer which rewrites the input text in a single pass.
+     *
+     * The transducer must produce the same text as {@link #rewrite}, and map each
+     * code point to the same index of the original text. The default implementation
+     * collects the whole text and calls {@link #rewrite}.
+     *
+     * @param downstream
+     *            the next stage
+     * @return the transducer
+     */
+    public InputTextTransducer createTransducer(InputTextTransducer downstream) {
+        return new InputTextPluginAdapter(this, downstream);
+    }
 }
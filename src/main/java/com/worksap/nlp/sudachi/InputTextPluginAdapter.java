@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+/**
+ * A transducer which runs {@link InputTextPlugin#rewrite} on the whole text.
+ *
+ * <p>
+ * The received code points are collected in a builder whose offsets are those
+ * of the original text, and the rewritten text is sent at the end.
+ */
+class InputTextPluginAdapter implements InputTextTransducer {
+
+    private final InputTextPlugin plugin;
+    private final InputTextTransducer downstream;
+    private final UTF8InputTextBuilder builder = new UTF8InputTextBuilder(null);
+
+    InputTextPluginAdapter(InputTextPlugin plugin, InputTextTransducer downstream) {
+        this.plugin = plugin;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void begin(String originalText) {
+        builder.begin(originalText);
+        downstream.begin(originalText);
+    }
+
+    @Override
+    public void accept(int codePoint, int offset) {
+        builder.accept(codePoint, offset);
+    }
+
+    @Override
+    public void end() {
+        builder.end();
+        plugin.rewrite(builder);
+        builder.writeTo(downstream);
+        downstream.end();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+/**
+ * A stage which rewrites the input text code point by code point.
+ *
+ * <p>
+ * A tokenizer chains the transducers of all the input text plugins and passes
+ * the input text through them in a single pass. Each transducer receives the
+ * code points with the index of the original text they are mapped to, and sends
+ * the rewritten code points to the next stage.
+ *
+ * <p>
+ * A transducer is used by only one tokenizer, and is reused for each input.
+ *
+ * @see InputTextPlugin#createTransducer
+ */
+public interface InputTextTransducer {
+
+    /**
+     * Starts a new input text.
+     *
+     * The state of the previous input must be discarded, and this call must be
+     * passed to the next stage.
+     *
+     * @param originalText
+     *            the original input text
+     */
+    public void begin(String originalText);
+
+    /**
+     * Receives the next code point.
+     *
+     * @param codePoint
+     *            the code point
+     * @param offset
+     *            the index of the original text mapped to the code point
+     */
+    public void accept(int codePoint, int offset);
+
+    /**
+     * Ends the input text.
+     *
+     * The pending code points must be sent before this call is passed to the next
+     * stage.
+     */
+    public void end();
+
+    /**
+     * Returns whether the text received so far has been entirely sent, and the
+     * rewriting of the following code points does not depend on it.
+     *
+     * <p>
+     * A text fed in pieces may be split where all the stages are idle. The default
+     * implementation returns {@code false}, so the text is never split.
+     *
+     * @return {@code true} if this stage and the following ones are idle
+     */
+    public default boolean isIdle() {
+        return false;
+    }
+}
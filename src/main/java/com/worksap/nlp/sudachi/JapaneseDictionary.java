@@ -20,25 +20,48 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
 import com.worksap.nlp.sudachi.dictionary.CharacterCategory;
 import com.worksap.nlp.sudachi.dictionary.DoubleArrayLexicon;
+import com.worksap.nlp.sudachi.dictionary.FrozenGrammar;
+import com.worksap.nlp.sudachi.dictionary.Grammar;
 import com.worksap.nlp.sudachi.dictionary.GrammarImpl;
 import com.worksap.nlp.sudachi.dictionary.LexiconSet;
+import com.worksap.nlp.sudachi.dictionary.PrecomputedCosts;
+import com.worksap.nlp.sudachi.dictionary.WordInfoCache;
 
 class JapaneseDictionary implements Dictionary {
 
+    /** The minimum number of words for which the costs are calculated in a step */
+    static final int MIN_WORDS_PER_COST_STEP = 1024;
+
     GrammarImpl grammar;
+    // the snapshot of the grammar, or null if the dictionary is not frozen
+    private volatile FrozenGrammar frozenGrammar;
     LexiconSet lexicon;
     List<InputTextPlugin> inputTextPlugins;
     List<OovProviderPlugin> oovProviderPlugins;
     List<PathRewritePlugin> pathRewritePlugins;
     List<BinaryDictionary> dictionaries;
+    DictionaryRegistry registry;
+    List<String> mappings;
+    int beamWidth;
+    int beamThreshold;
+    final StartupTimings timings = new StartupTimings();
+    // the pool for the batches, created on the first batch
+    final AtomicReference<TokenizerPool> batchPool = new AtomicReference<>();
 
     JapaneseDictionary() throws IOException {
         this(null, null, false);
@@ -49,41 +72,126 @@ class JapaneseDictionary implements Dictionary {
     }
 
     JapaneseDictionary(String path, String jsonString, boolean mergeSettings) throws IOException {
-        Settings settings = buildSettings(path, jsonString, mergeSettings);
+        this(null, path, jsonString, mergeSettings);
+    }
 
+    JapaneseDictionary(BinaryDictionary systemDictionary, String path, String jsonString, boolean mergeSettings)
+            throws IOException {
+        this(systemDictionary, buildSettings(path, jsonString, mergeSettings), null);
+    }
+
+    JapaneseDictionary(BinaryDictionary systemDictionary, Settings settings, DictionaryRegistry registry)
+            throws IOException {
+        this.registry = registry;
         dictionaries = new ArrayList<>();
+        mappings = new ArrayList<>();
 
-        readSystemDictionary(settings.getPath("systemDict"));
-        for (EditConnectionCostPlugin p : settings
-                .<EditConnectionCostPlugin>getPluginList("editConnectionCostPlugin")) {
-            p.setUp(grammar);
-            p.edit(grammar);
+        try {
+            setUp(systemDictionary, settings);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
         }
+    }
 
-        readCharacterDefinition(settings.getPath("characterDefinitionFile"));
+    void setUp(BinaryDictionary systemDictionary, Settings settings) throws IOException {
+        int threads = settings.getInt("startupThreads", 1);
+        if (threads < 0) {
+            throw new IllegalArgumentException("startupThreads must not be negative");
+        } else if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
 
+        long start = System.nanoTime();
+        try (StartupPipeline pipeline = new StartupPipeline(threads, timings)) {
+            setUp(systemDictionary, settings, pipeline);
+        }
+        timings.setTotalNanos(System.nanoTime() - start);
+    }
+
+    void setUp(BinaryDictionary systemDictionary, Settings settings, StartupPipeline pipeline) throws IOException {
+        Future<BinaryDictionary> systemFuture;
+        if (systemDictionary != null) {
+            systemFuture = CompletableFuture.completedFuture(systemDictionary);
+        } else {
+            systemFuture = readSystemDictionary(settings.getPath("systemDict"), pipeline);
+        }
+        String charDef = settings.getPath("characterDefinitionFile");
+        Future<CharacterCategory> charCategoryFuture = pipeline.submit("characterDefinitionFile",
+                () -> readCharacterDefinition(charDef));
         inputTextPlugins = settings.getPluginList("inputTextPlugin");
         for (InputTextPlugin p : inputTextPlugins) {
-            p.setUp();
+            pipeline.submit("inputTextPlugin", () -> {
+                p.setUp();
+                return null;
+            });
+        }
+        List<Future<BinaryDictionary>> userFutures = new ArrayList<>();
+        for (String filename : settings.getPathList("userDict")) {
+            userFutures.add(readUserDictionary(filename, pipeline));
+        }
+
+        try {
+            pipeline.awaitAll();
+        } finally {
+            dictionaries.add(StartupPipeline.resultOrNull(systemFuture));
+            for (Future<BinaryDictionary> future : userFutures) {
+                dictionaries.add(StartupPipeline.resultOrNull(future));
+            }
+            dictionaries.removeIf(Objects::isNull);
+        }
+        readSystemDictionary(dictionaries.get(0));
+        grammar.setCharacterCategory(pipeline.get(charCategoryFuture));
+
+        for (EditConnectionCostPlugin p : settings
+                .<EditConnectionCostPlugin>getPluginList("editConnectionCostPlugin")) {
+            pipeline.get(pipeline.submit("editConnectionCostPlugin", () -> {
+                p.setUp(grammar);
+                p.edit(grammar);
+                return null;
+            }));
         }
+
         oovProviderPlugins = settings.getPluginList("oovProviderPlugin");
         if (oovProviderPlugins.isEmpty()) {
             throw new IllegalArgumentException("no OOV provider");
         }
         for (OovProviderPlugin p : oovProviderPlugins) {
-            p.setUp(grammar);
+            pipeline.submit("oovProviderPlugin", () -> {
+                p.setUp(grammar);
+                return null;
+            });
         }
         pathRewritePlugins = settings.getPluginList("pathRewritePlugin");
         for (PathRewritePlugin p : pathRewritePlugins) {
-            p.setUp(grammar);
+            pipeline.submit("pathRewritePlugin", () -> {
+                p.setUp(grammar);
+                return null;
+            });
         }
+        pipeline.awaitAll();
 
-        for (String filename : settings.getPathList("userDict")) {
-            readUserDictionary(filename);
+        long costSettingsChecksum = PrecomputedCosts.settingsChecksum(settings);
+        for (BinaryDictionary dictionary : dictionaries.subList(1, dictionaries.size())) {
+            readUserDictionary(dictionary, costSettingsChecksum, pipeline);
         }
+
+        int cacheSize = settings.getInt("wordInfoCacheSize", 0);
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("wordInfoCacheSize must not be negative");
+        } else if (cacheSize > 0) {
+            lexicon.setWordInfoCache(new WordInfoCache(cacheSize));
+        }
+
+        beamWidth = settings.getInt("beamWidth", 0);
+        if (beamWidth < 0) {
+            throw new IllegalArgumentException("beamWidth must not be negative");
+        }
+        // a negative threshold means no limit, since 0 keeps only the best nodes
+        beamThreshold = settings.getInt("beamThreshold", -1);
     }
 
-    Settings buildSettings(String path, String jsonString, boolean mergeSettings) throws IOException {
+    static Settings buildSettings(String path, String jsonString, boolean mergeSettings) throws IOException {
         Settings defaultSettings;
         try (InputStream input = SudachiCommandLine.class.getResourceAsStream("/sudachi.json")) {
             defaultSettings = Settings.parseSettings(path, readAll(input));
@@ -98,65 +206,176 @@ class JapaneseDictionary implements Dictionary {
         }
     }
 
-    void readSystemDictionary(String filename) throws IOException {
+    Future<BinaryDictionary> readSystemDictionary(String filename, StartupPipeline pipeline) throws IOException {
         if (filename == null) {
             throw new IllegalArgumentException("system dictionary is not specified");
         }
 
-        BinaryDictionary dictionary = BinaryDictionary.readSystemDictionary(filename);
-        dictionaries.add(dictionary);
+        if (registry != null) {
+            ByteBuffer bytes = acquireMapping(filename);
+            return pipeline.submit("systemDict", () -> BinaryDictionary.readSystemDictionary(bytes));
+        } else {
+            return pipeline.submit("systemDict", () -> BinaryDictionary.readSystemDictionary(filename));
+        }
+    }
+
+    void readSystemDictionary(BinaryDictionary dictionary) {
         grammar = dictionary.getGrammar();
         lexicon = new LexiconSet(dictionary.getLexicon());
     }
 
-    void readUserDictionary(String filename) throws IOException {
+    Future<BinaryDictionary> readUserDictionary(String filename, StartupPipeline pipeline) throws IOException {
+        if (registry != null) {
+            ByteBuffer bytes = acquireMapping(filename);
+            return pipeline.submit("userDict", () -> BinaryDictionary.readUserDictionary(bytes));
+        } else {
+            return pipeline.submit("userDict", () -> BinaryDictionary.readUserDictionary(filename));
+        }
+    }
+
+    /**
+     * Maps the file on the calling thread, so that the mapping is released by
+     * {@link #close} even if the setup fails.
+     */
+    private ByteBuffer acquireMapping(String filename) throws IOException {
+        String key = registry.acquireMapping(filename);
+        mappings.add(key);
+        return registry.getMapping(key);
+    }
+
+    void readUserDictionary(BinaryDictionary dictionary, long costSettingsChecksum, StartupPipeline pipeline)
+            throws IOException {
         if (lexicon.isFull()) {
             throw new IllegalArgumentException("too many dictionaries");
         }
 
-        BinaryDictionary dictionary = BinaryDictionary.readUserDictionary(filename);
-        dictionaries.add(dictionary);
-
         DoubleArrayLexicon userLexicon = dictionary.getLexicon();
-        Tokenizer tokenizer = new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins,
-                Collections.emptyList());
-        userLexicon.calculateCost(tokenizer);
+        // the costs are computed only with the system dictionary, so they are not
+        // valid after another user dictionary
+        PrecomputedCosts costs = dictionary.getPrecomputedCosts();
+        if (costs != null && dictionary == dictionaries.get(1)
+                && costs.isComputedWith(dictionaries.get(0), costSettingsChecksum)) {
+            costs.applyTo(userLexicon);
+        }
+        int size = userLexicon.size();
+        int parts = Math.max(1, Math.min(pipeline.getParallelism(), size / MIN_WORDS_PER_COST_STEP));
+        int step = (size + parts - 1) / parts;
+        for (int i = 0; i < parts; i++) {
+            int begin = i * step;
+            int end = Math.min(begin + step, size);
+            pipeline.submit("calculateCost", () -> {
+                Tokenizer tokenizer = new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins,
+                        Collections.emptyList());
+                userLexicon.calculateCost(tokenizer, begin, end);
+                return null;
+            });
+        }
+        pipeline.awaitAll();
 
         lexicon.add(userLexicon, (short) grammar.getPartOfSpeechSize());
         grammar.addPosList(dictionary.getGrammar());
     }
 
-    void readCharacterDefinition(String filename) throws IOException {
-        if (grammar == null) {
-            return;
-        }
+    static CharacterCategory readCharacterDefinition(String filename) throws IOException {
         CharacterCategory charCategory = new CharacterCategory();
         charCategory.readCharacterDefinition(filename);
-        grammar.setCharacterCategory(charCategory);
+        return charCategory;
     }
 
     @Override
     public void close() throws IOException {
+        // the pooled tokenizers refer to the grammar and the lexicons
+        batchPool.set(null);
         grammar = null;
+        frozenGrammar = null;
         lexicon = null;
         for (BinaryDictionary dictionary : dictionaries) {
             dictionary.close();
         }
+        dictionaries.clear();
+        for (String key : mappings) {
+            registry.releaseMapping(key);
+        }
+        mappings.clear();
     }
 
     @Override
     public Tokenizer create() {
-        return new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins, pathRewritePlugins);
+        JapaneseTokenizer tokenizer = new JapaneseTokenizer(getGrammar(), lexicon, inputTextPlugins, oovProviderPlugins,
+                pathRewritePlugins);
+        tokenizer.setBeam(beamWidth, beamThreshold);
+        return tokenizer;
+    }
+
+    @Override
+    public TokenizerPool createTokenizerPool(int size, long maxScratchBytes) {
+        return new TokenizerPool(() -> (JapaneseTokenizer) create(), getGrammar().getBOSParameter()[1], size,
+                maxScratchBytes);
+    }
+
+    @Override
+    public List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, Tokenizer.SplitMode mode,
+            Executor executor) {
+        return getBatchPool().tokenizeAll(texts, mode, executor);
+    }
+
+    @Override
+    public Stream<TokenizeResult> tokenizeAll(Stream<? extends CharSequence> texts, Tokenizer.SplitMode mode) {
+        return getBatchPool().tokenizeAll(texts, mode);
+    }
+
+    @Override
+    public List<Morpheme> tokenizeInParallel(Tokenizer.SplitMode mode, CharSequence text, Executor executor) {
+        return getBatchPool().tokenizeInParallel(mode, text, executor);
+    }
+
+    private TokenizerPool getBatchPool() {
+        TokenizerPool pool = batchPool.get();
+        if (pool == null) {
+            // creating a pool is cheap, since the tokenizers are created lazily
+            batchPool.compareAndSet(null, createTokenizerPool(Runtime.getRuntime().availableProcessors()));
+            pool = batchPool.get();
+        }
+        return pool;
+    }
+
+    @Override
+    public WordInfoCache getWordInfoCache() {
+        return lexicon.getWordInfoCache();
+    }
+
+    @Override
+    public StartupTimings getStartupTimings() {
+        return timings;
+    }
+
+    @Override
+    public synchronized void freeze() {
+        if (frozenGrammar != null) {
+            return;
+        }
+        lexicon.freeze();
+        frozenGrammar = grammar.freeze();
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozenGrammar != null;
+    }
+
+    private Grammar getGrammar() {
+        FrozenGrammar frozen = frozenGrammar;
+        return (frozen != null) ? frozen : grammar;
     }
 
     @Override
     public int getPartOfSpeechSize() {
-        return grammar.getPartOfSpeechSize();
+        return getGrammar().getPartOfSpeechSize();
     }
 
     @Override
     public List<String> getPartOfSpeechString(short posId) {
-        return grammar.getPartOfSpeechString(posId);
+        return getGrammar().getPartOfSpeechString(posId);
     }
 
     static String readAll(InputStream input) throws IOException {
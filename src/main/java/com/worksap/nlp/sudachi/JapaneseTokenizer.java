@@ -17,16 +17,23 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import com.worksap.nlp.sudachi.dictionary.CategoryType;
 import com.worksap.nlp.sudachi.dictionary.Grammar;
 import com.worksap.nlp.sudachi.dictionary.Lexicon;
+import com.worksap.nlp.sudachi.dictionary.LexiconSet;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
-class JapaneseTokenizer implements Tokenizer {
+class JapaneseTokenizer implements Tokenizer, StreamingTokenizerImpl.Engine {
 
     Grammar grammar;
     Lexicon lexicon;
@@ -37,6 +44,18 @@ class JapaneseTokenizer implements Tokenizer {
     PrintStream dumpOutput;
 
     LatticeImpl lattice;
+    private int beamWidth;
+    private int beamThreshold = -1;
+    private long beamFallbackCount;
+    private final Lexicon.Sink wordSink = this::insertWord;
+    private final OovSink oovSink = new OovSink();
+    private int lookupBegin;
+    private final UTF8InputTextBuilder builder;
+    private final InputTextTransducer inputTextTransducer;
+    // the original indexes where the input text can be split, for each modified
+    // index
+    private int[] splitOffsets = new int[0];
+    private int splitOffsetsSize;
 
     JapaneseTokenizer(Grammar grammar, Lexicon lexicon, List<InputTextPlugin> inputTextPlugins,
             List<OovProviderPlugin> oovProviderPlugins, List<PathRewritePlugin> pathRewritePlugins) {
@@ -46,7 +65,13 @@ class JapaneseTokenizer implements Tokenizer {
         this.inputTextPlugins = inputTextPlugins;
         this.oovProviderPlugins = oovProviderPlugins;
         this.pathRewritePlugins = pathRewritePlugins;
-        this.lattice = new LatticeImpl(grammar);
+        this.lattice = new LatticeImpl(grammar, lexicon);
+        this.builder = new UTF8InputTextBuilder(grammar);
+        InputTextTransducer transducer = builder;
+        for (int i = inputTextPlugins.size() - 1; i >= 0; i--) {
+            transducer = inputTextPlugins.get(i).createTransducer(transducer);
+        }
+        this.inputTextTransducer = transducer;
 
         if (!oovProviderPlugins.isEmpty()) {
             defaultOovProvider = oovProviderPlugins.get(oovProviderPlugins.size() - 1);
@@ -58,18 +83,329 @@ class JapaneseTokenizer implements Tokenizer {
         if (text.isEmpty()) {
             return Collections.emptyList();
         }
+        builder.setOriginalCoordinates(0, null);
+        return tokenize(mode, buildInputText(text));
+    }
 
-        UTF8InputTextBuilder builder = new UTF8InputTextBuilder(text, grammar);
-        for (InputTextPlugin plugin : inputTextPlugins) {
-            plugin.rewrite(builder);
+    @Override
+    public List<Morpheme> tokenize(Tokenizer.SplitMode mode, byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+        return tokenizeUTF8(mode, bytes, offset, length, offset);
+    }
+
+    @Override
+    public List<Morpheme> tokenize(Tokenizer.SplitMode mode, ByteBuffer buffer) {
+        int position = buffer.position();
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            return tokenizeUTF8(mode, buffer.array(), buffer.arrayOffset() + position, length, position);
+        }
+        byte[] bytes = new byte[length];
+        buffer.duplicate().get(bytes);
+        return tokenizeUTF8(mode, bytes, 0, length, position);
+    }
+
+    @Override
+    public List<Morpheme> tokenize(Tokenizer.SplitMode mode, CharSequence text, int begin, int end) {
+        if (begin < 0 || end > text.length() || begin > end) {
+            throw new IndexOutOfBoundsException("begin: " + begin + ", end: " + end);
+        }
+        if (begin == end) {
+            return Collections.emptyList();
+        }
+        builder.setOriginalCoordinates(begin, null);
+        // the original text is kept, since the surfaces are cut from it
+        transduce(text.subSequence(begin, end).toString(), text, begin, end);
+        return tokenize(mode, builder.build());
+    }
+
+    private List<Morpheme> tokenizeUTF8(Tokenizer.SplitMode mode, byte[] bytes, int offset, int length, int base) {
+        if (length == 0) {
+            return Collections.emptyList();
         }
-        UTF8InputText input = builder.build();
+        if (inputTextPlugins.isEmpty()) {
+            return tokenize(mode, builder.build(bytes, offset, length, base));
+        }
+
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes, offset, length)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("malformed UTF-8", e);
+        }
+        transduce(text, text, 0, text.length());
+        if (builder.isUnchanged()) {
+            // the bytes are used as they are, instead of encoding the text again
+            return tokenize(mode, builder.build(bytes, offset, length, base));
+        }
+        builder.setOriginalCoordinates(base, Arrays.copyOfRange(bytes, offset, offset + length));
+        return tokenize(mode, builder.build());
+    }
+
+    @Override
+    public StreamingTokenizer createStreamingTokenizer(Tokenizer.SplitMode mode, Consumer<List<Morpheme>> output) {
+        return new StreamingTokenizerImpl(this, grammar.getBOSParameter()[1], mode, output,
+                StreamingTokenizerImpl.DEFAULT_CHUNK_LENGTH);
+    }
+
+    /**
+     * Tokenizes the head of a text which may continue, and sends the morphemes up
+     * to the last node shared by the best paths of the candidates.
+     *
+     * @param stream
+     *            the state of the text
+     * @param text
+     *            the text not determined yet
+     * @return the length of the head whose morphemes are sent
+     */
+    @Override
+    public int tokenizeHead(StreamingTokenizerImpl stream, String text) {
+        builder.setOriginalCoordinates(stream.base, null);
+        UTF8InputText input = buildInputTextHead(text, false);
+        int length = input.getByteText().length;
+        lattice.setBeam(0, -1);
+        try {
+            int horizon = buildHeadLattice(input, stream.bosRightId);
+            int index = findSplittableAncestor(input, horizon);
+            if (index == LatticeImpl.NONE) {
+                return 0;
+            }
+
+            List<LatticeNode> path = lattice.getPath(index);
+            for (PathRewritePlugin plugin : pathRewritePlugins) {
+                // the previous plugins may have replaced the last node
+                if (!plugin.canSplitAfter(input, path.get(path.size() - 1))) {
+                    return 0;
+                }
+                plugin.rewrite(input, path, lattice);
+            }
+            stream.bosRightId = lattice.getRightId(index);
+            stream.output.accept(createMorphemeList(stream.mode, input, path));
+            return getSplitOffset(input, lattice.getEnd(index));
+        } finally {
+            lattice.clear();
+            lattice.setBeam(beamWidth, beamThreshold);
+        }
+    }
+
+    /**
+     * Tokenizes the rest of a text, and sends the morphemes.
+     *
+     * @param stream
+     *            the state of the text
+     * @param text
+     *            the text not determined yet
+     */
+    @Override
+    public void tokenizeTail(StreamingTokenizerImpl stream, String text) {
+        builder.setOriginalCoordinates(stream.base, null);
+        UTF8InputText input = buildInputText(text);
+        lattice.setBeam(0, -1);
+        List<LatticeNode> path;
+        try {
+            buildLattice(input, stream.bosRightId);
+            path = lattice.getBestPath();
+            for (PathRewritePlugin plugin : pathRewritePlugins) {
+                plugin.rewrite(input, path, lattice);
+            }
+        } finally {
+            lattice.clear();
+            lattice.setBeam(beamWidth, beamThreshold);
+        }
+        stream.output.accept(createMorphemeList(stream.mode, input, path));
+    }
+
+    /**
+     * Tokenizes a window of a long text as if the text began at the window.
+     *
+     * <p>
+     * Unless the window is the last one, the morphemes are determined up to the
+     * last node shared by the best paths of the candidates. The nodes after which
+     * the text can be split are recorded, so that the morphemes following one of
+     * them can be used when the preceding windows end with the same node.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            the text of the window
+     * @param base
+     *            the index of the window in the whole text
+     * @param isLast
+     *            {@code true} if the window is at the end of the whole text
+     * @return the morphemes of the window
+     */
+    ParallelTokenizer.Window tokenizeWindow(Tokenizer.SplitMode mode, String text, int base, boolean isLast) {
+        builder.setOriginalCoordinates(base, null);
+        UTF8InputText input = buildInputTextHead(text, isLast);
+        short bosRightId = grammar.getBOSParameter()[1];
+        ParallelTokenizer.Window window = new ParallelTokenizer.Window(base, bosRightId);
+        lattice.setBeam(0, -1);
+        try {
+            int index;
+            if (isLast) {
+                buildLattice(input, bosRightId);
+                index = lattice.getLastIndex();
+            } else {
+                index = findSplittableAncestor(input, buildHeadLattice(input, bosRightId));
+                if (index == LatticeImpl.NONE) {
+                    return window;
+                }
+            }
+
+            int length = input.getByteText().length;
+            for (int i = index; i != LatticeImpl.NONE; i = lattice.getPreviousIndex(i)) {
+                if (isSplittable(input, i, length)) {
+                    window.addSplit(base + getSplitOffset(input, lattice.getEnd(i)), lattice.getRightId(i));
+                }
+            }
+            List<LatticeNode> path = lattice.getPath(index);
+            for (PathRewritePlugin plugin : pathRewritePlugins) {
+                if (!isLast && !plugin.canSplitAfter(input, path.get(path.size() - 1))) {
+                    return window;
+                }
+                plugin.rewrite(input, path, lattice);
+            }
+            window.setMorphemes(createMorphemeList(mode, input, path));
+            if (!isLast) {
+                window.setEnd(base + getSplitOffset(input, lattice.getEnd(index)), lattice.getRightId(index));
+            }
+            return window;
+        } finally {
+            lattice.clear();
+            lattice.setBeam(beamWidth, beamThreshold);
+        }
+    }
+
+    /**
+     * Returns the last node shared by the best paths of the candidates after which
+     * the text can be split, or {@link LatticeImpl#NONE}.
+     */
+    private int findSplittableAncestor(UTF8InputText input, int horizon) {
+        int length = input.getByteText().length;
+        int index = lattice.findCommonAncestor(horizon);
+        while (index != LatticeImpl.NONE && !isSplittable(input, index, length)) {
+            index = lattice.getPreviousIndex(index);
+        }
+        return index;
+    }
+
+    private boolean isSplittable(UTF8InputText input, int index, int length) {
+        int end = lattice.getEnd(index);
+        return end < length && getSplitOffset(input, end) > 0 && canSplitPath(input, lattice.getNode(index));
+    }
+
+    /**
+     * Builds the input text from the head of a text, recording where the input text
+     * plugins allow to split it.
+     *
+     * @param isEnd
+     *            {@code true} if the text does not continue
+     */
+    private UTF8InputText buildInputTextHead(String text, boolean isEnd) {
+        splitOffsetsSize = 0;
+        if (inputTextPlugins.isEmpty()) {
+            builder.reset(text);
+            splitOffsets = ensureCapacity(splitOffsets, text.length() + 1);
+            for (int i = 0; i <= text.length(); i++) {
+                splitOffsets[i] = i;
+            }
+            splitOffsetsSize = text.length() + 1;
+            return builder.build();
+        }
+
+        inputTextTransducer.begin(text);
+        for (int i = 0; i < text.length();) {
+            int codePoint = text.codePointAt(i);
+            inputTextTransducer.accept(codePoint, i);
+            i += Character.charCount(codePoint);
+            if (inputTextTransducer.isIdle()) {
+                int modifiedIndex = builder.getReceivedLength();
+                if (modifiedIndex >= splitOffsetsSize) { // keep the first one
+                    splitOffsets = ensureCapacity(splitOffsets, modifiedIndex + 1);
+                    Arrays.fill(splitOffsets, splitOffsetsSize, modifiedIndex, -1);
+                    splitOffsets[modifiedIndex] = i;
+                    splitOffsetsSize = modifiedIndex + 1;
+                }
+            }
+        }
+        if (isEnd) {
+            inputTextTransducer.end();
+        } else {
+            builder.end(); // the pending code points are not sent
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the original index where the text can be split before the position,
+     * or -1. The input text plugins must be idle there, and a run of the characters
+     * of the same category types must begin at it.
+     */
+    private int getSplitOffset(UTF8InputText input, int position) {
+        int modifiedIndex = input.getOffsetTextLength(position);
+        if (modifiedIndex >= splitOffsetsSize || input.getCharCategoryContinuousLength(position - 1) != 1) {
+            return -1;
+        }
+        return splitOffsets[modifiedIndex];
+    }
+
+    private boolean canSplitPath(InputText input, LatticeNode node) {
+        for (PathRewritePlugin plugin : pathRewritePlugins) {
+            if (!plugin.canSplitAfter(input, node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private UTF8InputText buildInputText(String text) {
+        transduce(text, text, 0, text.length());
+        return builder.build();
+    }
+
+    /**
+     * Passes the region of the text, whose copy is {@code originalText}, through
+     * the input text plugins into the builder.
+     */
+    private void transduce(String originalText, CharSequence text, int begin, int end) {
+        if (inputTextPlugins.isEmpty()) {
+            builder.reset(originalText);
+            return;
+        }
+        inputTextTransducer.begin(originalText);
+        for (int i = begin; i < end;) {
+            int codePoint = text.charAt(i);
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < end
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint((char) codePoint, text.charAt(i + 1));
+            }
+            inputTextTransducer.accept(codePoint, i - begin);
+            i += Character.charCount(codePoint);
+        }
+        inputTextTransducer.end();
+    }
+
+    private List<Morpheme> tokenize(Tokenizer.SplitMode mode, UTF8InputText input) {
         if (dumpOutput != null) {
             dumpOutput.println("=== Input dump:");
             dumpOutput.println(input.getText());
         }
 
         buildLattice(input);
+        if (lattice.isBeamEnabled() && !lattice.isEosConnected()) {
+            // the beam pruned all of the paths
+            beamFallbackCount++;
+            buildExactLattice(input);
+        }
 
         if (dumpOutput != null) {
             dumpOutput.println("=== Lattice dump:");
@@ -88,6 +424,10 @@ class JapaneseTokenizer implements Tokenizer {
         }
         lattice.clear();
 
+        return createMorphemeList(mode, input, path);
+    }
+
+    private MorphemeList createMorphemeList(Tokenizer.SplitMode mode, UTF8InputText input, List<LatticeNode> path) {
         if (mode != Tokenizer.SplitMode.C) {
             path = splitPath(path, mode);
         }
@@ -106,47 +446,133 @@ class JapaneseTokenizer implements Tokenizer {
         dumpOutput = output;
     }
 
+    @Override
+    public void setBeam(int width, int threshold) {
+        lattice.setBeam(width, threshold);
+        beamWidth = width;
+        beamThreshold = threshold;
+    }
+
+    @Override
+    public long getPrunedNodeCount() {
+        return lattice.getPrunedNodeCount();
+    }
+
+    /**
+     * Returns the number of the inputs which were tokenized again without the beam
+     * because the beam pruned all of the paths.
+     *
+     * @return the number of the inputs
+     */
+    long getBeamFallbackCount() {
+        return beamFallbackCount;
+    }
+
+    /**
+     * Returns the approximate size of the working memory kept for the next input.
+     *
+     * @return the size in bytes
+     */
+    long getScratchBytes() {
+        return lattice.getScratchBytes() + builder.getScratchBytes() + (long) splitOffsets.length * Integer.BYTES;
+    }
+
+    private void buildExactLattice(UTF8InputText input) {
+        lattice.setBeam(0, -1);
+        try {
+            buildLattice(input);
+        } finally {
+            lattice.setBeam(beamWidth, beamThreshold);
+        }
+    }
+
     LatticeImpl buildLattice(UTF8InputText input) {
+        return buildLattice(input, grammar.getBOSParameter()[1]);
+    }
+
+    private LatticeImpl buildLattice(UTF8InputText input, short bosRightId) {
+        lattice.resize(input);
+        lattice.setBosRightId(bosRightId);
+        for (int position = 0; position < lattice.size(); position++) {
+            int i = lattice.getOffset(position);
+            if (!input.canBow(i) || !lattice.hasPreviousNode(i)) {
+                continue;
+            }
+            if (!insertNodes(input, input, i)) {
+                throw new IllegalStateException("there is no morpheme at " + i);
+            }
+        }
+        lattice.connectEosNode();
+
+        return lattice;
+    }
+
+    /**
+     * Builds the lattice of the head of a text which may continue.
+     *
+     * @return the first position whose nodes may change if the text continues
+     */
+    private int buildHeadLattice(UTF8InputText input, short bosRightId) {
         byte[] bytes = input.getByteText();
-        lattice.resize(bytes.length);
-        for (int i = 0; i < bytes.length; i++) {
+        lattice.resize(input);
+        lattice.setBosRightId(bosRightId);
+        PartialInputText partialInput = new PartialInputText(input);
+        for (int position = 0; position < lattice.size(); position++) {
+            int i = lattice.getOffset(position);
             if (!input.canBow(i) || !lattice.hasPreviousNode(i)) {
                 continue;
             }
-            Iterator<int[]> iterator = lexicon.lookup(bytes, i);
-            boolean hasWords = iterator.hasNext();
-            while (iterator.hasNext()) {
-                int[] r = iterator.next();
-                int wordId = r[0];
-                int end = r[1];
-
-                LatticeNode n = new LatticeNodeImpl(lexicon, lexicon.getLeftId(wordId), lexicon.getRightId(wordId),
-                        lexicon.getCost(wordId), wordId);
-                lattice.insert(i, end, n);
-            }
-
-            // OOV
-            if (!input.getCharCategoryTypes(i).contains(CategoryType.NOOOVBOW)) {
-                for (OovProviderPlugin plugin : oovProviderPlugins) {
-                    for (LatticeNode node : plugin.getOOV(input, i, hasWords)) {
-                        hasWords = true;
-                        lattice.insert(node.getBegin(), node.getEnd(), node);
-                    }
-                }
+            if (lexicon.isLookupTruncated(bytes, i)) {
+                return i;
             }
-            if (!hasWords && defaultOovProvider != null) {
-                for (LatticeNode node : defaultOovProvider.getOOV(input, i, hasWords)) {
-                    hasWords = true;
-                    lattice.insert(node.getBegin(), node.getEnd(), node);
-                }
+            partialInput.resetReach();
+            boolean hasWords = insertNodes(input, partialInput, i);
+            if (partialInput.isTruncated()) {
+                return i;
             }
             if (!hasWords) {
                 throw new IllegalStateException("there is no morpheme at " + i);
             }
         }
-        lattice.connectEosNode();
+        return bytes.length;
+    }
 
-        return lattice;
+    /**
+     * Inserts the nodes beginning at the position.
+     *
+     * @param input
+     *            the input text
+     * @param oovInput
+     *            the input text passed to the OOV provider plugins
+     * @param i
+     *            the position
+     * @return {@code false} if no node is inserted
+     */
+    private boolean insertNodes(UTF8InputText input, InputText oovInput, int i) {
+        lookupBegin = i;
+        boolean hasWords = lexicon.lookup(input.getByteText(), i, wordSink) > 0;
+
+        // OOV
+        if ((input.getCharCategoryTypeBits(i) & CategoryType.NOOOVBOW.getId()) == 0) {
+            oovSink.begin = i;
+            oovSink.count = 0;
+            for (OovProviderPlugin plugin : oovProviderPlugins) {
+                plugin.provideOOV(oovInput, i, hasWords, oovSink);
+                hasWords |= oovSink.count > 0;
+            }
+        }
+        if (!hasWords && defaultOovProvider != null) {
+            oovSink.begin = i;
+            oovSink.count = 0;
+            defaultOovProvider.provideOOV(oovInput, i, hasWords, oovSink);
+            hasWords = oovSink.count > 0;
+        }
+        return hasWords;
+    }
+
+    private void insertWord(int wordId, int end) {
+        lattice.insert(lookupBegin, end, lexicon.getLeftId(wordId), lexicon.getRightId(wordId), lexicon.getCost(wordId),
+                wordId);
     }
 
     List<LatticeNode> splitPath(List<LatticeNode> path, SplitMode mode) {
@@ -154,9 +580,9 @@ class JapaneseTokenizer implements Tokenizer {
         for (LatticeNode node : path) {
             int[] wids;
             if (mode == Tokenizer.SplitMode.A) {
-                wids = node.getWordInfo().getAunitSplit();
+                wids = LexiconSet.readAunitSplit(node.getWordInfo());
             } else { // Tokenizer.SplitMode.B
-                wids = node.getWordInfo().getBunitSplit();
+                wids = LexiconSet.readBunitSplit(node.getWordInfo());
             }
             if (wids.length == 0 || wids.length == 1) {
                 newPath.add(node);
@@ -181,4 +607,21 @@ class JapaneseTokenizer implements Tokenizer {
             i++;
         }
     }
+
+    private class OovSink implements OovProviderPlugin.Sink {
+        int begin;
+        int count;
+
+        @Override
+        public void accept(int length, short leftId, short rightId, short cost, short posId) {
+            accept(length, leftId, rightId, cost, posId, null);
+        }
+
+        @Override
+        public void accept(int length, short leftId, short rightId, short cost, short posId,
+                Supplier<WordInfo> wordInfo) {
+            lattice.insertOOV(begin, begin + length, leftId, rightId, cost, posId, wordInfo);
+            count++;
+        }
+    }
 }
@@ -96,6 +96,11 @@ class JoinKatakanaOovPlugin extends PathRewritePlugin {
         }
     }
 
+    @Override
+    public boolean canSplitAfter(InputText text, LatticeNode node) {
+        return !isKatakanaNode(text, node);
+    }
+
     boolean isKatakanaNode(InputText text, LatticeNode node) {
         return getCharCategoryTypes(text, node).contains(CategoryType.KATAKANA);
     }
@@ -130,6 +130,14 @@ class JoinNumericPlugin extends PathRewritePlugin {
         }
     }
 
+    @Override
+    public boolean canSplitAfter(InputText text, LatticeNode node) {
+        Set<CategoryType> types = getCharCategoryTypes(text, node);
+        String s = node.getWordInfo().getNormalizedForm();
+        return !types.contains(CategoryType.NUMERIC) && !types.contains(CategoryType.KANJINUMERIC) && !s.equals(".")
+                && !s.equals(",");
+    }
+
     private void concat(List<LatticeNode> path, int begin, int end, Lattice lattice, NumericParser parser) {
         if (path.get(begin).getWordInfo().getPOSId() != numericPOSId)
             return;
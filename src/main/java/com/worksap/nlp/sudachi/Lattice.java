@@ -26,6 +26,10 @@ import java.util.Optional;
  * A node of the graph is a morpheme and has a position of the input text. Only
  * the adjacent nodes are connected.
  *
+ * <p>
+ * The same object is returned for a node each time it is obtained, until the
+ * lattice is used for the next input.
+ *
  * @see LatticeNode
  */
 public interface Lattice {
@@ -18,92 +18,444 @@ package com.worksap.nlp.sudachi;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.Lexicon;
 import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
+/**
+ * A lattice whose nodes are stored in parallel primitive arrays.
+ *
+ * <p>
+ * The arrays are kept across {@link #clear} and reused by the next input, so
+ * that building a lattice does not allocate an object per node. The
+ * {@link LatticeNode} views are materialized only for the best path and for the
+ * plugins which ask for them, and are kept until {@link #clear}.
+ *
+ * <p>
+ * The positions of the lattice are the boundaries of the characters of the
+ * input text, so that there are no positions inside the UTF-8 sequences. The
+ * offsets given to and returned by the methods are the byte offsets of the
+ * input text, as in {@link LatticeNode}, and are translated at the boundary.
+ *
+ * <p>
+ * The nodes of OOV morphemes are also stored as primitive tuples. Their
+ * surfaces and {@link WordInfo} are built when they are materialized.
+ *
+ * <p>
+ * The nodes are connected to their best previous nodes as they are inserted.
+ * The nodes ending at a position are grouped by their right-ID, keeping only
+ * the best one of each group, and the best previous node is memoized for each
+ * left-ID, so the connection costs are read once per pair of the distinct IDs
+ * at each position. The ties are broken by the order of the insertion as in the
+ * plain search.
+ *
+ * <p>
+ * A text fed in pieces is searched in successive lattices. When the best paths
+ * of all the nodes across a position share a node, the path up to that node is
+ * determined, and the next lattice begins after it with a BOS node which has
+ * the right-ID of that node.
+ */
 class LatticeImpl implements Lattice {
 
-    private ArrayList<List<LatticeNodeImpl>> endLists;
+    static final int NONE = -1;
+    private static final int BOS = 0;
+    private static final int INITIAL_NODE_CAPACITY = 256;
+    static final int REFERENCE_BYTES = 4;
+
+    private int[] begins;
+    private int[] ends;
+    private short[] leftIds;
+    private short[] rightIds;
+    private short[] costs;
+    private int[] wordIds;
+    private int[] totalCosts;
+    private int[] prevIndexes;
+    private int[] nextWithSameEnd;
+    private int[] nextWithSameBegin;
+    private LatticeNodeImpl[] nodeObjects;
+    private boolean[] oovs;
+    private short[] oovPosIds;
+    private Supplier<WordInfo>[] oovWordInfos;
+    private int nodeSize;
+
+    private int[] endHeads;
+    private int[] endTails;
+    private int[] beginHeads;
+    private int[] beginTails;
     private int size;
     private int capacity;
-    private LatticeNodeImpl eosNode;
+    private int eosIndex;
+
+    // the byte offsets of the positions, and the positions of the byte offsets
+    private int[] positionOffsets = new int[0];
+    private int[] offsetPositions = new int[0];
+    private int length;
 
     private Grammar grammar;
+    private Lexicon lexicon;
+    private short[] bosParams;
     private short[] eosParams;
+    private UTF8InputText inputText;
+
+    // the memo of the best previous nodes of the nodes beginning at memoPosition
+    private int memoPosition = NONE;
+    private int memoEpoch;
+    private int[] memoStamps = new int[0];
+    private int[] memoCosts = new int[0];
+    private int[] memoPrevIndexes = new int[0];
+    private int[] groupStamps = new int[0];
+    private int[] groupSlots = new int[0];
+    private short[] groupRightIds = new short[0];
+    private int[] groupCosts = new int[0];
+    private int[] groupIndexes = new int[0];
+    private int groupSize;
 
-    LatticeImpl(Grammar grammar) {
+    private int beamWidth;
+    private int beamThreshold = -1;
+    private long[] beamKeys = new long[0];
+    private long prunedNodeCount;
+    private int lastPrunedPosition = NONE;
+
+    LatticeImpl(Grammar grammar, Lexicon lexicon) {
         this.grammar = grammar;
+        this.lexicon = lexicon;
 
+        bosParams = grammar.getBOSParameter();
         eosParams = grammar.getEOSParameter();
 
-        endLists = new ArrayList<>();
-        LatticeNodeImpl bosNode = new LatticeNodeImpl();
-        short[] bosParams = grammar.getBOSParameter();
-        bosNode.setParameter(bosParams[0], bosParams[1], bosParams[2]);
-        bosNode.isConnectedToBOS = true;
-        endLists.add(Collections.singletonList(bosNode));
+        allocateNodes(INITIAL_NODE_CAPACITY);
+        allocatePositions(0);
+        eosIndex = NONE;
+        addBosNode();
     }
 
+    /**
+     * Prepares the lattice for a text whose every byte offset is a position.
+     *
+     * @param size
+     *            the length of the text
+     */
     void resize(int size) {
+        if (nodeSize > 1) {
+            clear();
+        }
+        positionOffsets = ensureCapacity(positionOffsets, size + 1);
+        offsetPositions = ensureCapacity(offsetPositions, size + 1);
+        for (int i = 0; i <= size; i++) {
+            positionOffsets[i] = i;
+            offsetPositions[i] = i;
+        }
+        setSize(size, size);
+    }
+
+    /**
+     * Prepares the lattice for the input text. The positions are the boundaries of
+     * its characters, and the surfaces of OOV morphemes are taken from it.
+     *
+     * @param inputText
+     *            the input text
+     */
+    void resize(UTF8InputText inputText) {
+        if (nodeSize > 1) {
+            clear();
+        }
+        byte[] bytes = inputText.getByteText();
+        positionOffsets = ensureCapacity(positionOffsets, bytes.length + 1);
+        offsetPositions = ensureCapacity(offsetPositions, bytes.length + 1);
+        int position = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if ((bytes[i] & 0xC0) == 0x80) { // a continuation byte
+                offsetPositions[i] = NONE;
+            } else {
+                positionOffsets[position] = i;
+                offsetPositions[i] = position++;
+            }
+        }
+        positionOffsets[position] = bytes.length;
+        offsetPositions[bytes.length] = position;
+        setSize(position, bytes.length);
+        this.inputText = inputText;
+    }
+
+    private void setSize(int size, int length) {
         if (size > capacity) {
             expand(size);
         }
         this.size = size;
+        this.length = length;
+    }
 
-        eosNode = new LatticeNodeImpl();
-        eosNode.setParameter(eosParams[0], eosParams[1], eosParams[2]);
-        eosNode.begin = eosNode.end = size;
+    /**
+     * Returns the number of the positions except the last one.
+     *
+     * @return the number of the positions
+     */
+    int size() {
+        return size;
     }
 
-    void clear() {
-        for (int i = 1; i < size + 1; i++) {
-            endLists.get(i).clear();
+    /**
+     * Returns the byte offset of the position.
+     *
+     * @param position
+     *            the position
+     * @return the byte offset
+     */
+    int getOffset(int position) {
+        return positionOffsets[position];
+    }
+
+    /**
+     * Returns the position at the byte offset, or {@link #NONE} if it is inside a
+     * character.
+     */
+    private int getPosition(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("offset: " + offset);
+        }
+        return offsetPositions[offset];
+    }
+
+    private int getBoundaryPosition(int offset) {
+        int position = getPosition(offset);
+        if (position == NONE) {
+            throw new IllegalArgumentException("offset " + offset + " is inside a character");
+        }
+        return position;
+    }
+
+    /**
+     * Sets the right-ID of the BOS node, so that the lattice continues the path
+     * which ends with a node of the right-ID. It is reset by {@link #clear}.
+     *
+     * @param rightId
+     *            the right-ID of the BOS node
+     */
+    void setBosRightId(short rightId) {
+        rightIds[BOS] = rightId;
+        memoPosition = NONE;
+    }
+
+    /**
+     * Sets the beam of the search.
+     *
+     * @param width
+     *            the maximum number of the previous nodes ending at each position,
+     *            or 0 for no limit
+     * @param threshold
+     *            the maximum difference of the total cost from the best one at each
+     *            position, or a negative value for no limit
+     */
+    void setBeam(int width, int threshold) {
+        if (width < 0) {
+            throw new IllegalArgumentException("beam width must not be negative");
         }
+        beamWidth = width;
+        beamThreshold = threshold;
+        memoPosition = NONE;
+    }
+
+    boolean isBeamEnabled() {
+        return beamWidth > 0 || beamThreshold >= 0;
+    }
+
+    /**
+     * Returns the number of the nodes pruned by the beam since the lattice was
+     * created.
+     *
+     * @return the number of the pruned nodes
+     */
+    long getPrunedNodeCount() {
+        return prunedNodeCount;
+    }
+
+    /**
+     * Returns the approximate size of the arrays kept for the next input. They grow
+     * to fit the longest input, and are never shrunk.
+     *
+     * @return the size in bytes
+     */
+    long getScratchBytes() {
+        // 7 ints, 4 shorts, a boolean and 2 references for each node
+        long bytes = (long) begins.length * (7 * Integer.BYTES + 4 * Short.BYTES + 1 + 2 * REFERENCE_BYTES);
+        bytes += (long) (endHeads.length + endTails.length + beginHeads.length + beginTails.length) * Integer.BYTES;
+        bytes += (long) (positionOffsets.length + offsetPositions.length) * Integer.BYTES;
+        bytes += (long) (memoStamps.length + memoCosts.length + memoPrevIndexes.length) * Integer.BYTES;
+        bytes += (long) (groupStamps.length + groupSlots.length + groupCosts.length + groupIndexes.length)
+                * Integer.BYTES;
+        bytes += (long) groupRightIds.length * Short.BYTES;
+        bytes += (long) beamKeys.length * Long.BYTES;
+        return bytes;
+    }
+
+    void clear() {
+        Arrays.fill(endHeads, 1, size + 1, NONE);
+        Arrays.fill(endTails, 1, size + 1, NONE);
+        Arrays.fill(beginHeads, 0, size + 1, NONE);
+        Arrays.fill(beginTails, 0, size + 1, NONE);
+        Arrays.fill(nodeObjects, 0, nodeSize, null);
+        Arrays.fill(oovWordInfos, 0, nodeSize, null);
         size = 0;
-        eosNode = null;
+        length = 0;
+        eosIndex = NONE;
+        inputText = null;
+        memoPosition = NONE;
+        lastPrunedPosition = NONE;
+        rightIds[BOS] = bosParams[1];
+        nodeSize = 1; // keep BOS
     }
 
     void expand(int newSize) {
-        endLists.ensureCapacity(newSize + 1);
-        for (int i = size + 1; i < newSize + 1; i++) {
-            endLists.add(new ArrayList<LatticeNodeImpl>());
-        }
+        int oldLength = endHeads.length;
+        int newLength = newSize + 1;
+        endHeads = Arrays.copyOf(endHeads, newLength);
+        endTails = Arrays.copyOf(endTails, newLength);
+        beginHeads = Arrays.copyOf(beginHeads, newLength);
+        beginTails = Arrays.copyOf(beginTails, newLength);
+        Arrays.fill(endHeads, oldLength, newLength, NONE);
+        Arrays.fill(endTails, oldLength, newLength, NONE);
+        Arrays.fill(beginHeads, oldLength, newLength, NONE);
+        Arrays.fill(beginTails, oldLength, newLength, NONE);
         capacity = newSize;
     }
 
     @Override
     public List<LatticeNodeImpl> getNodesWithEnd(int end) {
-        return endLists.get(end);
+        List<LatticeNodeImpl> nodes = new ArrayList<>();
+        int position = getPosition(end);
+        if (position == NONE) {
+            return nodes;
+        }
+        for (int i = endHeads[position]; i != NONE; i = nextWithSameEnd[i]) {
+            nodes.add(getNode(i));
+        }
+        return nodes;
     }
 
     @Override
     public List<LatticeNodeImpl> getNodes(int begin, int end) {
-        return endLists.get(end).stream().filter(n -> (n.getBegin() == begin)).collect(Collectors.toList());
+        List<LatticeNodeImpl> nodes = new ArrayList<>();
+        int beginPosition = getPosition(begin);
+        int endPosition = getPosition(end);
+        if (beginPosition == NONE || endPosition == NONE) {
+            return nodes;
+        }
+        for (int i = beginHeads[beginPosition]; i != NONE; i = nextWithSameBegin[i]) {
+            if (ends[i] == endPosition) {
+                nodes.add(getNode(i));
+            }
+        }
+        return nodes;
     }
 
     @Override
     public Optional<LatticeNodeImpl> getMinimumNode(int begin, int end) {
-        return endLists.get(end).stream().filter(n -> (n.getBegin() == begin)).min((l, r) -> l.cost - r.cost);
+        int beginPosition = getPosition(begin);
+        int endPosition = getPosition(end);
+        if (beginPosition == NONE || endPosition == NONE) {
+            return Optional.empty();
+        }
+        int minimum = NONE;
+        for (int i = beginHeads[beginPosition]; i != NONE; i = nextWithSameBegin[i]) {
+            if (ends[i] == endPosition && (minimum == NONE || costs[i] < costs[minimum])) {
+                minimum = i;
+            }
+        }
+        return (minimum == NONE) ? Optional.empty() : Optional.of(getNode(minimum));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException
+     *             if {@code begin} or {@code end} is inside a character
+     */
     @Override
     public void insert(int begin, int end, LatticeNode node) {
         LatticeNodeImpl n = (LatticeNodeImpl) node;
-        endLists.get(end).add(n);
+        int index = addNode(getBoundaryPosition(begin), getBoundaryPosition(end), n.leftId, n.rightId, n.cost,
+                n.wordId);
         n.begin = begin;
         n.end = end;
+        nodeObjects[index] = n;
+        n.latticeIndex = index;
+
+        connectNode(index);
+        n.totalCost = totalCosts[index];
+        n.isConnectedToBOS = isConnected(index);
+    }
 
-        connectNode(n);
+    /**
+     * Inserts a node of the lexicon without allocating a {@link LatticeNode}.
+     *
+     * @param begin
+     *            the index to the first position in the input text
+     * @param end
+     *            the index to after the last position in the input text
+     * @param leftId
+     *            the left-ID of the morpheme
+     * @param rightId
+     *            the right-ID of the morpheme
+     * @param cost
+     *            the word occurrence cost of the morpheme
+     * @param wordId
+     *            the word ID of the morpheme
+     */
+    void insert(int begin, int end, short leftId, short rightId, short cost, int wordId) {
+        int index = addNode(offsetPositions[begin], offsetPositions[end], leftId, rightId, cost, wordId);
+        connectNode(index);
+    }
+
+    /**
+     * Inserts a node of an OOV morpheme without allocating a {@link LatticeNode}
+     * nor its {@link WordInfo}.
+     *
+     * @param begin
+     *            the index to the first position in the input text
+     * @param end
+     *            the index to after the last position in the input text
+     * @param leftId
+     *            the left-ID of the morpheme
+     * @param rightId
+     *            the right-ID of the morpheme
+     * @param cost
+     *            the word occurrence cost of the morpheme
+     * @param posId
+     *            the part-of-speech ID of the morpheme
+     * @param wordInfo
+     *            the supplier of the {@link WordInfo} of the morpheme, or
+     *            {@code null} to build it from the input text
+     */
+    void insertOOV(int begin, int end, short leftId, short rightId, short cost, short posId,
+            Supplier<WordInfo> wordInfo) {
+        int index = addNode(offsetPositions[begin], getBoundaryPosition(end), leftId, rightId, cost, 0);
+        oovs[index] = true;
+        oovPosIds[index] = posId;
+        oovWordInfos[index] = wordInfo;
+        connectNode(index);
     }
 
     @Override
     public void remove(int begin, int end, LatticeNode node) {
-        endLists.get(end).remove(node);
+        int position = getPosition(end);
+        if (position == NONE) {
+            return;
+        }
+        int index = findNode(position, node);
+        if (index == NONE) {
+            return;
+        }
+        unlink(endHeads, endTails, nextWithSameEnd, ends[index], index);
+        unlink(beginHeads, beginTails, nextWithSameBegin, begins[index], index);
+        if (ends[index] == memoPosition) {
+            memoPosition = NONE;
+        }
     }
 
     @Override
@@ -111,56 +463,253 @@ class LatticeImpl implements Lattice {
         return new LatticeNodeImpl();
     }
 
-    boolean hasPreviousNode(int index) {
-        return !endLists.get(index).isEmpty();
+    boolean hasPreviousNode(int offset) {
+        return endHeads[offsetPositions[offset]] != NONE;
+    }
+
+    void connectNode(int rIndex) {
+        int begin = begins[rIndex];
+        if (begin != memoPosition) {
+            groupPreviousNodes(begin);
+        }
+        short leftId = leftIds[rIndex];
+        if (leftId >= memoStamps.length) {
+            int length = Math.max(leftId + 1, memoStamps.length * 2);
+            memoStamps = Arrays.copyOf(memoStamps, length);
+            memoCosts = Arrays.copyOf(memoCosts, length);
+            memoPrevIndexes = Arrays.copyOf(memoPrevIndexes, length);
+        }
+        if (memoStamps[leftId] != memoEpoch) {
+            findPreviousNode(leftId);
+        }
+        prevIndexes[rIndex] = memoPrevIndexes[leftId];
+        totalCosts[rIndex] = memoCosts[leftId] + costs[rIndex];
+    }
+
+    /**
+     * Groups the connected nodes ending at the position by their right-ID, and
+     * clears the memo.
+     */
+    private void groupPreviousNodes(int position) {
+        memoPosition = position;
+        if (++memoEpoch == 0) {
+            Arrays.fill(memoStamps, 0);
+            Arrays.fill(groupStamps, 0);
+            memoEpoch = 1;
+        }
+        groupSize = 0;
+        long beamLimit = isBeamEnabled() ? computeBeamLimit(position) : Long.MAX_VALUE;
+        boolean counts = position > lastPrunedPosition; // count each position once
+        lastPrunedPosition = Math.max(lastPrunedPosition, position);
+        for (int l = endHeads[position]; l != NONE; l = nextWithSameEnd[l]) {
+            if (!isConnected(l)) {
+                continue;
+            }
+            if (beamKey(l) > beamLimit) {
+                if (counts) {
+                    prunedNodeCount++;
+                }
+                continue;
+            }
+            short rightId = rightIds[l];
+            if (rightId >= groupStamps.length) {
+                int length = Math.max(rightId + 1, groupStamps.length * 2);
+                groupStamps = Arrays.copyOf(groupStamps, length);
+                groupSlots = Arrays.copyOf(groupSlots, length);
+            }
+            if (groupStamps[rightId] != memoEpoch) {
+                if (groupSize == groupRightIds.length) {
+                    int length = Math.max(16, groupSize * 2);
+                    groupRightIds = Arrays.copyOf(groupRightIds, length);
+                    groupCosts = Arrays.copyOf(groupCosts, length);
+                    groupIndexes = Arrays.copyOf(groupIndexes, length);
+                }
+                groupStamps[rightId] = memoEpoch;
+                groupSlots[rightId] = groupSize;
+                groupRightIds[groupSize] = rightId;
+                groupCosts[groupSize] = totalCosts[l];
+                groupIndexes[groupSize] = l;
+                groupSize++;
+            } else {
+                int slot = groupSlots[rightId];
+                if (totalCosts[l] < groupCosts[slot]) { // keep the earlier one if tied
+                    groupCosts[slot] = totalCosts[l];
+                    groupIndexes[slot] = l;
+                }
+            }
+        }
     }
 
-    void connectNode(LatticeNodeImpl rNode) {
-        int begin = rNode.begin;
-        rNode.totalCost = Integer.MAX_VALUE;
-        for (LatticeNodeImpl lNode : endLists.get(begin)) {
-            if (!lNode.isConnectedToBOS) {
+    /**
+     * Returns the key of the worst node in the beam. The key is ordered by the
+     * total cost and the index of the node.
+     */
+    private long computeBeamLimit(int position) {
+        int size = 0;
+        int best = Integer.MAX_VALUE;
+        for (int l = endHeads[position]; l != NONE; l = nextWithSameEnd[l]) {
+            if (!isConnected(l)) {
                 continue;
             }
-            short connectCost = grammar.getConnectCost(lNode.rightId, rNode.leftId);
+            if (size == beamKeys.length) {
+                beamKeys = Arrays.copyOf(beamKeys, Math.max(16, size * 2));
+            }
+            beamKeys[size++] = beamKey(l);
+            best = Math.min(best, totalCosts[l]);
+        }
+        long limit = Long.MAX_VALUE;
+        if (beamThreshold >= 0 && (long) best + beamThreshold < Integer.MAX_VALUE) {
+            limit = beamKey(best + beamThreshold, Integer.MAX_VALUE);
+        }
+        if (beamWidth > 0 && size > beamWidth) {
+            Arrays.sort(beamKeys, 0, size);
+            limit = Math.min(limit, beamKeys[beamWidth - 1]);
+        }
+        return limit;
+    }
+
+    private long beamKey(int index) {
+        return beamKey(totalCosts[index], index);
+    }
+
+    private static long beamKey(int totalCost, int index) {
+        return ((long) totalCost << 32) | index;
+    }
+
+    private void findPreviousNode(short leftId) {
+        int totalCost = Integer.MAX_VALUE;
+        int bestPrevious = NONE;
+        for (int i = 0; i < groupSize; i++) {
+            short connectCost = grammar.getConnectCost(groupRightIds[i], leftId);
             if (connectCost == Grammar.INHIBITED_CONNECTION) {
                 continue; // this connection is not allowed
             }
-            int cost = lNode.totalCost + connectCost;
-            if (cost < rNode.totalCost) {
-                rNode.totalCost = cost;
-                rNode.bestPreviousNode = lNode;
+            int cost = groupCosts[i] + connectCost;
+            // the nodes are linked in the order of the insertion
+            if (cost < totalCost || (cost == totalCost && bestPrevious != NONE && groupIndexes[i] < bestPrevious)) {
+                totalCost = cost;
+                bestPrevious = groupIndexes[i];
             }
         }
-        rNode.isConnectedToBOS = (rNode.bestPreviousNode != null);
-        rNode.totalCost += rNode.cost;
+        memoStamps[leftId] = memoEpoch;
+        memoCosts[leftId] = totalCost;
+        memoPrevIndexes[leftId] = bestPrevious;
+    }
+
+    boolean isEosConnected() {
+        return eosIndex != NONE && isConnected(eosIndex);
     }
 
     void connectEosNode() {
-        connectNode(eosNode);
+        eosIndex = newNode(size, size, eosParams[0], eosParams[1], eosParams[2], 0);
+        connectNode(eosIndex);
     }
 
     List<LatticeNode> getBestPath() {
-        if (!eosNode.isConnectedToBOS) { // EOS node
+        return getPath(getLastIndex());
+    }
+
+    /**
+     * Returns the last node of the best path to EOS.
+     *
+     * @return the index of the node
+     * @throws IllegalStateException
+     *             if EOS is not connected
+     */
+    int getLastIndex() {
+        if (!isConnected(eosIndex)) {
             throw new IllegalStateException("EOS isn't connected to BOS");
         }
+        return prevIndexes[eosIndex];
+    }
+
+    /**
+     * Returns the best path from BOS to the node.
+     *
+     * @param index
+     *            the index of the last node of the path
+     * @return the nodes of the path, without BOS
+     */
+    List<LatticeNode> getPath(int index) {
         ArrayList<LatticeNode> result = new ArrayList<>();
-        for (LatticeNodeImpl node = eosNode.bestPreviousNode; node != endLists.get(0)
-                .get(0); node = node.bestPreviousNode) {
-            result.add(node);
+        for (int i = index; i != BOS; i = prevIndexes[i]) {
+            result.add(getNode(i));
         }
         Collections.reverse(result);
         return result;
     }
 
+    /**
+     * Returns the last node shared by the best paths of all the connected nodes
+     * which begin before the position and end at or after it.
+     *
+     * <p>
+     * Every path to EOS passes through one of those nodes, so the best one passes
+     * through the returned node. The nodes beginning before the position must not
+     * change any more.
+     *
+     * @param offset
+     *            the byte offset of the position
+     * @return the index of the node, or {@link #NONE} if they share only BOS
+     */
+    int findCommonAncestor(int offset) {
+        int position = offsetPositions[offset];
+        int ancestor = NONE;
+        for (int end = position; end <= size; end++) {
+            for (int i = endHeads[end]; i != NONE; i = nextWithSameEnd[i]) {
+                if (begins[i] >= position || !isConnected(i)) {
+                    continue;
+                }
+                ancestor = (ancestor == NONE) ? i : findCommonAncestor(ancestor, i);
+                if (ancestor == BOS) {
+                    return NONE;
+                }
+            }
+        }
+        return ancestor;
+    }
+
+    private int findCommonAncestor(int a, int b) {
+        // the ends decrease strictly along the paths
+        while (a != b) {
+            if (ends[a] >= ends[b]) {
+                a = prevIndexes[a];
+            } else {
+                b = prevIndexes[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Returns the previous node of the node in its best path.
+     *
+     * @param index
+     *            the index of the node
+     * @return the index of the previous node, or {@link #NONE} if it is BOS
+     */
+    int getPreviousIndex(int index) {
+        int previous = prevIndexes[index];
+        return (previous == BOS) ? NONE : previous;
+    }
+
+    int getEnd(int index) {
+        return positionOffsets[ends[index]];
+    }
+
+    short getRightId(int index) {
+        return rightIds[index];
+    }
+
     void dump(PrintStream output) {
         int index = 0;
         for (int i = size + 1; i >= 0; i--) {
-            List<LatticeNodeImpl> rNodes = (i <= size) ? endLists.get(i) : Collections.singletonList(eosNode);
-            for (LatticeNodeImpl rNode : rNodes) {
+            int head = (i <= size) ? endHeads[i] : eosIndex;
+            for (int r = head; r != NONE; r = (i <= size) ? nextWithSameEnd[r] : NONE) {
                 String surface;
                 String pos;
-                if (!rNode.isDefined) {
+                LatticeNodeImpl rNode = (r == BOS || r == eosIndex) ? null : getNode(r);
+                if (rNode == null || !rNode.isDefined) {
                     surface = "(null)";
                     pos = "BOS/EOS";
                 } else {
@@ -174,16 +723,202 @@ class LatticeImpl implements Lattice {
                     }
                 }
 
-                output.print(String.format("%d: %d %d %s(%d) %s %d %d %d: ", index, rNode.getBegin(), rNode.getEnd(),
-                        surface, rNode.wordId, pos, rNode.leftId, rNode.rightId, rNode.cost));
+                output.print(String.format("%d: %d %d %s(%d) %s %d %d %d: ", index, positionOffsets[begins[r]],
+                        positionOffsets[ends[r]], surface, wordIds[r], pos, leftIds[r], rightIds[r], costs[r]));
                 index++;
 
-                for (LatticeNodeImpl lNode : endLists.get(rNode.begin)) {
-                    int cost = grammar.getConnectCost(lNode.rightId, rNode.leftId);
+                for (int l = endHeads[begins[r]]; l != NONE; l = nextWithSameEnd[l]) {
+                    int cost = grammar.getConnectCost(rightIds[l], leftIds[r]);
                     output.print(String.format("%d ", cost));
                 }
                 output.println();
             }
         }
     }
+
+    private void addBosNode() {
+        newNode(0, 0, bosParams[0], bosParams[1], bosParams[2], 0);
+        prevIndexes[BOS] = BOS;
+        totalCosts[BOS] = 0;
+        endHeads[0] = endTails[0] = BOS;
+        nextWithSameEnd[BOS] = NONE;
+    }
+
+    private boolean isConnected(int index) {
+        return prevIndexes[index] != NONE;
+    }
+
+    private int addNode(int begin, int end, short leftId, short rightId, short cost, int wordId) {
+        int index = newNode(begin, end, leftId, rightId, cost, wordId);
+        if (end == memoPosition) {
+            memoPosition = NONE;
+        }
+        append(endHeads, endTails, nextWithSameEnd, end, index);
+        append(beginHeads, beginTails, nextWithSameBegin, begin, index);
+        return index;
+    }
+
+    private int newNode(int begin, int end, short leftId, short rightId, short cost, int wordId) {
+        if (nodeSize == begins.length) {
+            allocateNodes(nodeSize * 2);
+        }
+        int index = nodeSize++;
+        begins[index] = begin;
+        ends[index] = end;
+        leftIds[index] = leftId;
+        rightIds[index] = rightId;
+        costs[index] = cost;
+        wordIds[index] = wordId;
+        totalCosts[index] = 0;
+        prevIndexes[index] = NONE;
+        nextWithSameEnd[index] = NONE;
+        nextWithSameBegin[index] = NONE;
+        nodeObjects[index] = null;
+        oovs[index] = false;
+        oovWordInfos[index] = null;
+        return index;
+    }
+
+    /**
+     * Returns the {@link LatticeNode} of the node, allocating it at the first call.
+     *
+     * The same object is returned until the lattice is cleared, so that the changes
+     * of it by the plugins are kept.
+     *
+     * @param index
+     *            the index of the node
+     * @return the node
+     */
+    LatticeNodeImpl getNode(int index) {
+        LatticeNodeImpl node = nodeObjects[index];
+        if (node == null) {
+            if (oovs[index]) {
+                node = createOOVNode(index);
+            } else {
+                node = new LatticeNodeImpl(lexicon, leftIds[index], rightIds[index], costs[index], wordIds[index]);
+                node.begin = positionOffsets[begins[index]];
+                node.end = positionOffsets[ends[index]];
+                node.latticeIndex = index;
+            }
+            nodeObjects[index] = node;
+        }
+        node.totalCost = totalCosts[index];
+        node.isConnectedToBOS = isConnected(index);
+        return node;
+    }
+
+    private LatticeNodeImpl createOOVNode(int index) {
+        int begin = positionOffsets[begins[index]];
+        int end = positionOffsets[ends[index]];
+        WordInfo wordInfo;
+        if (oovWordInfos[index] != null) {
+            wordInfo = oovWordInfos[index].get();
+        } else {
+            String surface = inputText.getSubstring(begin, end);
+            wordInfo = new WordInfo(surface, (short) (end - begin), oovPosIds[index], surface, surface, "");
+        }
+        LatticeNodeImpl node = new LatticeNodeImpl();
+        node.setOOV();
+        node.setParameter(leftIds[index], rightIds[index], costs[index]);
+        node.setWordInfo(wordInfo);
+        node.begin = begin;
+        node.end = end;
+        node.latticeIndex = index;
+        return node;
+    }
+
+    private int findNode(int endPosition, LatticeNode node) {
+        if (!(node instanceof LatticeNodeImpl)) {
+            return NONE;
+        }
+        int index = ((LatticeNodeImpl) node).latticeIndex;
+        for (int i = endHeads[endPosition]; i != NONE; i = nextWithSameEnd[i]) {
+            if (i == index && (nodeObjects[i] == null || nodeObjects[i] == node)) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private static void append(int[] heads, int[] tails, int[] next, int position, int index) {
+        if (heads[position] == NONE) {
+            heads[position] = index;
+        } else {
+            next[tails[position]] = index;
+        }
+        tails[position] = index;
+    }
+
+    private static void unlink(int[] heads, int[] tails, int[] next, int position, int index) {
+        int previous = NONE;
+        for (int i = heads[position]; i != NONE; previous = i, i = next[i]) {
+            if (i != index) {
+                continue;
+            }
+            if (previous == NONE) {
+                heads[position] = next[i];
+            } else {
+                next[previous] = next[i];
+            }
+            if (tails[position] == i) {
+                tails[position] = previous;
+            }
+            return;
+        }
+    }
+
+    private void allocateNodes(int newCapacity) {
+        if (begins == null) {
+            begins = new int[newCapacity];
+            ends = new int[newCapacity];
+            leftIds = new short[newCapacity];
+            rightIds = new short[newCapacity];
+            costs = new short[newCapacity];
+            wordIds = new int[newCapacity];
+            totalCosts = new int[newCapacity];
+            prevIndexes = new int[newCapacity];
+            nextWithSameEnd = new int[newCapacity];
+            nextWithSameBegin = new int[newCapacity];
+            nodeObjects = new LatticeNodeImpl[newCapacity];
+            oovs = new boolean[newCapacity];
+            oovPosIds = new short[newCapacity];
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Supplier<WordInfo>[] suppliers = new Supplier[newCapacity];
+            oovWordInfos = suppliers;
+        } else {
+            begins = Arrays.copyOf(begins, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+            leftIds = Arrays.copyOf(leftIds, newCapacity);
+            rightIds = Arrays.copyOf(rightIds, newCapacity);
+            costs = Arrays.copyOf(costs, newCapacity);
+            wordIds = Arrays.copyOf(wordIds, newCapacity);
+            totalCosts = Arrays.copyOf(totalCosts, newCapacity);
+            prevIndexes = Arrays.copyOf(prevIndexes, newCapacity);
+            nextWithSameEnd = Arrays.copyOf(nextWithSameEnd, newCapacity);
+            nextWithSameBegin = Arrays.copyOf(nextWithSameBegin, newCapacity);
+            nodeObjects = Arrays.copyOf(nodeObjects, newCapacity);
+            oovs = Arrays.copyOf(oovs, newCapacity);
+            oovPosIds = Arrays.copyOf(oovPosIds, newCapacity);
+            oovWordInfos = Arrays.copyOf(oovWordInfos, newCapacity);
+        }
+    }
+
+    private void allocatePositions(int newSize) {
+        endHeads = new int[newSize + 1];
+        endTails = new int[newSize + 1];
+        beginHeads = new int[newSize + 1];
+        beginTails = new int[newSize + 1];
+        Arrays.fill(endHeads, NONE);
+        Arrays.fill(endTails, NONE);
+        Arrays.fill(beginHeads, NONE);
+        Arrays.fill(beginTails, NONE);
+        capacity = newSize;
+    }
 }
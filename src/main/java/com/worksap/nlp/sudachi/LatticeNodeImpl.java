@@ -31,8 +31,8 @@ public class LatticeNodeImpl implements LatticeNode {
     int wordId;
 
     int totalCost;
-    LatticeNodeImpl bestPreviousNode;
     boolean isConnectedToBOS;
+    int latticeIndex = -1;
 
     boolean isDefined;
     boolean isOOV;
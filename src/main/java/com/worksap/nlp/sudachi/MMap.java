@@ -18,7 +18,10 @@ package com.worksap.nlp.sudachi;
 
 import com.google.common.io.ByteStreams;
 import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
@@ -26,6 +29,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Objects;
 
 /**
@@ -42,15 +50,60 @@ public class MMap {
     /**
      * Maps a file directly into memory.
      *
+     * <p>
+     * If {@code filename} is not a file on the file system, it is loaded from the
+     * resources of the context class loader into the heap.
+     *
      * @param filename
      *            the filename to open
      * @return the mapped byte buffer
+     * @throws FileNotFoundException
+     *             if neither the file nor the resource exists
      * @throws IOException
      *             if reading a file is failed
      */
     public static ByteBuffer map(String filename) throws IOException {
-        final ClassLoader ccl = Thread.currentThread().getContextClassLoader();
-        try (final BufferedInputStream is = new BufferedInputStream(ccl.getResourceAsStream(filename))) {
+        Path path = toPath(filename);
+        if (path != null && Files.isRegularFile(path)) {
+            return map(path);
+        }
+        return mapResource(filename);
+    }
+
+    /**
+     * Maps a file directly into memory.
+     *
+     * <p>
+     * The file is mapped read-only, so that the pages are shared with other
+     * processes mapping the same file.
+     *
+     * @param path
+     *            the path of the file to open
+     * @return the mapped byte buffer
+     * @throws FileNotFoundException
+     *             if the file does not exist
+     * @throws IOException
+     *             if reading a file is failed
+     */
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileInputStream input = new FileInputStream(path.toFile()); FileChannel channel = input.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    static ByteBuffer mapResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = MMap.class.getClassLoader();
+        }
+        String resourceName = name.startsWith("/") ? name.substring(1) : name;
+        InputStream resource = loader.getResourceAsStream(resourceName);
+        if (resource == null) {
+            throw new FileNotFoundException(name);
+        }
+        try (InputStream is = new BufferedInputStream(resource)) {
             // Java9以降なら標準APIの InputStream#readAllBytes で代替可能
             final byte[] ba = ByteStreams.toByteArray(is);
             final ByteBuffer buffer = ByteBuffer.wrap(ba);
@@ -59,6 +112,14 @@ public class MMap {
         }
     }
 
+    private static Path toPath(String filename) {
+        try {
+            return Paths.get(filename);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
     /**
      * Unmaps the region of the buffer.
      *
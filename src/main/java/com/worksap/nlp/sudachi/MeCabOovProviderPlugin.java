@@ -30,7 +30,6 @@ import java.util.Map;
 
 import com.worksap.nlp.sudachi.dictionary.CategoryType;
 import com.worksap.nlp.sudachi.dictionary.Grammar;
-import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
 /**
  * Provides the OOVs in the same way as MeCab.
@@ -83,8 +82,7 @@ class MeCabOovProviderPlugin extends OovProviderPlugin {
     }
 
     @Override
-    public List<LatticeNode> provideOOV(InputText inputText, int offset, boolean hasOtherWords) {
-        List<LatticeNode> nodes = new ArrayList<>();
+    public void provideOOV(InputText inputText, int offset, boolean hasOtherWords, Sink sink) {
         int length = inputText.getCharCategoryContinuousLength(offset);
         if (length > 0) {
             for (CategoryType type : inputText.getCharCategoryTypes(offset)) {
@@ -98,9 +96,8 @@ class MeCabOovProviderPlugin extends OovProviderPlugin {
                     continue;
                 }
                 if (cinfo.isGroup && (cinfo.isInvoke || !hasOtherWords)) {
-                    String s = inputText.getSubstring(offset, offset + length);
                     for (OOV oov : oovs) {
-                        nodes.add(getOOVNode(s, oov, length));
+                        sink.accept(length, oov.leftId, oov.rightId, oov.cost, oov.posId);
                     }
                     llength -= 1;
                 }
@@ -110,23 +107,13 @@ class MeCabOovProviderPlugin extends OovProviderPlugin {
                         if (sublength > llength) {
                             break;
                         }
-                        String s = inputText.getSubstring(offset, offset + sublength);
                         for (OOV oov : oovs) {
-                            nodes.add(getOOVNode(s, oov, sublength));
+                            sink.accept(sublength, oov.leftId, oov.rightId, oov.cost, oov.posId);
                         }
                     }
                 }
             }
         }
-        return nodes;
-    }
-
-    LatticeNode getOOVNode(String text, OOV oov, int length) {
-        LatticeNode node = createNode();
-        node.setParameter(oov.leftId, oov.rightId, oov.cost);
-        WordInfo info = new WordInfo(text, (short) length, oov.posId, text, text, "");
-        node.setWordInfo(info);
-        return node;
     }
 
     void readCharacterProperty(String charDef) throws IOException {
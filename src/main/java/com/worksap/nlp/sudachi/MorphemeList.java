@@ -23,16 +23,17 @@ import java.util.List;
 
 import com.worksap.nlp.sudachi.dictionary.Grammar;
 import com.worksap.nlp.sudachi.dictionary.Lexicon;
+import com.worksap.nlp.sudachi.dictionary.LexiconSet;
 import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
 public class MorphemeList extends AbstractList<Morpheme> {
 
-    final InputText inputText;
+    final UTF8InputText inputText;
     final Grammar grammar;
     final Lexicon lexicon;
     final List<LatticeNode> path;
 
-    MorphemeList(InputText input, Grammar grammar, Lexicon lexicon, List<LatticeNode> path) {
+    MorphemeList(UTF8InputText input, Grammar grammar, Lexicon lexicon, List<LatticeNode> path) {
         this.inputText = input;
         this.grammar = grammar;
         this.lexicon = lexicon;
@@ -60,7 +61,7 @@ public class MorphemeList extends AbstractList<Morpheme> {
     String getSurface(int index) {
         int begin = getBegin(index);
         int end = getEnd(index);
-        return inputText.getOriginalText().substring(begin, end);
+        return inputText.getOriginalSubstring(begin, end);
     }
 
     WordInfo getWordInfo(int index) {
@@ -71,10 +72,10 @@ public class MorphemeList extends AbstractList<Morpheme> {
         int[] wordIds;
         switch (mode) {
         case A:
-            wordIds = wi.getAunitSplit();
+            wordIds = LexiconSet.readAunitSplit(wi);
             break;
         case B:
-            wordIds = wi.getBunitSplit();
+            wordIds = LexiconSet.readBunitSplit(wi);
             break;
         default:
             return Collections.singletonList(get(index));
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher of the morphemes of the segments read from a text.
+ *
+ * <p>
+ * It follows the protocol of {@code java.util.concurrent.Flow} of Java 9, so
+ * that it can be adapted to the reactive libraries. Only one subscriber is
+ * accepted. The segments are read and tokenized on the executor only while the
+ * subscriber requests them, and each of them is sent by
+ * {@link Subscriber#onNext}. The signals to the subscriber are never sent
+ * concurrently. The reader is closed when the text ends, when an error occurs
+ * or when the subscription is cancelled. It is read and closed only by the task
+ * sending the segments, so a read in progress is finished before the reader is
+ * closed.
+ *
+ * <p>
+ * The tokenizer must not be used by others until the publisher terminates,
+ * unless it is a {@link TokenizerPool}.
+ *
+ * @see Tokenizer#createPublisher
+ */
+public final class MorphemePublisher {
+
+    /**
+     * A receiver of the morphemes.
+     */
+    public interface Subscriber {
+
+        /**
+         * Receives the subscription before any other signals.
+         *
+         * @param subscription
+         *            the subscription to request the morphemes or to cancel
+         */
+        public void onSubscribe(Subscription subscription);
+
+        /**
+         * Receives the morphemes of a segment.
+         *
+         * @param morphemes
+         *            the morphemes
+         */
+        public void onNext(List<Morpheme> morphemes);
+
+        /**
+         * Receives the error which terminates the subscription.
+         *
+         * An {@link IOException} of the reader is passed as it is.
+         *
+         * @param throwable
+         *            the error
+         */
+        public void onError(Throwable throwable);
+
+        /**
+         * Receives the end of the text.
+         */
+        public void onComplete();
+    }
+
+    /**
+     * A link between the publisher and the subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests more segments.
+         *
+         * The requests are added up. A non-positive request terminates the subscription
+         * with {@link IllegalArgumentException}.
+         *
+         * @param n
+         *            the number of the segments, or {@link Long#MAX_VALUE} for no limit
+         */
+        public void request(long n);
+
+        /**
+         * Stops sending the segments.
+         *
+         * Some segments may be sent after this is called.
+         */
+        public void cancel();
+    }
+
+    private final Reader reader;
+    private final Iterator<List<Morpheme>> segments;
+    private final Executor executor;
+    private final AtomicBoolean isSubscribed = new AtomicBoolean();
+
+    MorphemePublisher(Reader reader, Iterator<List<Morpheme>> segments, Executor executor) {
+        this.reader = reader;
+        this.segments = segments;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds the subscriber.
+     *
+     * If a subscriber has already been added, the new one receives
+     * {@link IllegalStateException}.
+     *
+     * @param subscriber
+     *            the subscriber
+     */
+    public void subscribe(Subscriber subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!isSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("the publisher has already been subscribed"));
+            return;
+        }
+        SegmentSubscription subscription = new SegmentSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class SegmentSubscription implements Subscription, Runnable {
+
+        private final Subscriber subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workCount = new AtomicInteger();
+        private volatile boolean isCancelled;
+        private volatile Throwable invalidRequest;
+        private volatile RuntimeException rejection;
+        // only accessed by the task sending the segments
+        private boolean isTerminated;
+
+        SegmentSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return (sum < 0) ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (workCount.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    // no task is running, so terminate on this thread
+                    rejection = e;
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int count = 1;
+            do {
+                send();
+                count = workCount.addAndGet(-count);
+            } while (count != 0);
+        }
+
+        private void send() {
+            while (!isTerminated) {
+                if (isCancelled) {
+                    isTerminated = true;
+                    close();
+                    return;
+                }
+                if (rejection != null) {
+                    terminate(rejection);
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate(invalidRequest);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+
+                List<Morpheme> morphemes;
+                try {
+                    if (!segments.hasNext()) {
+                        IOException e = close();
+                        if (e != null) {
+                            terminate(e);
+                        } else {
+                            isTerminated = true;
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                    morphemes = segments.next();
+                } catch (UncheckedIOException e) {
+                    terminate(e.getCause());
+                    return;
+                } catch (RuntimeException e) {
+                    terminate(e);
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                subscriber.onNext(morphemes);
+            }
+        }
+
+        private void terminate(Throwable error) {
+            isTerminated = true;
+            close();
+            subscriber.onError(error);
+        }
+    }
+
+    private IOException close() {
+        try {
+            reader.close();
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+}
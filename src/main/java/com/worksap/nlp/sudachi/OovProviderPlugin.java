@@ -17,9 +17,12 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
 /**
  * A plugin that provides the nodes of out-of-vocabulary morphemes.
@@ -42,6 +45,30 @@ import com.worksap.nlp.sudachi.dictionary.Grammar;
  */
 public abstract class OovProviderPlugin extends Plugin {
 
+    /**
+     * Creates the plugin.
+     *
+     * @throws IllegalArgumentException
+     *             if the class overrides neither
+     *             {@link #provideOOV(InputText, int, boolean)} nor
+     *             {@link #provideOOV(InputText, int, boolean, Sink)}
+     */
+    protected OovProviderPlugin() {
+        if (!overrides(InputText.class, int.class, boolean.class)
+                && !overrides(InputText.class, int.class, boolean.class, Sink.class)) {
+            throw new IllegalArgumentException(getClass().getName() + " does not override provideOOV");
+        }
+    }
+
+    // the default implementations of provideOOV call each other
+    private boolean overrides(Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod("provideOOV", parameterTypes).getDeclaringClass() != OovProviderPlugin.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Set up the plugin.
      *
@@ -55,11 +82,67 @@ public abstract class OovProviderPlugin extends Plugin {
     public void setUp(Grammar grammar) throws IOException {
     }
 
+    /**
+     * A receiver of the candidates of OOV morphemes.
+     *
+     * <p>
+     * The tokenizer reuses a sink for every offset and inserts the candidates into
+     * the lattice without materializing them. The surface and the {@link WordInfo}
+     * are built only for the nodes that are on the best path or inspected by the
+     * plugins.
+     */
+    public interface Sink {
+        /**
+         * Receives a candidate of OOV morpheme.
+         *
+         * <p>
+         * The {@link WordInfo} of the candidate has the substring of the input text as
+         * its surface, normalized form and dictionary form.
+         *
+         * @param length
+         *            the length of the morpheme in the index of the input text
+         * @param leftId
+         *            the left-ID of the morpheme
+         * @param rightId
+         *            the right-ID of the morpheme
+         * @param cost
+         *            the word occurrence cost of the morpheme
+         * @param posId
+         *            the part-of-speech ID of the morpheme
+         */
+        void accept(int length, short leftId, short rightId, short cost, short posId);
+
+        /**
+         * Receives a candidate of OOV morpheme with its own {@link WordInfo}.
+         *
+         * @param length
+         *            the length of the morpheme in the index of the input text
+         * @param leftId
+         *            the left-ID of the morpheme
+         * @param rightId
+         *            the right-ID of the morpheme
+         * @param cost
+         *            the word occurrence cost of the morpheme
+         * @param posId
+         *            the part-of-speech ID of the morpheme
+         * @param wordInfo
+         *            the supplier of the {@link WordInfo}, which is called only when
+         *            the node is materialized
+         */
+        void accept(int length, short leftId, short rightId, short cost, short posId, Supplier<WordInfo> wordInfo);
+    }
+
     /**
      * Provides the nodes of OOV morphemes.
      *
      * To create the new node you can use {@link #createNode}.
      *
+     * <p>
+     * The plugins must override this method or
+     * {@link #provideOOV(InputText, int, boolean, Sink)}, otherwise the constructor
+     * throws {@link IllegalArgumentException}. By default, this method collects the
+     * candidates passed to the sink.
+     *
      * @param inputText
      *            the input text
      * @param offset
@@ -69,16 +152,36 @@ public abstract class OovProviderPlugin extends Plugin {
      *            {@code offset}.
      * @return the nodes of OOV morphemes
      */
-    public abstract List<LatticeNode> provideOOV(InputText inputText, int offset, boolean hasOtherWords);
+    public List<LatticeNode> provideOOV(InputText inputText, int offset, boolean hasOtherWords) {
+        NodeCollector collector = new NodeCollector(inputText, offset);
+        provideOOV(inputText, offset, hasOtherWords, collector);
+        return collector.nodes;
+    }
 
-    List<LatticeNode> getOOV(UTF8InputText inputText, int offset, boolean hasOtherWords) {
-        List<LatticeNode> nodes = provideOOV(inputText, offset, hasOtherWords);
-        for (LatticeNode node : nodes) {
+    /**
+     * Passes the candidates of OOV morphemes to the sink.
+     *
+     * <p>
+     * The tokenizer calls this method. By default, this method passes the nodes
+     * returned by {@link #provideOOV(InputText, int, boolean)}, so the plugins
+     * which implement only that method keep working.
+     *
+     * @param inputText
+     *            the input text
+     * @param offset
+     *            the index of insertion
+     * @param hasOtherWords
+     *            if {@code true}, the lattice has other words beginning at
+     *            {@code offset}.
+     * @param sink
+     *            the receiver of the candidates
+     */
+    public void provideOOV(InputText inputText, int offset, boolean hasOtherWords, Sink sink) {
+        for (LatticeNode node : provideOOV(inputText, offset, hasOtherWords)) {
             LatticeNodeImpl n = (LatticeNodeImpl) node;
-            n.begin = offset;
-            n.end = offset + node.getWordInfo().getLength();
+            WordInfo wordInfo = n.getWordInfo();
+            sink.accept(wordInfo.getLength(), n.leftId, n.rightId, n.cost, wordInfo.getPOSId(), () -> wordInfo);
         }
-        return nodes;
     }
 
     /**
@@ -91,4 +194,35 @@ public abstract class OovProviderPlugin extends Plugin {
         node.setOOV();
         return node;
     }
+
+    private class NodeCollector implements Sink {
+        final List<LatticeNode> nodes = new ArrayList<>();
+        final InputText inputText;
+        final int offset;
+
+        NodeCollector(InputText inputText, int offset) {
+            this.inputText = inputText;
+            this.offset = offset;
+        }
+
+        @Override
+        public void accept(int length, short leftId, short rightId, short cost, short posId) {
+            String s = inputText.getSubstring(offset, offset + length);
+            add(length, leftId, rightId, cost, new WordInfo(s, (short) length, posId, s, s, ""));
+        }
+
+        @Override
+        public void accept(int length, short leftId, short rightId, short cost, short posId,
+                Supplier<WordInfo> wordInfo) {
+            add(length, leftId, rightId, cost, wordInfo.get());
+        }
+
+        private void add(int length, short leftId, short rightId, short cost, WordInfo wordInfo) {
+            LatticeNode node = createNode();
+            node.setParameter(leftId, rightId, cost);
+            node.setWordInfo(wordInfo);
+            node.setRange(offset, offset + length);
+            nodes.add(node);
+        }
+    }
 }
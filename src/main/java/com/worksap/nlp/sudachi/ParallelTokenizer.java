@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Tokenizes a long text on multiple threads.
+ *
+ * <p>
+ * The text is divided into chunks at the ends of the lines or the sentences if
+ * possible. Each chunk is tokenized in a window which begins some characters
+ * earlier, as if the text began at the window. Then the windows are stitched in
+ * order. The morphemes of a window are used from the node after which the
+ * preceding windows end, if the best path of the window has a node which ends
+ * at the same position with the same right-ID. Since the best path to the end
+ * from a node depends only on them, the stitched morphemes are the same as the
+ * ones of the whole text. Otherwise, the window is tokenized again from the end
+ * of the preceding windows.
+ */
+class ParallelTokenizer {
+
+    static final int DEFAULT_CHUNK_LENGTH = 64 * 1024;
+    static final int DEFAULT_OVERLAP = 256;
+
+    private final TokenizerPool pool;
+    private final Tokenizer.SplitMode mode;
+    private final String text;
+    private final int chunkLength;
+    private final int overlap;
+
+    ParallelTokenizer(TokenizerPool pool, Tokenizer.SplitMode mode, CharSequence text, int chunkLength, int overlap) {
+        if (chunkLength <= 0) {
+            throw new IllegalArgumentException("chunk length must be positive");
+        }
+        if (overlap < 0) {
+            throw new IllegalArgumentException("overlap must not be negative");
+        }
+        this.pool = pool;
+        this.mode = mode;
+        this.text = text.toString();
+        this.chunkLength = chunkLength;
+        this.overlap = overlap;
+    }
+
+    List<Morpheme> tokenize(Executor executor) {
+        int[] bounds = split(text, chunkLength);
+        if (bounds.length <= 2) {
+            return pool.tokenize(mode, text);
+        }
+
+        Window[] windows = new Window[bounds.length - 1];
+        pool.forEach(windows.length, executor, (tokenizer, i) -> {
+            int begin = (i == 0) ? 0 : findWindowBegin(bounds[i - 1], bounds[i]);
+            String window = text.substring(begin, bounds[i + 1]);
+            windows[i] = ((JapaneseTokenizer) tokenizer).tokenizeWindow(mode, window, begin, i == windows.length - 1);
+        });
+        return stitch(windows, bounds);
+    }
+
+    private List<Morpheme> stitch(Window[] windows, int[] bounds) {
+        List<Morpheme> morphemes = new ArrayList<>();
+        StreamingTokenizerImpl stream = new StreamingTokenizerImpl(pool.engine, windows[0].bosRightId, mode,
+                morphemes::addAll, chunkLength);
+        for (int i = 0; i < windows.length; i++) {
+            Window window = windows[i];
+            int index = window.find(stream.base, stream.bosRightId);
+            boolean isLast = i == windows.length - 1;
+            if (index >= 0) {
+                morphemes.addAll(window.morphemes.subList(index, window.morphemes.size()));
+                if (isLast) {
+                    break;
+                }
+                stream.base = window.end;
+                stream.bosRightId = window.endRightId;
+            } else if (isLast) {
+                pool.engine.tokenizeTail(stream, text.substring(stream.base));
+            } else if (stream.base < bounds[i + 1]) {
+                stream.base += pool.engine.tokenizeHead(stream, text.substring(stream.base, bounds[i + 1]));
+            }
+        }
+        return Collections.unmodifiableList(morphemes);
+    }
+
+    /**
+     * Returns the beginning of the window of the chunk, at the end of a line or a
+     * sentence if possible.
+     */
+    private int findWindowBegin(int previousBound, int bound) {
+        int begin = Math.max(0, bound - overlap);
+        for (int i = begin; i > Math.max(previousBound, begin - overlap); i--) {
+            if (isTerminator(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return avoidSurrogatePair(text, begin);
+    }
+
+    /**
+     * Divides the text into chunks of at least the length.
+     *
+     * @param text
+     *            the text
+     * @param chunkLength
+     *            the minimum length of the chunks
+     * @return the indexes of the bounds of the chunks, including 0 and the length
+     *         of the text
+     */
+    static int[] split(CharSequence text, int chunkLength) {
+        int[] bounds = new int[2];
+        int size = 1;
+        for (int next = chunkLength; text.length() - next >= chunkLength;) {
+            int bound = findBound(text, next, Math.min(next + chunkLength / 4, text.length() - chunkLength));
+            if (bound >= text.length()) {
+                break;
+            }
+            if (size + 1 >= bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[size++] = bound;
+            next = bound + chunkLength;
+        }
+        bounds[size++] = text.length();
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private static int findBound(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isTerminator(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return avoidSurrogatePair(text, from);
+    }
+
+    private static int avoidSurrogatePair(CharSequence text, int index) {
+        if (index > 0 && index < text.length() && Character.isHighSurrogate(text.charAt(index - 1))
+                && Character.isLowSurrogate(text.charAt(index))) {
+            return index + 1;
+        }
+        return index;
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '\n' || SentenceDetector.isEnd(c);
+    }
+
+    /**
+     * The morphemes of a window, tokenized as if the text began at the window.
+     */
+    static final class Window {
+
+        final int begin;
+        final short bosRightId;
+        private int[] splitOffsets = new int[16];
+        private short[] splitRightIds = new short[16];
+        private int splitSize;
+        MorphemeList morphemes;
+        int end;
+        short endRightId;
+
+        Window(int begin, short bosRightId) {
+            this.begin = begin;
+            this.bosRightId = bosRightId;
+        }
+
+        void addSplit(int offset, short rightId) {
+            if (splitSize == splitOffsets.length) {
+                splitOffsets = Arrays.copyOf(splitOffsets, splitSize * 2);
+                splitRightIds = Arrays.copyOf(splitRightIds, splitSize * 2);
+            }
+            splitOffsets[splitSize] = offset;
+            splitRightIds[splitSize] = rightId;
+            splitSize++;
+        }
+
+        void setMorphemes(MorphemeList morphemes) {
+            this.morphemes = morphemes;
+        }
+
+        void setEnd(int offset, short rightId) {
+            end = offset;
+            endRightId = rightId;
+        }
+
+        /**
+         * Returns the index of the first morpheme after the node which ends at the
+         * offset with the right-ID.
+         *
+         * @return the index of the morpheme, or -1 if the best path of this window has
+         *         no such node
+         */
+        int find(int offset, short rightId) {
+            if (morphemes == null || !hasSplit(offset, rightId)) {
+                return -1;
+            }
+            int low = 0;
+            int high = morphemes.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (morphemes.get(middle).begin() < offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private boolean hasSplit(int offset, short rightId) {
+            if (offset == begin && rightId == bosRightId) {
+                return true;
+            }
+            for (int i = 0; i < splitSize; i++) {
+                if (splitOffsets[i] == offset && splitRightIds[i] == rightId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.Set;
+
+import com.worksap.nlp.sudachi.dictionary.CategoryType;
+
+/**
+ * A view of the head of an input text which may continue.
+ *
+ * <p>
+ * It records how far the readers look into the text. The values which depend on
+ * the characters after the head, as the continuity of the last characters, are
+ * reported as reaching beyond the head.
+ */
+class PartialInputText implements InputText {
+
+    private final UTF8InputText input;
+    private final int length;
+    private int reach;
+
+    PartialInputText(UTF8InputText input) {
+        this.input = input;
+        this.length = input.getByteText().length;
+    }
+
+    /**
+     * Forgets the parts read so far.
+     */
+    void resetReach() {
+        reach = 0;
+    }
+
+    /**
+     * Returns whether the values read since {@link #resetReach} may change if the
+     * text continues.
+     *
+     * @return {@code true} if the readers looked beyond the head
+     */
+    boolean isTruncated() {
+        return reach > length;
+    }
+
+    private void touch(int end) {
+        if (end > reach) {
+            reach = end;
+        }
+    }
+
+    @Override
+    public String getText() {
+        touch(Integer.MAX_VALUE);
+        return input.getText();
+    }
+
+    @Override
+    public String getOriginalText() {
+        touch(Integer.MAX_VALUE);
+        return input.getOriginalText();
+    }
+
+    @Override
+    public String getSubstring(int begin, int end) {
+        touch(end);
+        return input.getSubstring(begin, end);
+    }
+
+    @Override
+    public int getOriginalIndex(int index) {
+        touch(index + 1);
+        return input.getOriginalIndex(index);
+    }
+
+    @Override
+    public Set<CategoryType> getCharCategoryTypes(int index) {
+        touch(index + 1);
+        return input.getCharCategoryTypes(index);
+    }
+
+    @Override
+    public Set<CategoryType> getCharCategoryTypes(int begin, int end) {
+        touch(end);
+        return input.getCharCategoryTypes(begin, end);
+    }
+
+    @Override
+    public int getCharCategoryContinuousLength(int index) {
+        int continuity = input.getCharCategoryContinuousLength(index);
+        touch(index + continuity + 1); // the run may continue after the head
+        return continuity;
+    }
+
+    @Override
+    public int getCodePointsOffsetLength(int index, int codePointOffset) {
+        int offsetLength = input.getCodePointsOffsetLength(index, codePointOffset);
+        touch(index + offsetLength + 1);
+        return offsetLength;
+    }
+
+    @Override
+    public int codePointCount(int begin, int end) {
+        touch(end);
+        return input.codePointCount(begin, end);
+    }
+
+    @Override
+    public boolean canBow(int index) {
+        touch(index + 1);
+        return input.canBow(index);
+    }
+}
@@ -73,6 +73,25 @@ public abstract class PathRewritePlugin extends Plugin {
      */
     public abstract void rewrite(InputText text, List<LatticeNode> path, Lattice lattice);
 
+    /**
+     * Returns whether the path can be rewritten separately before and after the
+     * node. If it returns {@code true}, rewriting the nodes up to this one and the
+     * rest of the path each must give the same result as rewriting the whole path.
+     *
+     * <p>
+     * A text tokenized in pieces is split only after such nodes. The default
+     * implementation returns {@code false}.
+     *
+     * @param text
+     *            the input text
+     * @param node
+     *            the node of the path
+     * @return {@code true} if the path can be split after the node
+     */
+    public boolean canSplitAfter(InputText text, LatticeNode node) {
+        return false;
+    }
+
     /**
      * Concatenate the sequence of nodes in the path. The sequence begins at the
      * specified {@code begin} and extends to the node at index {@code end - 1}.
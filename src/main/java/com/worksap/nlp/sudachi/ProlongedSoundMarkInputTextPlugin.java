@@ -17,6 +17,7 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.List;
@@ -57,6 +58,7 @@ import java.util.List;
 class ProlongedSoundMarkInputTextPlugin extends InputTextPlugin {
 
     private Set<Integer> prolongedSoundMarkSet = new HashSet<>();
+    private int[] prolongedSoundMarks;
     private String replacementSymbol;
 
     @Override
@@ -65,6 +67,7 @@ class ProlongedSoundMarkInputTextPlugin extends InputTextPlugin {
         for (String s : prolongedSoundMarkStrings) {
             prolongedSoundMarkSet.add(s.codePointAt(0));
         }
+        prolongedSoundMarks = prolongedSoundMarkSet.stream().mapToInt(Integer::intValue).sorted().toArray();
         replacementSymbol = settings.getString("replacementSymbol");
     }
 
@@ -78,10 +81,10 @@ class ProlongedSoundMarkInputTextPlugin extends InputTextPlugin {
         boolean isProlongedSoundMark = false;
         for (int i = 0; i < n; i++) {
             int cp = text.codePointAt(i);
-            if (!isProlongedSoundMark && prolongedSoundMarkSet.contains(cp)) {
+            if (!isProlongedSoundMark && isProlongedSoundMark(cp)) {
                 isProlongedSoundMark = true;
                 markStartIndex = i;
-            } else if (isProlongedSoundMark && !prolongedSoundMarkSet.contains(cp)) {
+            } else if (isProlongedSoundMark && !isProlongedSoundMark(cp)) {
                 if ((i - markStartIndex) > 1) {
                     builder.replace(markStartIndex - offset, i - offset, replacementSymbol);
                     offset += i - markStartIndex - 1;
@@ -93,4 +96,72 @@ class ProlongedSoundMarkInputTextPlugin extends InputTextPlugin {
             builder.replace(markStartIndex - offset, n - offset, replacementSymbol);
         }
     }
+
+    private boolean isProlongedSoundMark(int codePoint) {
+        return Arrays.binarySearch(prolongedSoundMarks, codePoint) >= 0;
+    }
+
+    @Override
+    public InputTextTransducer createTransducer(InputTextTransducer downstream) {
+        return new Transducer(downstream);
+    }
+
+    /**
+     * Combines the sequences of prolonged sound marks as {@link #rewrite}.
+     */
+    private class Transducer implements InputTextTransducer {
+
+        private final InputTextTransducer downstream;
+        private int markCount;
+        private int firstMark;
+        private int markOffset;
+
+        Transducer(InputTextTransducer downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void begin(String originalText) {
+            markCount = 0;
+            downstream.begin(originalText);
+        }
+
+        @Override
+        public void accept(int codePoint, int offset) {
+            if (isProlongedSoundMark(codePoint)) {
+                if (markCount == 0) {
+                    firstMark = codePoint;
+                    markOffset = offset;
+                }
+                markCount++;
+                return;
+            }
+            sendMarks();
+            downstream.accept(codePoint, offset);
+        }
+
+        @Override
+        public void end() {
+            sendMarks();
+            downstream.end();
+        }
+
+        @Override
+        public boolean isIdle() {
+            return markCount == 0 && downstream.isIdle();
+        }
+
+        private void sendMarks() {
+            if (markCount == 1) {
+                downstream.accept(firstMark, markOffset);
+            } else if (markCount > 1) {
+                for (int i = 0; i < replacementSymbol.length();) {
+                    int codePoint = replacementSymbol.codePointAt(i);
+                    downstream.accept(codePoint, markOffset);
+                    i += Character.charCount(codePoint);
+                }
+            }
+            markCount = 0;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Tokenizes the segments of a text lazily.
+ *
+ * <p>
+ * Each segment is tokenized when it is requested. A segment longer than the
+ * buffer of {@link SegmentReader} is fed to a {@link StreamingTokenizer} in
+ * pieces, and the morphemes determined by each piece are returned as an
+ * element. They are the same as those of tokenizing the segment at once.
+ */
+class SegmentIterator implements Iterator<List<Morpheme>> {
+
+    private final Tokenizer tokenizer;
+    private final Tokenizer.SplitMode mode;
+    private final SegmentReader segments;
+    private final Queue<List<Morpheme>> ready = new ArrayDeque<>();
+    private StreamingTokenizer streaming;
+    private List<Morpheme> pending = new ArrayList<>();
+    private boolean isEnd;
+
+    SegmentIterator(Tokenizer tokenizer, Tokenizer.SplitMode mode, SegmentReader segments) {
+        this.tokenizer = tokenizer;
+        this.mode = mode;
+        this.segments = segments;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty() && !isEnd) {
+            advance();
+        }
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public List<Morpheme> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return ready.poll();
+    }
+
+    private void advance() {
+        String segment;
+        try {
+            segment = segments.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (segment == null) {
+            isEnd = true;
+            if (streaming != null) {
+                streaming.finish();
+                streaming = null;
+            }
+        } else if (streaming == null && segments.isSegmentEnd()) {
+            ready.add(tokenizer.tokenize(mode, segment));
+            return;
+        } else {
+            if (streaming == null) {
+                streaming = tokenizer.createStreamingTokenizer(mode, morphemes -> pending.addAll(morphemes));
+            }
+            streaming.feed(segment);
+            if (segments.isSegmentEnd()) {
+                streaming.finish();
+                streaming = null;
+            }
+        }
+        if (!pending.isEmpty()) {
+            ready.add(Collections.unmodifiableList(pending));
+            pending = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a text by lines or sentences in a buffer of a fixed length.
+ *
+ * <p>
+ * The line breaks, {@code \n}, {@code \r} and {@code \r\n}, end the segments
+ * and are not included in them. In {@link Tokenizer.Segmentation#SENTENCE}, a
+ * sentence also ends as {@link SentenceDetector} detects, and the empty
+ * sentences are skipped. A segment longer than the buffer is read in pieces.
+ */
+class SegmentReader {
+
+    static final int DEFAULT_MAX_LENGTH = 8192;
+
+    private final Reader reader;
+    private final Tokenizer.Segmentation segmentation;
+    private final char[] buffer;
+    private int begin;
+    private int scanned;
+    private int end;
+    private boolean isEOF;
+    private boolean skipsLineFeed;
+    private boolean isSegmentEnd = true;
+
+    SegmentReader(Reader reader, Tokenizer.Segmentation segmentation, int maxLength) {
+        if (maxLength < 2) {
+            throw new IllegalArgumentException("maximum length must be at least 2");
+        }
+        this.reader = reader;
+        this.segmentation = segmentation;
+        this.buffer = new char[maxLength];
+    }
+
+    /**
+     * Reads the next segment or the next piece of it.
+     *
+     * @return the segment, or {@code null} if the text has ended
+     * @throws IOException
+     *             if the reader fails
+     */
+    String read() throws IOException {
+        while (true) {
+            if (skipsLineFeed && begin < end) {
+                if (buffer[begin] == '\n') {
+                    begin++;
+                    scanned++;
+                }
+                skipsLineFeed = false;
+            }
+            while (scanned < end) {
+                char c = buffer[scanned];
+                if (c == '\n' || c == '\r') {
+                    int next = scanned + 1;
+                    if (c == '\r') {
+                        if (next == end) {
+                            skipsLineFeed = true;
+                        } else if (buffer[next] == '\n') {
+                            next++;
+                        }
+                    }
+                    if (segmentation == Tokenizer.Segmentation.SENTENCE && scanned == begin) {
+                        begin = next;
+                        scanned = next;
+                        continue;
+                    }
+                    return take(scanned, next, true);
+                }
+                if (segmentation == Tokenizer.Segmentation.SENTENCE && SentenceDetector.isEnd(c)) {
+                    int tail = scanned + 1;
+                    while (tail < end && SentenceDetector.isTail(buffer[tail])) {
+                        tail++;
+                    }
+                    if (tail == end && !isEOF && end - begin < buffer.length) {
+                        break;
+                    }
+                    return take(tail, tail, true);
+                }
+                scanned++;
+            }
+
+            if (end - begin == buffer.length) {
+                int cut = end;
+                if (Character.isHighSurrogate(buffer[cut - 1])) {
+                    cut--;
+                }
+                return take(cut, cut, false);
+            }
+            if (isEOF) {
+                if (begin < end) {
+                    return take(end, end, true);
+                }
+                isSegmentEnd = true;
+                return null;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Returns whether the last segment returned by {@link #read} ends there.
+     *
+     * @return {@code false} if the segment continues in the next one
+     */
+    boolean isSegmentEnd() {
+        return isSegmentEnd;
+    }
+
+    private String take(int segmentEnd, int next, boolean isSegmentEnd) {
+        String segment = new String(buffer, begin, segmentEnd - begin);
+        begin = next;
+        scanned = next;
+        this.isSegmentEnd = isSegmentEnd;
+        return segment;
+    }
+
+    private void fill() throws IOException {
+        if (begin > 0) {
+            System.arraycopy(buffer, begin, buffer, 0, end - begin);
+            end -= begin;
+            scanned -= begin;
+            begin = 0;
+        }
+        int length = reader.read(buffer, end, buffer.length - end);
+        if (length < 0) {
+            isEOF = true;
+        } else {
+            end += length;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+/**
+ * The rules of the ends of the sentences.
+ *
+ * <p>
+ * A sentence ends after a punctuation mark such as {@code 。} or {@code ？}, and
+ * the punctuation marks and the closing brackets following it belong to the
+ * same sentence.
+ */
+final class SentenceDetector {
+
+    private SentenceDetector() {
+    }
+
+    /**
+     * Returns whether the character ends a sentence.
+     *
+     * @param c
+     *            the character
+     * @return {@code true} if the sentence ends after {@code c}
+     */
+    static boolean isEnd(char c) {
+        switch (c) {
+        case '。':
+        case '！':
+        case '？':
+        case '!':
+        case '?':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the character following the end of a sentence belongs to that
+     * sentence.
+     *
+     * @param c
+     *            the character
+     * @return {@code true} if {@code c} is a punctuation mark or a closing bracket
+     */
+    static boolean isTail(char c) {
+        switch (c) {
+        case '」':
+        case '』':
+        case '）':
+        case ')':
+            return true;
+        default:
+            return isEnd(c);
+        }
+    }
+}
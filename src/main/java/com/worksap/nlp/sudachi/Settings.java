@@ -19,6 +19,7 @@ package com.worksap.nlp.sudachi;
 import java.io.File;
 import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import javax.json.Json;
 import javax.json.JsonArray;
@@ -317,6 +319,28 @@ public class Settings {
         return root.getBoolean(setting, defaultValue);
     }
 
+    /**
+     * Returns the CRC-32 checksum of the values to which the specified keys are
+     * mapped.
+     *
+     * <p>
+     * The values are compared in the JSON form, so the settings which have the same
+     * values for the keys have the same checksum.
+     *
+     * @param settings
+     *            the keys
+     * @return the checksum
+     */
+    public long getChecksum(List<String> settings) {
+        CRC32 crc = new CRC32();
+        for (String setting : settings) {
+            JsonValue value = root.get(setting);
+            String entry = setting + "=" + (value == null ? "" : value.toString()) + "\n";
+            crc.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
     <E extends JsonValue> List<E> getList(String setting, Class<E> clazz) {
         JsonArray array = root.getJsonArray(setting);
         if (array == null) {
@@ -16,11 +16,9 @@
 
 package com.worksap.nlp.sudachi;
 
-import java.util.Collections;
 import java.util.List;
 
 import com.worksap.nlp.sudachi.dictionary.Grammar;
-import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
 /**
  * Provides the OOVs.
@@ -68,17 +66,10 @@ class SimpleOovProviderPlugin extends OovProviderPlugin {
     }
 
     @Override
-    public List<LatticeNode> provideOOV(InputText inputText, int offset, boolean hasOtherWords) {
+    public void provideOOV(InputText inputText, int offset, boolean hasOtherWords, Sink sink) {
         if (!hasOtherWords) {
-            LatticeNode node = createNode();
-            node.setParameter(leftId, rightId, cost);
             int length = inputText.getCodePointsOffsetLength(offset, 1);
-            String s = inputText.getSubstring(offset, offset + length);
-            WordInfo info = new WordInfo(s, (short) length, oovPOSId, s, s, "");
-            node.setWordInfo(info);
-            return Collections.singletonList(node);
-        } else {
-            return Collections.emptyList();
+            sink.accept(length, leftId, rightId, cost, oovPOSId);
         }
     }
 }
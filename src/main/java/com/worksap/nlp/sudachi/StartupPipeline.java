@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the steps of the setup of a dictionary on a bounded number of threads
+ * and records the time spent by each phase.
+ *
+ * With one thread, every step runs on the calling thread when it is submitted.
+ */
+class StartupPipeline implements AutoCloseable {
+
+    private final int parallelism;
+    private final ExecutorService executorService;
+    private final Executor executor;
+    private final StartupTimings timings;
+    private final List<Future<?>> submitted = new ArrayList<>();
+
+    StartupPipeline(int parallelism, StartupTimings timings) {
+        this.parallelism = parallelism;
+        this.timings = timings;
+        if (parallelism > 1) {
+            executorService = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, "sudachi-startup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor = executorService;
+        } else {
+            executorService = null;
+            executor = Runnable::run;
+        }
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    <T> Future<T> submit(String phase, Callable<T> step) {
+        timings.add(phase, 0L);
+        FutureTask<T> task = new FutureTask<>(() -> {
+            long start = System.nanoTime();
+            try {
+                return step.call();
+            } finally {
+                timings.add(phase, System.nanoTime() - start);
+            }
+        });
+        submitted.add(task);
+        executor.execute(task);
+        return task;
+    }
+
+    <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while setting up the dictionary");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for all the submitted steps, and throws the first failure.
+     */
+    void awaitAll() throws IOException {
+        IOException ioException = null;
+        RuntimeException runtimeException = null;
+        for (Future<?> future : submitted) {
+            try {
+                get(future);
+            } catch (IOException e) {
+                if (ioException == null && runtimeException == null) {
+                    ioException = e;
+                }
+            } catch (RuntimeException e) {
+                if (ioException == null && runtimeException == null) {
+                    runtimeException = e;
+                }
+            }
+        }
+        submitted.clear();
+        if (ioException != null) {
+            throw ioException;
+        } else if (runtimeException != null) {
+            throw runtimeException;
+        }
+    }
+
+    /**
+     * Returns the result of the step, or {@code null} if it failed.
+     */
+    static <T> T resultOrNull(Future<T> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Waits for the running steps so that nothing touches the dictionary after this
+     * method returns, and stops the threads.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        for (Future<?> future : submitted) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        submitted.clear();
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The breakdown of the time spent to set up a dictionary.
+ *
+ * The time of a phase is the sum of the time spent by all its steps. When the
+ * steps run concurrently, it may exceed the total elapsed time.
+ *
+ * @see Dictionary#getStartupTimings()
+ */
+public final class StartupTimings {
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private volatile long total;
+
+    StartupTimings() {
+    }
+
+    synchronized void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    void setTotalNanos(long nanos) {
+        total = nanos;
+    }
+
+    /**
+     * Returns the names of the phases in the order they started.
+     *
+     * @return the list of the names of the phases
+     */
+    public synchronized List<String> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases.keySet()));
+    }
+
+    /**
+     * Returns the time spent in the phase.
+     *
+     * @param phase
+     *            the name of the phase
+     * @return the time in nanoseconds, or 0 if the phase did not run
+     */
+    public synchronized long getNanos(String phase) {
+        return phases.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Returns the elapsed time of the whole setup.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue() / 1000000).append(" ms\n");
+        }
+        sb.append("total: ").append(total / 1000000).append(" ms");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+/**
+ * A tokenizer of a text which is fed in pieces.
+ *
+ * <p>
+ * The morphemes are sent as soon as they are determined: when the best paths of
+ * all the candidates share a prefix, the prefix is sent and the memory for it
+ * is released. The morphemes are the same as those of tokenizing the whole text
+ * at once, except that {@link MorphemeList#getInternalCost} is counted for each
+ * piece. Their offsets are the indexes in the whole text.
+ *
+ * <p>
+ * If a plugin cannot tell where the text can be split, the morphemes are held
+ * until {@link #finish}. The beam of the tokenizer is not used.
+ *
+ * @see Tokenizer#createStreamingTokenizer
+ */
+public interface StreamingTokenizer {
+
+    /**
+     * Appends the text.
+     *
+     * @param text
+     *            the continuation of the text
+     * @throws IllegalStateException
+     *             if the text has already been finished
+     */
+    public void feed(CharSequence text);
+
+    /**
+     * Ends the text, and sends the rest of the morphemes.
+     *
+     * @throws IllegalStateException
+     *             if the text has already been finished
+     */
+    public void finish();
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A {@link StreamingTokenizer} which keeps the text not determined yet.
+ *
+ * <p>
+ * The kept text is tried again when it has grown by the chunk length and has at
+ * least doubled, so the whole text is tokenized in linear time.
+ */
+class StreamingTokenizerImpl implements StreamingTokenizer {
+
+    static final int DEFAULT_CHUNK_LENGTH = 4096;
+
+    final Tokenizer.SplitMode mode;
+    final Consumer<List<Morpheme>> output;
+    private final Engine engine;
+    private final int chunkLength;
+    private final StringBuilder text = new StringBuilder();
+    private int nextTry;
+    private boolean isFinished;
+
+    /** the index of the kept text in the whole text */
+    int base;
+    /** the right-ID of the last morpheme sent */
+    short bosRightId;
+
+    StreamingTokenizerImpl(Engine engine, short bosRightId, Tokenizer.SplitMode mode, Consumer<List<Morpheme>> output,
+            int chunkLength) {
+        this.engine = engine;
+        this.mode = mode;
+        this.output = output;
+        this.chunkLength = chunkLength;
+        this.nextTry = chunkLength;
+        this.bosRightId = bosRightId;
+    }
+
+    @Override
+    public void feed(CharSequence text) {
+        if (isFinished) {
+            throw new IllegalStateException("the text has already been finished");
+        }
+        this.text.append(text);
+        if (this.text.length() < nextTry) {
+            return;
+        }
+        int end = this.text.length();
+        if (Character.isHighSurrogate(this.text.charAt(end - 1))) {
+            end--; // the pair continues in the next piece
+        }
+        int length = engine.tokenizeHead(this, this.text.substring(0, end));
+        this.text.delete(0, length);
+        base += length;
+        nextTry = this.text.length() + Math.max(this.text.length(), chunkLength);
+    }
+
+    @Override
+    public void finish() {
+        if (isFinished) {
+            throw new IllegalStateException("the text has already been finished");
+        }
+        isFinished = true;
+        if (text.length() > 0) {
+            engine.tokenizeTail(this, text.toString());
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * The tokenizer of the pieces.
+     */
+    interface Engine {
+
+        /**
+         * Tokenizes the head of a text which may continue, and sends the morphemes
+         * determined.
+         *
+         * @param stream
+         *            the state of the text
+         * @param text
+         *            the text not determined yet
+         * @return the length of the head whose morphemes are sent
+         */
+        int tokenizeHead(StreamingTokenizerImpl stream, String text);
+
+        /**
+         * Tokenizes the rest of a text, and sends the morphemes.
+         *
+         * @param stream
+         *            the state of the text
+         * @param text
+         *            the text not determined yet
+         */
+        void tokenizeTail(StreamingTokenizerImpl stream, String text);
+    }
+}
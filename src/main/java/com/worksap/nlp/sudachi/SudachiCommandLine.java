@@ -17,7 +17,6 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.BufferedReader;
-import java.io.Console;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -35,6 +34,59 @@ public class SudachiCommandLine {
 
     static Logger logger;
 
+    /**
+     * The options shared by the command-line tools.
+     */
+    static class Options {
+        static final String USAGE = "\t-r file\tread settings from file (overrides -s)\n"
+                + "\t-s string\tadditional settings (overrides -r)\n" + "\t-p directory\troot directory of resources\n"
+                + "\t-m mode\tmode of splitting\n";
+
+        Tokenizer.SplitMode mode = Tokenizer.SplitMode.C;
+        String settings = null;
+        boolean mergeSettings = false;
+        String resourcesDirectory = null;
+
+        /**
+         * Parses the option at {@code args[i]} if it is a shared one.
+         *
+         * @return the index of the last argument of the option, or {@code -1} if
+         *         {@code args[i]} is not a shared option
+         */
+        int parse(String[] args, int i) throws IOException {
+            if (args[i].equals("-r") && i + 1 < args.length) {
+                try (FileInputStream input = new FileInputStream(args[++i])) {
+                    settings = JapaneseDictionary.readAll(input);
+                    mergeSettings = false;
+                }
+            } else if (args[i].equals("-p") && i + 1 < args.length) {
+                resourcesDirectory = args[++i];
+            } else if (args[i].equals("-s") && i + 1 < args.length) {
+                settings = args[++i];
+                mergeSettings = true;
+            } else if (args[i].equals("-m") && i + 1 < args.length) {
+                switch (args[++i]) {
+                case "A":
+                    mode = Tokenizer.SplitMode.A;
+                    break;
+                case "B":
+                    mode = Tokenizer.SplitMode.B;
+                    break;
+                default:
+                    mode = Tokenizer.SplitMode.C;
+                    break;
+                }
+            } else {
+                return -1;
+            }
+            return i;
+        }
+
+        Dictionary createDictionary() throws IOException {
+            return new DictionaryFactory().create(resourcesDirectory, settings, mergeSettings);
+        }
+    }
+
     static class FileOrStdoutPrintStream extends PrintStream {
 
         private boolean isFile;
@@ -123,7 +175,7 @@ public class SudachiCommandLine {
      * standard output.
      * <p>
      * The {@code file} operands are processed in command-line order. If
-     * {@code file} is absent, this tool reads from the starndard input.
+     * {@code file} is absent, this tool reads from the standard input.
      *
      * <p>
      * This tool processes a line as a sentence.
@@ -140,10 +192,7 @@ public class SudachiCommandLine {
         }
         logger = Logger.getLogger(SudachiCommandLine.class.getName());
 
-        Tokenizer.SplitMode mode = Tokenizer.SplitMode.C;
-        String settings = null;
-        boolean mergeSettings = false;
-        String resourcesDirectory = null;
+        Options options = new Options();
         String outputFileName = null;
         boolean isEnableDump = false;
         boolean printAll = false;
@@ -151,28 +200,9 @@ public class SudachiCommandLine {
 
         int i = 0;
         for (i = 0; i < args.length; i++) {
-            if (args[i].equals("-r") && i + 1 < args.length) {
-                try (FileInputStream input = new FileInputStream(args[++i])) {
-                    settings = JapaneseDictionary.readAll(input);
-                    mergeSettings = false;
-                }
-            } else if (args[i].equals("-p") && i + 1 < args.length) {
-                resourcesDirectory = args[++i];
-            } else if (args[i].equals("-s") && i + 1 < args.length) {
-                settings = args[++i];
-                mergeSettings = true;
-            } else if (args[i].equals("-m") && i + 1 < args.length) {
-                switch (args[++i]) {
-                case "A":
-                    mode = Tokenizer.SplitMode.A;
-                    break;
-                case "B":
-                    mode = Tokenizer.SplitMode.B;
-                    break;
-                default:
-                    mode = Tokenizer.SplitMode.C;
-                    break;
-                }
+            int last = options.parse(args, i);
+            if (last >= 0) {
+                i = last;
             } else if (args[i].equals("-o") && i + 1 < args.length) {
                 outputFileName = args[++i];
             } else if (args[i].equals("-a")) {
@@ -182,16 +212,12 @@ public class SudachiCommandLine {
             } else if (args[i].equals("-f")) {
                 ignoreError = true;
             } else if (args[i].equals("-h")) {
-                Console console = System.console();
-                console.printf("usage: SudachiCommandLine [-r file] [-m A|B|C] [-o file] [file ...]\n");
-                console.printf("\t-r file\tread settings from file (overrides -s)\n");
-                console.printf("\t-s string\tadditional settings (overrides -r)\n");
-                console.printf("\t-p directory\troot directory of resources\n");
-                console.printf("\t-m mode\tmode of splitting\n");
-                console.printf("\t-o file\toutput to file\n");
-                console.printf("\t-a\tprint all fields\n");
-                console.printf("\t-f\tignore error\n");
-                console.printf("\t-d\tdebug mode\n");
+                System.out.print("usage: SudachiCommandLine [-r file] [-m A|B|C] [-o file] [file ...]\n");
+                System.out.print(Options.USAGE);
+                System.out.print("\t-o file\toutput to file\n");
+                System.out.print("\t-a\tprint all fields\n");
+                System.out.print("\t-f\tignore error\n");
+                System.out.print("\t-d\tdebug mode\n");
                 return;
             } else {
                 break;
@@ -199,7 +225,7 @@ public class SudachiCommandLine {
         }
 
         try (PrintStream output = new FileOrStdoutPrintStream(outputFileName);
-                Dictionary dict = new DictionaryFactory().create(resourcesDirectory, settings, mergeSettings)) {
+                Dictionary dict = options.createDictionary()) {
             Tokenizer tokenizer = dict.create();
             if (isEnableDump) {
                 tokenizer.setDumpOutput(output);
@@ -208,11 +234,11 @@ public class SudachiCommandLine {
             if (i < args.length) {
                 for (; i < args.length; i++) {
                     try (FileInputStream input = new FileInputStream(args[i])) {
-                        run(tokenizer, mode, input, output, printAll, ignoreError);
+                        run(tokenizer, options.mode, input, output, printAll, ignoreError);
                     }
                 }
             } else {
-                run(tokenizer, mode, System.in, output, printAll, ignoreError);
+                run(tokenizer, options.mode, System.in, output, printAll, ignoreError);
             }
         }
     }
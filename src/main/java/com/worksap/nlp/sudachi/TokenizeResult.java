@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.List;
+
+/**
+ * The result of tokenizing one of the texts of a batch.
+ *
+ * Either the morphemes or the exception thrown while tokenizing the text is
+ * held, so that a failure does not affect the other texts.
+ *
+ * @see Dictionary#tokenizeAll(List, Tokenizer.SplitMode)
+ */
+public final class TokenizeResult {
+
+    private final List<Morpheme> morphemes;
+    private final RuntimeException error;
+
+    TokenizeResult(List<Morpheme> morphemes, RuntimeException error) {
+        this.morphemes = morphemes;
+        this.error = error;
+    }
+
+    /**
+     * Returns whether the text was tokenized.
+     *
+     * @return {@code true} if the text was tokenized, {@code false} if it failed
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the morphemes of the text.
+     *
+     * @return the result of tokenizing
+     * @throws IllegalStateException
+     *             if tokenizing the text failed
+     */
+    public List<Morpheme> getMorphemes() {
+        if (error != null) {
+            throw new IllegalStateException("tokenizing the text failed", error);
+        }
+        return morphemes;
+    }
+
+    /**
+     * Returns the exception thrown while tokenizing the text.
+     *
+     * @return the exception, or {@code null} if the text was tokenized
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+}
@@ -16,8 +16,21 @@
 
 package com.worksap.nlp.sudachi;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A tokenizer of morphological analysis.
@@ -52,6 +65,244 @@ public interface Tokenizer {
         return tokenize(SplitMode.C, text);
     }
 
+    /**
+     * Tokenize a text encoded in UTF-8.
+     *
+     * When no input text plugin is configured, the text is analyzed without
+     * decoding it into a string. When the plugins do not rewrite the text, it is
+     * decoded for them, and analyzed without encoding it again. The offsets of the
+     * morphemes, returned by {@link Morpheme#begin()} and {@link Morpheme#end()},
+     * are the indexes in {@code bytes}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param bytes
+     *            the array that contains the input text
+     * @param offset
+     *            the index of the first byte of the input text
+     * @param length
+     *            the length of the input text in bytes
+     * @return a result of tokenizing
+     * @throws IllegalArgumentException
+     *             if the bytes are not well-formed UTF-8
+     * @throws IndexOutOfBoundsException
+     *             if the range is out of {@code bytes}
+     * @throws UnsupportedOperationException
+     *             if this tokenizer does not support it, which is the default
+     */
+    public default List<Morpheme> tokenize(SplitMode mode, byte[] bytes, int offset, int length) {
+        throw new UnsupportedOperationException("tokenizing bytes is not supported");
+    }
+
+    /**
+     * Tokenize a text encoded in UTF-8. Tokenize a text with {@link SplitMode}.C.
+     * 
+     * @param bytes
+     *            the array that contains the input text
+     * @param offset
+     *            the index of the first byte of the input text
+     * @param length
+     *            the length of the input text in bytes
+     * @return a result of tokenizing
+     * @see #tokenize(SplitMode,byte[],int,int)
+     */
+    public default List<Morpheme> tokenize(byte[] bytes, int offset, int length) {
+        return tokenize(SplitMode.C, bytes, offset, length);
+    }
+
+    /**
+     * Tokenize a text encoded in UTF-8.
+     *
+     * The text is the remaining bytes of the buffer. The position of the buffer is
+     * not changed. The offsets of the morphemes are the indexes in the buffer.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param buffer
+     *            the buffer that contains the input text
+     * @return a result of tokenizing
+     * @throws IllegalArgumentException
+     *             if the bytes are not well-formed UTF-8
+     * @throws UnsupportedOperationException
+     *             if this tokenizer does not support it, which is the default
+     * @see #tokenize(SplitMode,byte[],int,int)
+     */
+    public default List<Morpheme> tokenize(SplitMode mode, ByteBuffer buffer) {
+        throw new UnsupportedOperationException("tokenizing bytes is not supported");
+    }
+
+    /**
+     * Tokenize a text encoded in UTF-8. Tokenize a text with {@link SplitMode}.C.
+     * 
+     * @param buffer
+     *            the buffer that contains the input text
+     * @return a result of tokenizing
+     * @see #tokenize(SplitMode,ByteBuffer)
+     */
+    public default List<Morpheme> tokenize(ByteBuffer buffer) {
+        return tokenize(SplitMode.C, buffer);
+    }
+
+    /**
+     * Tokenize a region of a text.
+     *
+     * The offsets of the morphemes are the indexes in {@code text}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            the text that contains the input text
+     * @param begin
+     *            the beginning index of the input text, inclusive
+     * @param end
+     *            the ending index of the input text, exclusive
+     * @return a result of tokenizing
+     * @throws IndexOutOfBoundsException
+     *             if the region is out of {@code text}
+     * @throws UnsupportedOperationException
+     *             if this tokenizer does not support it, which is the default
+     */
+    public default List<Morpheme> tokenize(SplitMode mode, CharSequence text, int begin, int end) {
+        throw new UnsupportedOperationException("tokenizing a region is not supported");
+    }
+
+    /**
+     * Tokenize a region of a text. Tokenize a text with {@link SplitMode}.C.
+     * 
+     * @param text
+     *            the text that contains the input text
+     * @param begin
+     *            the beginning index of the input text, inclusive
+     * @param end
+     *            the ending index of the input text, exclusive
+     * @return a result of tokenizing
+     * @see #tokenize(SplitMode,CharSequence,int,int)
+     */
+    public default List<Morpheme> tokenize(CharSequence text, int begin, int end) {
+        return tokenize(SplitMode.C, text, begin, end);
+    }
+
+    /**
+     * Creates a tokenizer of a text which is fed in pieces.
+     *
+     * The returned tokenizer uses this one, and tokenizing other texts with this
+     * one between the pieces does not affect it.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param output
+     *            the receiver of the morphemes, which are sent in the order of the
+     *            text
+     * @return the tokenizer of the text
+     * @throws UnsupportedOperationException
+     *             if this tokenizer does not support it, which is the default
+     * @see StreamingTokenizer
+     */
+    public default StreamingTokenizer createStreamingTokenizer(SplitMode mode, Consumer<List<Morpheme>> output) {
+        throw new UnsupportedOperationException("the streaming tokenizer is not supported");
+    }
+
+    /**
+     * Tokenizes the lines or the sentences read from a text lazily.
+     *
+     * <p>
+     * Each element of the returned stream is the morphemes of a segment, which is
+     * read and tokenized when the element is consumed. The offsets of the morphemes
+     * are the indexes in the segment. Only a buffer of a fixed length is kept for
+     * reading: a longer segment is tokenized in pieces by a
+     * {@link StreamingTokenizer}, and its morphemes are divided into several
+     * elements without changing them. The line breaks are not included in the
+     * segments.
+     *
+     * <p>
+     * The stream is sequential, and this tokenizer must not be used by others until
+     * the stream is consumed, unless it is a {@link TokenizerPool}. Closing the
+     * stream closes the reader. An {@link IOException} of the reader is thrown as
+     * {@link UncheckedIOException}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param segmentation
+     *            the unit of the segments
+     * @param input
+     *            the text
+     * @return the stream of the morphemes of the segments
+     */
+    public default Stream<List<Morpheme>> tokenizeSegments(SplitMode mode, Segmentation segmentation, Reader input) {
+        SegmentReader segments = new SegmentReader(input, segmentation, SegmentReader.DEFAULT_MAX_LENGTH);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new SegmentIterator(this, mode, segments),
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Tokenizes the lines or the sentences read from a UTF-8 text lazily.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param segmentation
+     *            the unit of the segments
+     * @param input
+     *            the text encoded in UTF-8
+     * @return the stream of the morphemes of the segments
+     * @see #tokenizeSegments(Tokenizer.SplitMode, Tokenizer.Segmentation, Reader)
+     */
+    public default Stream<List<Morpheme>> tokenizeSegments(SplitMode mode, Segmentation segmentation,
+            InputStream input) {
+        return tokenizeSegments(mode, segmentation, new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a publisher of the morphemes of the lines or the sentences read from
+     * a text.
+     *
+     * The segments are read and tokenized on the executor as they are requested by
+     * the subscriber, in the same way as
+     * {@link #tokenizeSegments(Tokenizer.SplitMode, Tokenizer.Segmentation, Reader)}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param segmentation
+     *            the unit of the segments
+     * @param input
+     *            the text
+     * @param executor
+     *            the executor which reads and tokenizes the segments
+     * @return the publisher
+     * @see MorphemePublisher
+     */
+    public default MorphemePublisher createPublisher(SplitMode mode, Segmentation segmentation, Reader input,
+            Executor executor) {
+        SegmentReader segments = new SegmentReader(input, segmentation, SegmentReader.DEFAULT_MAX_LENGTH);
+        return new MorphemePublisher(input, new SegmentIterator(this, mode, segments), executor);
+    }
+
+    /**
+     * Creates a publisher of the morphemes of the lines or the sentences read from
+     * a UTF-8 text.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param segmentation
+     *            the unit of the segments
+     * @param input
+     *            the text encoded in UTF-8
+     * @param executor
+     *            the executor which reads and tokenizes the segments
+     * @return the publisher
+     * @see #createPublisher(Tokenizer.SplitMode, Tokenizer.Segmentation, Reader,
+     *      Executor)
+     */
+    public default MorphemePublisher createPublisher(SplitMode mode, Segmentation segmentation, InputStream input,
+            Executor executor) {
+        return createPublisher(mode, segmentation, new InputStreamReader(input, StandardCharsets.UTF_8), executor);
+    }
+
     /**
      * Prints a lattice structure of analyzing.
      *
@@ -60,6 +311,41 @@ public interface Tokenizer {
      */
     public void setDumpOutput(PrintStream output);
 
+    /**
+     * Sets the beam of the search for the best path.
+     *
+     * In the beam mode, only the best nodes ending at each position are connected
+     * to the following nodes. It is faster, but the result may differ from the best
+     * one. If no path is left, the input is tokenized again without the beam.
+     *
+     * The initial values are {@code beamWidth} and {@code beamThreshold} in the
+     * settings.
+     *
+     * @param width
+     *            the maximum number of the nodes of the lowest costs kept at each
+     *            position, or 0 for no limit
+     * @param threshold
+     *            the maximum difference of the path cost from the best one at each
+     *            position, or a negative value for no limit
+     * @throws IllegalArgumentException
+     *             if {@code width} is negative
+     * @throws UnsupportedOperationException
+     *             if this tokenizer does not support it, which is the default
+     */
+    public default void setBeam(int width, int threshold) {
+        throw new UnsupportedOperationException("the beam is not supported");
+    }
+
+    /**
+     * Returns the number of the nodes pruned by the beam since this tokenizer was
+     * created.
+     *
+     * @return the number of the pruned nodes, which is always 0 by default
+     */
+    public default long getPrunedNodeCount() {
+        return 0;
+    }
+
     /**
      * A mode of splitting
      */
@@ -73,4 +359,17 @@ public interface Tokenizer {
         /** long mode */
         C,
     }
+
+    /**
+     * A unit of reading a text
+     */
+    public enum Segmentation {
+        /** a line, ended by a line break */
+        LINE,
+
+        /**
+         * a sentence, ended by a line break or a punctuation mark such as {@code 。}
+         */
+        SENTENCE,
+    }
 }
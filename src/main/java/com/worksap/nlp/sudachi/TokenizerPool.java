@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe tokenizer which lends the analysis to a bounded pool of
+ * tokenizers.
+ *
+ * <p>
+ * Each call borrows a tokenizer, and the calls wait while all of them are in
+ * use. A tokenizer keeps the working memory grown for the longest input it has
+ * tokenized. When it exceeds the limit of the pool, the tokenizer is discarded
+ * instead of being returned, and a new one is created later.
+ *
+ * <p>
+ * The pool does not depend on the calling threads, so it can be used from
+ * virtual threads as well. The waiting calls are interruptible.
+ *
+ * <p>
+ * {@link #setDumpOutput} and {@link #setBeam} apply to the calls which borrow a
+ * tokenizer after them. The dumps of the calls running concurrently are mixed
+ * in the output.
+ *
+ * <p>
+ * The pools of the dictionaries other than the ones of
+ * {@link DictionaryFactory} hold the tokenizers of their
+ * {@link Dictionary#create}. Their working memory is not known, so they are
+ * never discarded, and a long text is tokenized by one of them. They do not
+ * support {@link #createStreamingTokenizer} and {@link #setBeam}.
+ *
+ * @see Dictionary#createTokenizerPool(int, long)
+ */
+public final class TokenizerPool implements Tokenizer {
+
+    /** the default limit of the working memory of a pooled tokenizer */
+    public static final long DEFAULT_MAX_SCRATCH_BYTES = 16L * 1024 * 1024;
+
+    private final Supplier<? extends Tokenizer> factory;
+    // whether the tokenizers are JapaneseTokenizer
+    private final boolean isJapanese;
+    private final short bosRightId;
+    private final int maximumSize;
+    private final long maxScratchBytes;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Tokenizer> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Tokenizer> tokenizers = ConcurrentHashMap.newKeySet();
+    final StreamingTokenizerImpl.Engine engine = new PooledEngine();
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+    private final LongAdder prunedNodes = new LongAdder();
+
+    private volatile PrintStream dumpOutput;
+    // the width and the threshold, or null to keep the ones of the settings
+    private volatile int[] beam;
+
+    TokenizerPool(Supplier<JapaneseTokenizer> factory, short bosRightId, int maximumSize, long maxScratchBytes) {
+        this(factory, true, bosRightId, maximumSize, maxScratchBytes);
+    }
+
+    TokenizerPool(Supplier<? extends Tokenizer> factory, int maximumSize, long maxScratchBytes) {
+        this(factory, false, (short) 0, maximumSize, maxScratchBytes);
+    }
+
+    private TokenizerPool(Supplier<? extends Tokenizer> factory, boolean isJapanese, short bosRightId, int maximumSize,
+            long maxScratchBytes) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("size of the pool must be positive");
+        }
+        if (maxScratchBytes < 0) {
+            throw new IllegalArgumentException("limit of the working memory must not be negative");
+        }
+        this.factory = factory;
+        this.isJapanese = isJapanese;
+        this.bosRightId = bosRightId;
+        this.maximumSize = maximumSize;
+        this.maxScratchBytes = maxScratchBytes;
+        this.permits = new Semaphore(maximumSize, true);
+    }
+
+    @Override
+    public List<Morpheme> tokenize(SplitMode mode, String text) {
+        return apply(t -> t.tokenize(mode, text));
+    }
+
+    @Override
+    public List<Morpheme> tokenize(SplitMode mode, byte[] bytes, int offset, int length) {
+        return apply(t -> t.tokenize(mode, bytes, offset, length));
+    }
+
+    @Override
+    public List<Morpheme> tokenize(SplitMode mode, ByteBuffer buffer) {
+        return apply(t -> t.tokenize(mode, buffer));
+    }
+
+    @Override
+    public List<Morpheme> tokenize(SplitMode mode, CharSequence text, int begin, int end) {
+        return apply(t -> t.tokenize(mode, text, begin, end));
+    }
+
+    /**
+     * Tokenizes texts in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @return the results in the order of {@code texts}
+     * @see #tokenizeAll(List, Tokenizer.SplitMode, Executor)
+     */
+    public List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, SplitMode mode) {
+        return tokenizeAll(texts, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes texts in parallel.
+     *
+     * As many tasks as the tokenizers of this pool are run on the executor. Each of
+     * them borrows a tokenizer, and tokenizes the texts not taken by the others
+     * yet. An exception thrown by a text is held in its result, and the other texts
+     * are tokenized.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @param executor
+     *            the executor which runs the tasks
+     * @return the results in the order of {@code texts}
+     */
+    public List<TokenizeResult> tokenizeAll(List<? extends CharSequence> texts, SplitMode mode, Executor executor) {
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TokenizeResult[] results = new TokenizeResult[texts.size()];
+        forEach(results.length, executor, (tokenizer, i) -> results[i] = tokenize(tokenizer, mode, texts.get(i)));
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Tokenizes a stream of texts in parallel.
+     *
+     * The returned stream is parallel, and each text borrows a tokenizer of this
+     * pool. The results are in the encounter order of {@code texts}, which is kept
+     * by the terminal operations such as {@link Stream#forEachOrdered} and
+     * {@link Stream#collect}. An exception thrown by a text is held in its result.
+     *
+     * <p>
+     * This method turns {@code texts} itself into a parallel stream by
+     * {@link Stream#parallel}, so the intermediate operations of {@code texts} also
+     * run in parallel, and must be safe to do so. Collect the texts first if they
+     * must be produced sequentially.
+     *
+     * @param texts
+     *            the input texts
+     * @param mode
+     *            a mode of splitting
+     * @return the stream of the results
+     */
+    public Stream<TokenizeResult> tokenizeAll(Stream<? extends CharSequence> texts, SplitMode mode) {
+        return texts.parallel().map(text -> apply(t -> tokenize(t, mode, text)));
+    }
+
+    /**
+     * Tokenizes a long text on the common {@link ForkJoinPool}.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            input text
+     * @return a result of tokenizing
+     * @see #tokenizeInParallel(Tokenizer.SplitMode, CharSequence, Executor)
+     */
+    public List<Morpheme> tokenizeInParallel(SplitMode mode, CharSequence text) {
+        return tokenizeInParallel(mode, text, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes a long text on multiple threads.
+     *
+     * The text is divided into chunks, preferably at the ends of the lines or the
+     * sentences, which are tokenized concurrently by the tokenizers of this pool.
+     * The result is the same as {@link #tokenize(Tokenizer.SplitMode, String)}.
+     * Where the chunks cannot be joined without changing the result, the text
+     * around the bound is tokenized again. A text shorter than two chunks is
+     * tokenized by one tokenizer.
+     *
+     * @param mode
+     *            a mode of splitting
+     * @param text
+     *            input text
+     * @param executor
+     *            the executor which runs the tasks
+     * @return a result of tokenizing
+     */
+    public List<Morpheme> tokenizeInParallel(SplitMode mode, CharSequence text, Executor executor) {
+        return tokenizeInParallel(mode, text, executor, ParallelTokenizer.DEFAULT_CHUNK_LENGTH,
+                ParallelTokenizer.DEFAULT_OVERLAP);
+    }
+
+    List<Morpheme> tokenizeInParallel(SplitMode mode, CharSequence text, Executor executor, int chunkLength,
+            int overlap) {
+        if (!isJapanese) {
+            return tokenize(mode, text.toString());
+        }
+        return new ParallelTokenizer(this, mode, text, chunkLength, overlap).tokenize(executor);
+    }
+
+    /**
+     * Runs the task for each index on the executor. As many tasks as the tokenizers
+     * of this pool run, each of which borrows a tokenizer and takes the indexes not
+     * taken by the others yet.
+     */
+    void forEach(int size, Executor executor, ObjIntConsumer<Tokenizer> task) {
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> apply(t -> {
+            for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+                task.accept(t, i);
+            }
+            return null;
+        });
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.min(maximumSize, size)];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(worker, executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static TokenizeResult tokenize(Tokenizer tokenizer, SplitMode mode, CharSequence text) {
+        try {
+            // the other tokenizers may not support the regions of the texts
+            List<Morpheme> morphemes = (tokenizer instanceof JapaneseTokenizer)
+                    ? tokenizer.tokenize(mode, text, 0, text.length())
+                    : tokenizer.tokenize(mode, text.toString());
+            return new TokenizeResult(morphemes, null);
+        } catch (RuntimeException e) {
+            return new TokenizeResult(null, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Each piece borrows a tokenizer of this pool. The returned tokenizer is not
+     * thread-safe.
+     */
+    @Override
+    public StreamingTokenizer createStreamingTokenizer(SplitMode mode, Consumer<List<Morpheme>> output) {
+        if (!isJapanese) {
+            throw new UnsupportedOperationException("the streaming tokenizer is not supported");
+        }
+        return new StreamingTokenizerImpl(engine, bosRightId, mode, output,
+                StreamingTokenizerImpl.DEFAULT_CHUNK_LENGTH);
+    }
+
+    @Override
+    public void setDumpOutput(PrintStream output) {
+        dumpOutput = output;
+    }
+
+    @Override
+    public void setBeam(int width, int threshold) {
+        if (width < 0) {
+            throw new IllegalArgumentException("beam width must not be negative");
+        }
+        if (!isJapanese) {
+            throw new UnsupportedOperationException("the beam is not supported");
+        }
+        beam = new int[] { width, threshold };
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The nodes pruned by the calls still running are not counted.
+     */
+    @Override
+    public long getPrunedNodeCount() {
+        return prunedNodes.sum();
+    }
+
+    /**
+     * Returns the maximum number of the tokenizers.
+     *
+     * @return the maximum number of the tokenizers
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of the tokenizers created and not discarded.
+     *
+     * @return the number of the tokenizers
+     */
+    public int getSize() {
+        return tokenizers.size();
+    }
+
+    /**
+     * Returns the number of the tokenizers in use.
+     *
+     * @return the number of the tokenizers
+     */
+    public int getActiveCount() {
+        return maximumSize - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of the calls waiting for a tokenizer.
+     *
+     * @return the estimated number of the calls
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Returns the number of the tokenizers borrowed since this pool was created.
+     *
+     * @return the number of the borrowings
+     */
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * Returns the total time the calls waited for a tokenizer.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * Returns the number of the tokenizers discarded because their working memory
+     * exceeded the limit.
+     *
+     * @return the number of the discarded tokenizers
+     */
+    public long getDiscardCount() {
+        return discards.sum();
+    }
+
+    /**
+     * Returns the approximate size of the working memory of the tokenizers.
+     *
+     * <p>
+     * The memory of the tokenizers in use is included, but may not be up to date.
+     *
+     * @return the size in bytes
+     */
+    public long getScratchBytes() {
+        long bytes = 0;
+        for (Tokenizer tokenizer : tokenizers) {
+            bytes += getScratchBytes(tokenizer);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the limit of the working memory of a tokenizer returned to this pool.
+     *
+     * @return the size in bytes
+     */
+    public long getMaxScratchBytes() {
+        return maxScratchBytes;
+    }
+
+    <T> T apply(Function<Tokenizer, T> task) {
+        Tokenizer tokenizer = acquire();
+        long pruned = tokenizer.getPrunedNodeCount();
+        try {
+            return task.apply(tokenizer);
+        } finally {
+            prunedNodes.add(tokenizer.getPrunedNodeCount() - pruned);
+            release(tokenizer);
+        }
+    }
+
+    private Tokenizer acquire() {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a tokenizer", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        acquisitions.increment();
+
+        Tokenizer tokenizer = idle.pollFirst();
+        try {
+            if (tokenizer == null) {
+                tokenizer = factory.get();
+                tokenizers.add(tokenizer);
+            }
+            int[] beam = this.beam;
+            if (beam != null) {
+                tokenizer.setBeam(beam[0], beam[1]);
+            }
+            tokenizer.setDumpOutput(dumpOutput);
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+        return tokenizer;
+    }
+
+    private void release(Tokenizer tokenizer) {
+        if (getScratchBytes(tokenizer) > maxScratchBytes) {
+            tokenizers.remove(tokenizer);
+            discards.increment();
+        } else {
+            // the most recently used one is lent first, so that the others
+            // are not grown for nothing
+            idle.offerFirst(tokenizer);
+        }
+        permits.release();
+    }
+
+    private static long getScratchBytes(Tokenizer tokenizer) {
+        return (tokenizer instanceof JapaneseTokenizer) ? ((JapaneseTokenizer) tokenizer).getScratchBytes() : 0;
+    }
+
+    private class PooledEngine implements StreamingTokenizerImpl.Engine {
+
+        @Override
+        public int tokenizeHead(StreamingTokenizerImpl stream, String text) {
+            return apply(t -> ((JapaneseTokenizer) t).tokenizeHead(stream, text));
+        }
+
+        @Override
+        public void tokenizeTail(StreamingTokenizerImpl stream, String text) {
+            apply(t -> {
+                ((JapaneseTokenizer) t).tokenizeTail(stream, text);
+                return null;
+            });
+        }
+    }
+}
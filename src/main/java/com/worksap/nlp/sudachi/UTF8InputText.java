@@ -16,28 +16,49 @@
 
 package com.worksap.nlp.sudachi;
 
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 import com.worksap.nlp.sudachi.dictionary.CategoryType;
-import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.CategoryTypeSet;
 
+/**
+ * The UTF-8 encoded input text.
+ *
+ * <p>
+ * The index is the offset in the UTF-8 byte sequence. The category types, their
+ * continuities and whether a word can begin are stored for each byte in
+ * primitive arrays, and the sets of category types are returned as views of
+ * their bitmasks.
+ *
+ * <p>
+ * The original indexes are in the coordinates of the caller: the offsets in the
+ * {@code char} sequence or in the byte sequence that was given to the
+ * tokenizer. When the text was given as UTF-8 bytes and no plugin changed it,
+ * the strings are decoded only when they are requested.
+ */
 class UTF8InputText implements InputText {
 
-    private final String originalText;
-    private final String modifiedText;
+    private String originalText;
+    private String modifiedText;
     private final byte[] bytes;
+    private final int originalBase;
+    private final byte[] originalBytes;
     private final int[] offsets;
     private final int[] byteIndexes;
-    private final List<EnumSet<CategoryType>> charCategories;
-    private final List<Integer> charCategoryContinuities;
-    private final List<Boolean> canBowList;
+    private final int[] charCategories;
+    private final int[] charCategoryContinuities;
+    private final boolean[] canBowList;
+
+    UTF8InputText(String originalText, String modifiedText, byte[] bytes, int[] offsets, int[] byteIndexes,
+            int[] charCategories, int[] charCategoryContinuities, boolean[] canBowList) {
+        this(originalText, modifiedText, bytes, offsets, byteIndexes, charCategories, charCategoryContinuities,
+                canBowList, 0, null);
+    }
 
-    UTF8InputText(Grammar grammar, String originalText, String modifiedText, byte[] bytes, int[] offsets,
-            int[] byteIndexes, List<EnumSet<CategoryType>> charCategories, List<Integer> charCategoryContinuities,
-            List<Boolean> canBowList) {
+    UTF8InputText(String originalText, String modifiedText, byte[] bytes, int[] offsets, int[] byteIndexes,
+            int[] charCategories, int[] charCategoryContinuities, boolean[] canBowList, int originalBase,
+            byte[] originalBytes) {
 
         this.originalText = originalText;
         this.modifiedText = modifiedText;
@@ -47,16 +68,44 @@ class UTF8InputText implements InputText {
         this.charCategories = charCategories;
         this.charCategoryContinuities = charCategoryContinuities;
         this.canBowList = canBowList;
+        this.originalBase = originalBase;
+        this.originalBytes = originalBytes;
     }
 
     @Override
     public String getOriginalText() {
-        return originalText;
+        String text = originalText;
+        if (text == null) {
+            text = new String(originalBytes, StandardCharsets.UTF_8);
+            originalText = text;
+        }
+        return text;
     }
 
     @Override
     public String getText() {
-        return modifiedText;
+        String text = modifiedText;
+        if (text == null) {
+            text = getOriginalText();
+            modifiedText = text;
+        }
+        return text;
+    }
+
+    /**
+     * Returns the substring of the original text between the original indexes.
+     *
+     * @param begin
+     *            the beginning original index, inclusive
+     * @param end
+     *            the ending original index, exclusive
+     * @return the substring of the original text
+     */
+    String getOriginalSubstring(int begin, int end) {
+        if (originalBytes != null) {
+            return new String(originalBytes, begin - originalBase, end - begin, StandardCharsets.UTF_8);
+        }
+        return getOriginalText().substring(begin - originalBase, end - originalBase);
     }
 
     byte[] getByteText() {
@@ -75,6 +124,9 @@ class UTF8InputText implements InputText {
             throw new StringIndexOutOfBoundsException(end - begin);
         }
 
+        if (modifiedText == null) {
+            return new String(bytes, begin, end - begin, StandardCharsets.UTF_8);
+        }
         return modifiedText.substring(byteIndexes[begin], byteIndexes[end]);
     }
 
@@ -89,26 +141,32 @@ class UTF8InputText implements InputText {
 
     @Override
     public Set<CategoryType> getCharCategoryTypes(int index) {
-        return charCategories.get(byteIndexes[index]);
+        return CategoryTypeSet.of(getCharCategoryTypeBits(index));
+    }
+
+    int getCharCategoryTypeBits(int index) {
+        return charCategories[index];
     }
 
     @Override
     public Set<CategoryType> getCharCategoryTypes(int begin, int end) {
+        return CategoryTypeSet.of(getCharCategoryTypeBits(begin, end));
+    }
+
+    int getCharCategoryTypeBits(int begin, int end) {
         if (begin + getCharCategoryContinuousLength(begin) < end) {
-            return Collections.emptySet();
+            return 0;
         }
-        int b = byteIndexes[begin];
-        int e = byteIndexes[end];
-        Set<CategoryType> continuousCategory = charCategories.get(b).clone();
-        for (int i = b + 1; i < e; i++) {
-            continuousCategory.retainAll(charCategories.get(i));
+        int continuousCategory = charCategories[begin];
+        for (int i = begin + 1; i < end; i++) {
+            continuousCategory &= charCategories[i];
         }
         return continuousCategory;
     }
 
     @Override
     public int getCharCategoryContinuousLength(int index) {
-        return charCategoryContinuities.get(index);
+        return charCategoryContinuities[index];
     }
 
     @Override
@@ -131,10 +189,6 @@ class UTF8InputText implements InputText {
 
     @Override
     public boolean canBow(int index) {
-        return isCharAlignment(index) && canBowList.get(byteIndexes[index]);
-    }
-
-    private boolean isCharAlignment(int index) {
-        return (bytes[index] & 0xC0) != 0x80;
+        return canBowList[index];
     }
 }
@@ -17,44 +17,207 @@
 package com.worksap.nlp.sudachi;
 
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
 
 import com.worksap.nlp.sudachi.dictionary.CategoryType;
+import com.worksap.nlp.sudachi.dictionary.CharacterCategory;
 import com.worksap.nlp.sudachi.dictionary.Grammar;
 
-class UTF8InputTextBuilder implements InputTextBuilder {
+/**
+ * A builder of {@link UTF8InputText}.
+ *
+ * <p>
+ * The replacements are appended to a log as long as each one begins after the
+ * previous one, as the input text plugins do while they scan the text. The log
+ * is applied to the text and to the map of the original offsets in a single
+ * pass when the text is requested or the replacements go backward, so a rewrite
+ * is linear in the length of the text.
+ *
+ * <p>
+ * The working arrays are kept across {@link #reset}, so that a tokenizer can
+ * reuse a builder for each input.
+ *
+ * <p>
+ * As an {@link InputTextTransducer}, the builder is the last stage of the input
+ * text plugins: it starts the text again with the received code points.
+ *
+ * <p>
+ * The offsets are kept in {@code char} indexes of the original text, and are
+ * translated to the coordinates of the caller by {@link #build}, as set by
+ * {@link #setOriginalCoordinates}.
+ */
+class UTF8InputTextBuilder implements InputTextBuilder, InputTextTransducer {
+
+    private static final int BOW_CHECKED_TYPES = CategoryType.ALPHA.getId() | CategoryType.GREEK.getId()
+            | CategoryType.CYRILLIC.getId();
 
-    private final String originalText;
-    private StringBuilder modifiedText;
-    private List<Integer> textOffsets;
+    private String originalText;
+    private String modifiedText;
+    private int[] textOffsets = new int[0];
+    private int textOffsetsSize;
+    private int[] charCategories = new int[0];
+
+    // the log of the replacements, in the coordinates of modifiedText
+    private int[] editBegins = new int[0];
+    private int[] editEnds = new int[0];
+    private String[] editStrings = new String[0];
+    private int editSize;
+    private int editDelta;
+    private int lastEditEnd;
+    // whether the code points received since begin are the original text
+    private boolean isUnchanged;
+
+    // the coordinates of the caller
+    private int originalBase;
+    private byte[] originalBytes;
+
+    private final StringBuilder workText = new StringBuilder();
+    private int[] workOffsets = new int[0];
 
     private final Grammar grammar;
 
     public UTF8InputTextBuilder(String text, Grammar grammar) {
         this.grammar = grammar;
+        reset(text);
+    }
+
+    UTF8InputTextBuilder(Grammar grammar) {
+        this.grammar = grammar;
+    }
 
+    /**
+     * Starts building the new input text.
+     *
+     * @param text
+     *            the original input text
+     */
+    void reset(String text) {
         originalText = text;
-        modifiedText = new StringBuilder(text);
-        textOffsets = new ArrayList<>(modifiedText.length() + 1);
-        for (int i = 0, j = 0; i < originalText.length(); i++) {
-            if (!Character.isLowSurrogate(originalText.charAt(i))) {
+        modifiedText = text;
+        int length = text.length();
+        textOffsets = ensureCapacity(textOffsets, length + 1);
+        for (int i = 0, j = 0; i < length; i++) {
+            if (!Character.isLowSurrogate(text.charAt(i))) {
                 j = i;
             }
-            textOffsets.add(j);
+            textOffsets[i] = j;
+        }
+        textOffsets[length] = length;
+        textOffsetsSize = length + 1;
+        clearEdits();
+        isUnchanged = true;
+    }
+
+    /**
+     * Sets the coordinates in which the original indexes are reported.
+     *
+     * <p>
+     * The setting is kept until it is set again.
+     *
+     * @param base
+     *            the offset of the original text in the input of the caller
+     * @param bytes
+     *            the UTF-8 bytes of the original text if the original indexes are
+     *            byte offsets, or {@code null} if they are {@code char} offsets
+     */
+    void setOriginalCoordinates(int base, byte[] bytes) {
+        originalBase = base;
+        originalBytes = bytes;
+    }
+
+    @Override
+    public void begin(String originalText) {
+        this.originalText = originalText;
+        workText.setLength(0);
+        textOffsetsSize = 0;
+        clearEdits();
+        isUnchanged = true;
+    }
+
+    @Override
+    public void accept(int codePoint, int offset) {
+        int count = Character.charCount(codePoint);
+        if (isUnchanged && (offset != textOffsetsSize || offset >= originalText.length()
+                || originalText.codePointAt(offset) != codePoint)) {
+            isUnchanged = false;
+        }
+        textOffsets = ensureCapacity(textOffsets, textOffsetsSize + count);
+        workText.appendCodePoint(codePoint);
+        for (int i = 0; i < count; i++) {
+            textOffsets[textOffsetsSize++] = offset;
+        }
+    }
+
+    @Override
+    public void end() {
+        if (textOffsetsSize != originalText.length()) {
+            isUnchanged = false;
+        }
+        modifiedText = workText.toString();
+        textOffsets = ensureCapacity(textOffsets, textOffsetsSize + 1);
+        textOffsets[textOffsetsSize++] = originalText.length();
+    }
+
+    @Override
+    public boolean isIdle() {
+        return true;
+    }
+
+    /**
+     * Returns whether the text received from {@link #begin} to {@link #end} is the
+     * original text, that is, the input text plugins have not rewritten it.
+     *
+     * @return {@code true} if the text is unchanged
+     */
+    boolean isUnchanged() {
+        return isUnchanged;
+    }
+
+    /**
+     * Returns the number of the {@code char}s received since {@link #begin}.
+     *
+     * @return the length of the received text
+     */
+    int getReceivedLength() {
+        return textOffsetsSize;
+    }
+
+    /**
+     * Returns the approximate size of the arrays kept for the next text.
+     *
+     * @return the size in bytes
+     */
+    long getScratchBytes() {
+        long bytes = (long) (textOffsets.length + charCategories.length + workOffsets.length) * Integer.BYTES;
+        bytes += (long) (editBegins.length + editEnds.length) * Integer.BYTES;
+        bytes += (long) editStrings.length * LatticeImpl.REFERENCE_BYTES;
+        bytes += (long) workText.capacity() * Character.BYTES;
+        return bytes;
+    }
+
+    /**
+     * Sends the modified text to the transducer.
+     *
+     * @param downstream
+     *            the transducer
+     */
+    void writeTo(InputTextTransducer downstream) {
+        applyEdits();
+        int length = modifiedText.length();
+        for (int i = 0; i < length;) {
+            int codePoint = modifiedText.codePointAt(i);
+            downstream.accept(codePoint, textOffsets[i]);
+            i += Character.charCount(codePoint);
         }
-        textOffsets.add(originalText.length());
     }
 
     @Override
     public void replace(int begin, int end, String str) {
+        int modifiedLength = modifiedText.length() + editDelta;
         if (begin < 0) {
             throw new StringIndexOutOfBoundsException(begin);
         }
-        if (begin > modifiedText.length()) {
+        if (begin > modifiedLength) {
             throw new StringIndexOutOfBoundsException("begin > length()");
         }
         if (begin > end) {
@@ -63,25 +226,65 @@ class UTF8InputTextBuilder implements InputTextBuilder {
         if (begin == end) {
             throw new IllegalArgumentException("begin == end");
         }
+        isUnchanged = false;
 
-        if (end > modifiedText.length()) {
-            end = modifiedText.length();
+        if (end > modifiedLength) {
+            end = modifiedLength;
         }
 
-        modifiedText.replace(begin, end, str);
+        if (editSize > 0 && begin < lastEditEnd) {
+            applyEdits();
+        }
+        if (editSize == editBegins.length) {
+            int capacity = Math.max(16, editSize * 2);
+            editBegins = Arrays.copyOf(editBegins, capacity);
+            editEnds = Arrays.copyOf(editEnds, capacity);
+            editStrings = Arrays.copyOf(editStrings, capacity);
+        }
+        editBegins[editSize] = begin - editDelta;
+        editEnds[editSize] = end - editDelta;
+        editStrings[editSize] = str;
+        editSize++;
+        editDelta += str.length() - (end - begin);
+        lastEditEnd = begin + str.length();
+    }
 
-        int offset = textOffsets.get(begin);
-        int length = str.length();
-        if (end - begin > length) {
-            textOffsets.subList(begin + length, end).clear();
+    private void applyEdits() {
+        if (editSize == 0) {
+            return;
         }
-        for (int i = 0; i < length; i++) {
-            if (begin + i < end) {
-                textOffsets.set(begin + i, offset);
-            } else {
-                textOffsets.add(begin + i, offset);
-            }
+        int length = modifiedText.length();
+        workText.setLength(0);
+        workOffsets = ensureCapacity(workOffsets, length + editDelta + 1);
+        int position = 0;
+        int size = 0;
+        for (int i = 0; i < editSize; i++) {
+            int begin = editBegins[i];
+            String str = editStrings[i];
+            workText.append(modifiedText, position, begin).append(str);
+            System.arraycopy(textOffsets, position, workOffsets, size, begin - position);
+            size += begin - position;
+            Arrays.fill(workOffsets, size, size + str.length(), textOffsets[begin]);
+            size += str.length();
+            position = editEnds[i];
         }
+        workText.append(modifiedText, position, length);
+        System.arraycopy(textOffsets, position, workOffsets, size, textOffsetsSize - position);
+        size += textOffsetsSize - position;
+
+        int[] offsets = textOffsets;
+        textOffsets = workOffsets;
+        workOffsets = offsets;
+        textOffsetsSize = size;
+        modifiedText = workText.toString();
+        clearEdits();
+    }
+
+    private void clearEdits() {
+        Arrays.fill(editStrings, 0, editSize, null);
+        editSize = 0;
+        editDelta = 0;
+        lastEditEnd = 0;
     }
 
     @Override
@@ -91,7 +294,8 @@ class UTF8InputTextBuilder implements InputTextBuilder {
 
     @Override
     public String getText() {
-        return modifiedText.toString();
+        applyEdits();
+        return modifiedText;
     }
 
     @Override
@@ -99,111 +303,247 @@ class UTF8InputTextBuilder implements InputTextBuilder {
         String modifiedStringText = getText();
         byte[] byteText = modifiedStringText.getBytes(StandardCharsets.UTF_8);
 
+        int textLength = modifiedStringText.length();
         int length = byteText.length;
         int[] byteIndexes = new int[length + 1];
         int[] offsets = new int[length + 1];
-        for (int i = 0, j = 0; i < modifiedText.length(); i++) {
-            if (Character.isLowSurrogate(modifiedText.charAt(i))) {
+        for (int i = 0, j = 0; i < textLength; i++) {
+            if (Character.isLowSurrogate(modifiedStringText.charAt(i))) {
                 continue;
             }
-            for (int k = 0; k < utf8ByteLength(modifiedText.codePointAt(i)); k++) {
+            for (int k = 0; k < utf8ByteLength(modifiedStringText.codePointAt(i)); k++) {
                 byteIndexes[j] = i;
-                offsets[j] = textOffsets.get(i);
+                offsets[j] = textOffsets[i];
                 j++;
             }
         }
-        byteIndexes[length] = modifiedStringText.length();
-        offsets[length] = textOffsets.get(textOffsets.size() - 1);
+        byteIndexes[length] = textLength;
+        offsets[length] = textOffsets[textOffsetsSize - 1];
+        translateOffsets(offsets);
 
-        List<EnumSet<CategoryType>> charCategories = getCharCategoryTypes(modifiedStringText);
-        List<Integer> charCategoryContinuities = getCharCategoryContinuities(modifiedStringText, length,
-                charCategories);
-        List<Boolean> canBowList = buildCanBowList(modifiedStringText, charCategories);
+        int[] charTypes = getCharCategoryTypes(modifiedStringText);
+        int[] byteCategories = new int[length];
+        for (int j = 0; j < length; j++) {
+            byteCategories[j] = charTypes[byteIndexes[j]];
+        }
+        int[] charCategoryContinuities = getCharCategoryContinuities(byteCategories);
+        boolean[] canBowList = buildCanBowList(modifiedStringText, charTypes, byteText, byteIndexes);
 
-        return new UTF8InputText(grammar, originalText, modifiedStringText, byteText, offsets, byteIndexes,
-                Collections.unmodifiableList(charCategories), Collections.unmodifiableList(charCategoryContinuities),
-                Collections.unmodifiableList(canBowList));
+        return new UTF8InputText(originalText, modifiedStringText, byteText, offsets, byteIndexes, byteCategories,
+                charCategoryContinuities, canBowList, originalBase, originalBytes);
     }
 
-    private List<EnumSet<CategoryType>> getCharCategoryTypes(String text) {
-        if (text.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<EnumSet<CategoryType>> charCategoryTypes = new ArrayList<>(text.length());
-        EnumSet<CategoryType> types = null;
-        for (int i = 0; i < text.length(); i++) {
-            if (Character.isLowSurrogate(text.charAt(i)) && types != null) {
-                charCategoryTypes.add(types);
-                continue;
+    private void translateOffsets(int[] offsets) {
+        if (originalBytes != null) {
+            int length = originalText.length();
+            workOffsets = ensureCapacity(workOffsets, length + 1);
+            int[] byteOffsets = workOffsets;
+            for (int i = 0, j = originalBase; i < length; i++) {
+                byteOffsets[i] = j;
+                char c = originalText.charAt(i);
+                if (c < 0x80) {
+                    j += 1;
+                } else if (c < 0x800) {
+                    j += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    j += 4;
+                } else if (!Character.isLowSurrogate(c)) {
+                    j += 3;
+                }
+            }
+            byteOffsets[length] = originalBase + originalBytes.length;
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = byteOffsets[offsets[i]];
+            }
+        } else if (originalBase != 0) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] += originalBase;
             }
-            types = grammar.getCharacterCategory().getCategoryTypes(text.codePointAt(i));
-            charCategoryTypes.add(types);
         }
-        return charCategoryTypes;
     }
 
-    private List<Integer> getCharCategoryContinuities(String text, int byteLength,
-            List<EnumSet<CategoryType>> charCategories) {
-        if (text.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<Integer> charCategoryContinuities = new ArrayList<>(byteLength);
-        for (int i = 0; i < charCategories.size();) {
-            int next = i + getCharCategoryContinuousLength(charCategories, i);
-            int length = 0;
-            for (int j = i; j < next; j = text.offsetByCodePoints(j, 1)) {
-                length += utf8ByteLength(text.codePointAt(j));
+    /**
+     * Builds the input text from the UTF-8 bytes without encoding the text again,
+     * when no input text plugin rewrites the text.
+     *
+     * <p>
+     * The original indexes are the byte offsets in the input of the caller, which
+     * begins at {@code base}.
+     *
+     * @param bytes
+     *            the bytes of the input text
+     * @param offset
+     *            the offset of the input text in {@code bytes}
+     * @param length
+     *            the length of the input text in bytes
+     * @param base
+     *            the original index of the first byte
+     * @return the input text
+     * @throws IllegalArgumentException
+     *             if the bytes are not well-formed UTF-8
+     */
+    UTF8InputText build(byte[] bytes, int offset, int length, int base) {
+        byte[] byteText = Arrays.copyOfRange(bytes, offset, offset + length);
+        int[] byteIndexes = new int[length + 1];
+        int[] offsets = new int[length + 1];
+        int[] byteCategories = new int[length];
+        boolean[] canBowList = new boolean[length];
+        CharacterCategory charCategory = grammar.getCharacterCategory();
+        int charIndex = 0;
+        int previousTypes = 0;
+        for (int j = 0; j < length;) {
+            int count = utf8SequenceLength(byteText, j);
+            if (count == 0) {
+                throw new IllegalArgumentException("malformed UTF-8 at offset " + (base + j));
             }
-            for (int k = length; k > 0; k--) {
-                charCategoryContinuities.add(k);
+            int codePoint = decodeUtf8(byteText, j, count);
+            int types = charCategory.getCategoryTypeBits(codePoint);
+            for (int k = j; k < j + count; k++) {
+                byteIndexes[k] = charIndex;
+                offsets[k] = base + j;
+                byteCategories[k] = types;
             }
-            i = next;
+            canBowList[j] = charIndex == 0 || (types & BOW_CHECKED_TYPES) == 0 || (types & previousTypes) == 0;
+            previousTypes = types;
+            charIndex += Character.charCount(codePoint);
+            j += count;
         }
-        return charCategoryContinuities;
+        byteIndexes[length] = charIndex;
+        offsets[length] = base + length;
+        int[] charCategoryContinuities = getCharCategoryContinuities(byteCategories);
+
+        return new UTF8InputText(null, null, byteText, offsets, byteIndexes, byteCategories, charCategoryContinuities,
+                canBowList, base, byteText);
     }
 
-    private int getCharCategoryContinuousLength(List<EnumSet<CategoryType>> charCategories, int offset) {
-        int length;
-        Set<CategoryType> continuousCategory = charCategories.get(offset).clone();
-        for (length = 1; length < charCategories.size() - offset; length++) {
-            continuousCategory.retainAll(charCategories.get(offset + length));
-            if (continuousCategory.isEmpty()) {
-                return length;
+    /**
+     * Returns the length of the well-formed UTF-8 sequence beginning at the index,
+     * or 0 if it is malformed.
+     */
+    private static int utf8SequenceLength(byte[] bytes, int index) {
+        int b = bytes[index] & 0xFF;
+        int count;
+        int min = 0x80;
+        int max = 0xBF;
+        if (b < 0x80) {
+            return 1;
+        } else if (b < 0xC2) {
+            return 0;
+        } else if (b < 0xE0) {
+            count = 2;
+        } else if (b < 0xF0) {
+            count = 3;
+            if (b == 0xE0) {
+                min = 0xA0;
+            } else if (b == 0xED) {
+                max = 0x9F;
+            }
+        } else if (b < 0xF5) {
+            count = 4;
+            if (b == 0xF0) {
+                min = 0x90;
+            } else if (b == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return 0;
+        }
+        if (index + count > bytes.length) {
+            return 0;
+        }
+        int second = bytes[index + 1] & 0xFF;
+        if (second < min || second > max) {
+            return 0;
+        }
+        for (int i = 2; i < count; i++) {
+            if ((bytes[index + i] & 0xC0) != 0x80) {
+                return 0;
             }
         }
-        return length;
+        return count;
     }
 
-    private List<Boolean> buildCanBowList(String text, List<EnumSet<CategoryType>> charCategories) {
-        if (text.isEmpty()) {
-            return Collections.emptyList();
+    private static int decodeUtf8(byte[] bytes, int index, int count) {
+        switch (count) {
+        case 1:
+            return bytes[index];
+        case 2:
+            return (bytes[index] & 0x1F) << 6 | (bytes[index + 1] & 0x3F);
+        case 3:
+            return (bytes[index] & 0x0F) << 12 | (bytes[index + 1] & 0x3F) << 6 | (bytes[index + 2] & 0x3F);
+        default:
+            return (bytes[index] & 0x07) << 18 | (bytes[index + 1] & 0x3F) << 12 | (bytes[index + 2] & 0x3F) << 6
+                    | (bytes[index + 3] & 0x3F);
         }
-        List<Boolean> canBowList = new ArrayList<>(text.length());
-        for (int i = 0; i < charCategories.size(); i++) {
-            if (i == 0) {
-                canBowList.add(true);
+    }
+
+    private int[] getCharCategoryTypes(String text) {
+        int length = text.length();
+        charCategories = ensureCapacity(charCategories, length);
+        CharacterCategory charCategory = grammar.getCharacterCategory();
+        int types = 0;
+        for (int i = 0; i < length; i++) {
+            if (Character.isLowSurrogate(text.charAt(i)) && i > 0) {
+                charCategories[i] = types;
                 continue;
             }
+            types = charCategory.getCategoryTypeBits(text.codePointAt(i));
+            charCategories[i] = types;
+        }
+        return charCategories;
+    }
 
-            if (Character.isLowSurrogate(text.charAt(i))) {
-                canBowList.add(false);
-                continue;
+    /**
+     * Returns, for each byte, the length in bytes of the longest run beginning at
+     * it whose characters share at least one category type.
+     */
+    private int[] getCharCategoryContinuities(int[] byteCategories) {
+        int length = byteCategories.length;
+        int[] charCategoryContinuities = new int[length];
+        for (int i = 0; i < length;) {
+            int continuousCategory = byteCategories[i];
+            int next = i + 1;
+            for (; next < length; next++) {
+                int types = continuousCategory & byteCategories[next];
+                if (types == 0) {
+                    break;
+                }
+                continuousCategory = types;
+            }
+            for (int k = next - i; k > 0; k--) {
+                charCategoryContinuities[i++] = k;
             }
+        }
+        return charCategoryContinuities;
+    }
 
-            EnumSet<CategoryType> types = charCategories.get(i).clone();
-            if (types.contains(CategoryType.ALPHA) || types.contains(CategoryType.GREEK)
-                    || types.contains(CategoryType.CYRILLIC)) {
-                types.retainAll(charCategories.get(i - 1));
-                canBowList.add(types.isEmpty());
+    private boolean[] buildCanBowList(String text, int[] charTypes, byte[] byteText, int[] byteIndexes) {
+        boolean[] canBowList = new boolean[byteText.length];
+        for (int j = 0; j < byteText.length; j++) {
+            if ((byteText[j] & 0xC0) == 0x80) {
                 continue;
             }
-
-            canBowList.add(true);
+            int i = byteIndexes[j];
+            if (i == 0) {
+                canBowList[j] = true;
+            } else if (Character.isLowSurrogate(text.charAt(i))) {
+                canBowList[j] = false;
+            } else if ((charTypes[i] & BOW_CHECKED_TYPES) != 0) {
+                canBowList[j] = (charTypes[i] & charTypes[i - 1]) == 0;
+            } else {
+                canBowList[j] = true;
+            }
         }
-
         return canBowList;
     }
 
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
     private int utf8ByteLength(int cp) {
         if (cp < 0) {
             return 0;
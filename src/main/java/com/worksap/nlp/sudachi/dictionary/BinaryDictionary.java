@@ -18,7 +18,11 @@ package com.worksap.nlp.sudachi.dictionary;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
 
 import com.worksap.nlp.sudachi.MMap;
 
@@ -28,30 +32,135 @@ public class BinaryDictionary implements Closeable {
     private DictionaryHeader header;
     private GrammarImpl grammar;
     private DoubleArrayLexicon lexicon;
+    private PrecomputedCosts precomputedCosts;
 
     BinaryDictionary(String fileName) throws IOException {
-        bytes = MMap.map(fileName);
+        this(MMap.map(fileName));
+    }
+
+    BinaryDictionary(Path path) throws IOException {
+        this(MMap.map(path));
+    }
+
+    BinaryDictionary(ByteBuffer buffer) throws IOException {
+        ByteBuffer bytes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.bytes = bytes;
         int offset = 0;
 
         header = new DictionaryHeader(bytes, offset);
         offset += header.storageSize();
 
         long version = header.getVersion();
-        if (version == DictionaryVersion.SYSTEM_DICT_VERSION || version == DictionaryVersion.USER_DICT_VERSION_2) {
+        if (DictionaryVersion.hasGrammar(version)) {
             grammar = new GrammarImpl(bytes, offset);
             offset += grammar.storageSize();
         } else if (version == DictionaryVersion.USER_DICT_VERSION_1) {
             // do nothing
         } else {
-            MMap.unmap(bytes);
+            close();
             throw new IOException("invalid dictionary");
         }
 
         lexicon = new DoubleArrayLexicon(bytes, offset);
+
+        if (version == DictionaryVersion.USER_DICT_VERSION_3) {
+            precomputedCosts = PrecomputedCosts.read(bytes, bytes.getInt(bytes.limit() - 4));
+        }
     }
 
+    /**
+     * Reads the system dictionary from a file or, if no such file exists, from the
+     * resources of the class path.
+     *
+     * @param fileName
+     *            the path of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if reading a file is failed or the file is not a system
+     *             dictionary
+     */
     public static BinaryDictionary readSystemDictionary(String fileName) throws IOException {
-        BinaryDictionary dict = new BinaryDictionary(fileName);
+        return checkSystemDictionary(new BinaryDictionary(fileName));
+    }
+
+    /**
+     * Maps the system dictionary file into memory.
+     *
+     * @param path
+     *            the path of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if reading a file is failed or the file is not a system
+     *             dictionary
+     */
+    public static BinaryDictionary readSystemDictionary(Path path) throws IOException {
+        return checkSystemDictionary(new BinaryDictionary(path));
+    }
+
+    /**
+     * Reads the system dictionary from a buffer.
+     *
+     * <p>
+     * The content from the current position of the buffer is read. The buffer must
+     * not be modified while the dictionary is in use, and is not released by
+     * {@link #close()}.
+     *
+     * @param bytes
+     *            the content of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if the buffer is not a system dictionary
+     */
+    public static BinaryDictionary readSystemDictionary(ByteBuffer bytes) throws IOException {
+        return checkSystemDictionary(new BinaryDictionary(bytes));
+    }
+
+    /**
+     * Reads the user dictionary from a file or, if no such file exists, from the
+     * resources of the class path.
+     *
+     * @param fileName
+     *            the path of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if reading a file is failed or the file is not a user dictionary
+     */
+    public static BinaryDictionary readUserDictionary(String fileName) throws IOException {
+        return checkUserDictionary(new BinaryDictionary(fileName));
+    }
+
+    /**
+     * Maps the user dictionary file into memory.
+     *
+     * @param path
+     *            the path of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if reading a file is failed or the file is not a user dictionary
+     */
+    public static BinaryDictionary readUserDictionary(Path path) throws IOException {
+        return checkUserDictionary(new BinaryDictionary(path));
+    }
+
+    /**
+     * Reads the user dictionary from a buffer.
+     *
+     * <p>
+     * The content from the current position of the buffer is read. The buffer must
+     * not be modified while the dictionary is in use, and is not released by
+     * {@link #close()}.
+     *
+     * @param bytes
+     *            the content of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     *             if the buffer is not a user dictionary
+     */
+    public static BinaryDictionary readUserDictionary(ByteBuffer bytes) throws IOException {
+        return checkUserDictionary(new BinaryDictionary(bytes));
+    }
+
+    private static BinaryDictionary checkSystemDictionary(BinaryDictionary dict) throws IOException {
         if (dict.getDictionaryHeader().getVersion() != DictionaryVersion.SYSTEM_DICT_VERSION) {
             dict.close();
             throw new IOException("invalid system dictionary");
@@ -59,8 +168,7 @@ public class BinaryDictionary implements Closeable {
         return dict;
     }
 
-    public static BinaryDictionary readUserDictionary(String fileName) throws IOException {
-        BinaryDictionary dict = new BinaryDictionary(fileName);
+    private static BinaryDictionary checkUserDictionary(BinaryDictionary dict) throws IOException {
         if (!DictionaryVersion.isUserDictionary(dict.getDictionaryHeader().getVersion())) {
             dict.close();
             throw new IOException("invalid user dictionary");
@@ -68,9 +176,17 @@ public class BinaryDictionary implements Closeable {
         return dict;
     }
 
+    /**
+     * Closes the dictionary.
+     *
+     * <p>
+     * The mapping of the file is not released explicitly, because the morphemes and
+     * their {@link WordInfo} may still read it after the dictionary is closed. It
+     * is released by the garbage collector when none of them refer to it.
+     */
     @Override
     public void close() throws IOException {
-        MMap.unmap(bytes);
+        // the mapping is left to the garbage collector
     }
 
     public DictionaryHeader getDictionaryHeader() {
@@ -84,4 +200,41 @@ public class BinaryDictionary implements Closeable {
     public DoubleArrayLexicon getLexicon() {
         return lexicon;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the costs of the user dictionary computed at building.
+     *
+     * @return the costs, or {@code null} if the dictionary does not have them
+     */
+    public PrecomputedCosts getPrecomputedCosts() {
+        return precomputedCosts;
+    }
+
+    /**
+     * Returns the size of the dictionary in bytes.
+     *
+     * @return the size of the dictionary
+     */
+    public long size() {
+        return bytes.limit();
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the dictionary header.
+     *
+     * <p>
+     * The header contains the version, the creation time and the description, so
+     * the checksum identifies a build of the dictionary without reading the rest of
+     * the file.
+     *
+     * @return the checksum
+     */
+    public long headerChecksum() {
+        ByteBuffer buffer = bytes.duplicate();
+        ((Buffer) buffer).clear(); // a kludge for Java 9
+        ((Buffer) buffer).limit(header.storageSize());
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+}
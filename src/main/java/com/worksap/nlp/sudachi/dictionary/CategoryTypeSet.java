@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of {@link CategoryType} backed by the bitmask of their IDs.
+ *
+ * <p>
+ * The elements are iterated in the order of their declarations, as in
+ * {@link java.util.EnumSet}.
+ */
+public final class CategoryTypeSet extends AbstractSet<CategoryType> {
+
+    private static final CategoryType[] TYPES = CategoryType.values();
+    private static final CategoryTypeSet EMPTY = new CategoryTypeSet(0);
+
+    private final int bits;
+
+    private CategoryTypeSet(int bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Returns the set of the category types whose IDs are in the bitmask.
+     *
+     * @param bits
+     *            the bitwise OR of the IDs of the category types
+     * @return the set of the category types
+     */
+    public static CategoryTypeSet of(int bits) {
+        return (bits == 0) ? EMPTY : new CategoryTypeSet(bits);
+    }
+
+    /**
+     * Returns the bitwise OR of the IDs of the category types.
+     *
+     * @param types
+     *            the category types
+     * @return the bitmask of the category types
+     */
+    public static int toBits(Collection<CategoryType> types) {
+        if (types instanceof CategoryTypeSet) {
+            return ((CategoryTypeSet) types).bits;
+        }
+        int bits = 0;
+        for (CategoryType type : types) {
+            bits |= type.getId();
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the bitmask of this set.
+     *
+     * @return the bitwise OR of the IDs of the category types in this set
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof CategoryType) && (bits & ((CategoryType) o).getId()) != 0;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof CategoryTypeSet) {
+            int other = ((CategoryTypeSet) c).bits;
+            return (bits & other) == other;
+        }
+        return super.containsAll(c);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(bits);
+    }
+
+    @Override
+    public Iterator<CategoryType> iterator() {
+        return new Iterator<CategoryType>() {
+            private int rest = bits;
+
+            @Override
+            public boolean hasNext() {
+                return rest != 0;
+            }
+
+            @Override
+            public CategoryType next() {
+                if (rest == 0) {
+                    throw new NoSuchElementException();
+                }
+                int ordinal = Integer.numberOfTrailingZeros(rest);
+                rest &= rest - 1;
+                return TYPES[ordinal];
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof CategoryTypeSet) {
+            return bits == ((CategoryTypeSet) o).bits;
+        }
+        return (o instanceof Set) && super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -21,20 +21,34 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A classifier of the categories of characters.
+ *
+ * <p>
+ * The definitions are compiled into lookup tables when they are read: a flat
+ * table for the Basic Multilingual Plane, and a two-level table of shared
+ * blocks for the supplementary planes.
  */
 public class CharacterCategory {
 
+    private static final int BMP_SIZE = 0x10000;
+    private static final int SUPPLEMENTARY_SIZE = Character.MAX_CODE_POINT + 1 - BMP_SIZE;
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
     static class Range {
         int low;
         int high;
-        EnumSet<CategoryType> categories = EnumSet.noneOf(CategoryType.class);
+        int categories;
 
         boolean contains(int cp) {
             return cp >= low && cp <= high;
@@ -53,6 +67,10 @@ public class CharacterCategory {
 
     private List<Range> rangeList = new ArrayList<>();
 
+    private char[] bmpTable;
+    private char[] supplementaryIndex;
+    private char[] supplementaryBlocks;
+
     /**
      * Returns the set of the category types of the character (Unicode code point).
      *
@@ -62,16 +80,78 @@ public class CharacterCategory {
      */
     public EnumSet<CategoryType> getCategoryTypes(int codePoint) {
         EnumSet<CategoryType> categories = EnumSet.noneOf(CategoryType.class);
+        categories.addAll(CategoryTypeSet.of(getCategoryTypeBits(codePoint)));
+        return categories;
+    }
+
+    /**
+     * Returns the bitmask of the category types of the character (Unicode code
+     * point).
+     *
+     * @param codePoint
+     *            the code point value of the character
+     * @return the bitwise OR of the IDs of the category types of the character
+     * @see CategoryTypeSet
+     */
+    public int getCategoryTypeBits(int codePoint) {
+        if (bmpTable == null || codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return CategoryType.DEFAULT.getId();
+        } else if (codePoint < BMP_SIZE) {
+            return bmpTable[codePoint];
+        }
+        int offset = codePoint - BMP_SIZE;
+        return supplementaryBlocks[(supplementaryIndex[offset >> BLOCK_BITS] << BLOCK_BITS) | (offset & BLOCK_MASK)];
+    }
+
+    private void compile() {
+        bmpTable = compile(0, BMP_SIZE, rangeList);
+
+        List<Range> supplementaryRanges = new ArrayList<>();
         for (Range range : rangeList) {
-            if (range.contains(codePoint)) {
-                categories.addAll(range.categories);
+            if (range.high >= BMP_SIZE) {
+                supplementaryRanges.add(range);
             }
         }
+        char[] index = new char[SUPPLEMENTARY_SIZE >> BLOCK_BITS];
+        Map<CharBuffer, Character> blockIds = new HashMap<>();
+        List<char[]> blocks = new ArrayList<>();
+        for (int i = 0; i < index.length; i++) {
+            char[] block = compile(BMP_SIZE + (i << BLOCK_BITS), BLOCK_SIZE, supplementaryRanges);
+            Character id = blockIds.get(CharBuffer.wrap(block));
+            if (id == null) {
+                id = (char) blocks.size();
+                blockIds.put(CharBuffer.wrap(block), id);
+                blocks.add(block);
+            }
+            index[i] = id;
+        }
+        supplementaryIndex = index;
+        supplementaryBlocks = new char[blocks.size() << BLOCK_BITS];
+        for (int i = 0; i < blocks.size(); i++) {
+            System.arraycopy(blocks.get(i), 0, supplementaryBlocks, i << BLOCK_BITS, BLOCK_SIZE);
+        }
+    }
 
-        if (categories.isEmpty()) {
-            categories.add(CategoryType.DEFAULT);
+    /**
+     * Returns the categories of the code points from {@code begin}, so that only a
+     * block of the table is allocated at a time.
+     */
+    private static char[] compile(int begin, int length, List<Range> ranges) {
+        char[] table = new char[length];
+        int end = begin + length - 1;
+        for (Range range : ranges) {
+            int high = Math.min(range.high, end);
+            for (int c = Math.max(range.low, begin); c <= high; c++) {
+                table[c - begin] |= range.categories;
+            }
         }
-        return categories;
+        char defaultId = (char) CategoryType.DEFAULT.getId();
+        for (int i = 0; i < length; i++) {
+            if (table[i] == 0) {
+                table[i] = defaultId;
+            }
+        }
+        return table;
     }
 
     /**
@@ -131,11 +211,12 @@ public class CharacterCategory {
                             throw new IllegalArgumentException(
                                     cols[i] + " is invalid type at line " + reader.getLineNumber(), e);
                         }
-                        range.categories.add(type);
+                        range.categories |= type.getId();
                     }
                     rangeList.add(range);
                 }
             }
         }
+        compile();
     }
 }
@@ -33,7 +33,17 @@ public class DictionaryVersion {
     /** the second version of user dictionries */
     public static final long USER_DICT_VERSION_2 = 0x9fdeb5a90168d868L;
 
+    /**
+     * the third version of user dictionries, which has the costs computed at
+     * building
+     */
+    public static final long USER_DICT_VERSION_3 = 0x5c3e1f2ae41d7b09L;
+
     public static boolean isUserDictionary(long version) {
-        return version == USER_DICT_VERSION_1 || version == USER_DICT_VERSION_2;
+        return version == USER_DICT_VERSION_1 || version == USER_DICT_VERSION_2 || version == USER_DICT_VERSION_3;
+    }
+
+    static boolean hasGrammar(long version) {
+        return version == SYSTEM_DICT_VERSION || version == USER_DICT_VERSION_2 || version == USER_DICT_VERSION_3;
     }
 }
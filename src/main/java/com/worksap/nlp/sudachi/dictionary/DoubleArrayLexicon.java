@@ -19,7 +19,9 @@ package com.worksap.nlp.sudachi.dictionary;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import com.worksap.nlp.dartsclone.DoubleArray;
 import com.worksap.nlp.sudachi.MorphemeList;
@@ -70,43 +72,95 @@ public class DoubleArrayLexicon implements Lexicon {
      */
     @Override
     public Iterator<int[]> lookup(byte[] text, int offset) {
+        List<int[]> results = new ArrayList<>();
         Iterator<int[]> iterator = trie.commonPrefixSearch(text, offset);
-        if (!iterator.hasNext()) {
-            return iterator;
+        while (iterator.hasNext()) {
+            int[] p = iterator.next();
+            wordIdTable.forEach(p[0], 0, p[1], (wordId, end) -> results.add(new int[] { wordId, end }));
         }
-        return new Itr(iterator);
+        return results.iterator();
     }
 
-    private class Itr implements Iterator<int[]> {
-        private final Iterator<int[]> iterator;
-        private Integer[] wordIds;
-        private int length;
-        private int index;
-
-        Itr(Iterator<int[]> iterator) {
-            this.iterator = iterator;
-            index = -1;
-        }
+    /**
+     * Passes the word IDs obtained by common prefix search to the sink.
+     *
+     * <p>
+     * The trie is walked directly, and no object is allocated for the results. They
+     * are passed in the same order as {@link #lookup(byte[], int)} returns them.
+     *
+     * @param text
+     *            the key
+     * @param offset
+     *            the offset of the key
+     * @param sink
+     *            the receiver of the word IDs and the end offsets of the matched
+     *            parts
+     * @return the number of the results
+     */
+    @Override
+    public int lookup(byte[] text, int offset, Sink sink) {
+        return lookup(text, offset, 0, sink);
+    }
 
-        @Override
-        public boolean hasNext() {
-            if (index < 0) {
-                return iterator.hasNext();
-            } else {
-                return (index < wordIds.length) || iterator.hasNext();
+    /**
+     * Walks the trie directly to avoid the allocation of
+     * {@link DoubleArray#commonPrefixSearch(byte[], int)}. The word IDs are
+     * combined with {@code dictionaryIdMask}.
+     */
+    int lookup(byte[] text, int offset, int dictionaryIdMask, Sink sink) {
+        IntBuffer array = trie.array();
+        int count = 0;
+        int nodePos = 0;
+        int unit = array.get(nodePos);
+        nodePos ^= unitOffset(unit);
+        for (int i = offset; i < text.length; i++) {
+            int k = Byte.toUnsignedInt(text[i]);
+            nodePos ^= k;
+            unit = array.get(nodePos);
+            if (unitLabel(unit) != k) {
+                break;
+            }
+            nodePos ^= unitOffset(unit);
+            if (unitHasLeaf(unit)) {
+                int index = unitValue(array.get(nodePos));
+                count += wordIdTable.forEach(index, dictionaryIdMask, i + 1, sink);
             }
         }
+        return count;
+    }
 
-        @Override
-        public int[] next() {
-            if (index < 0 || index >= wordIds.length) {
-                int[] p = iterator.next();
-                wordIds = wordIdTable.get(p[0]);
-                length = p[1];
-                index = 0;
+    @Override
+    public boolean isLookupTruncated(byte[] text, int offset) {
+        IntBuffer array = trie.array();
+        int nodePos = 0;
+        int unit = array.get(nodePos);
+        nodePos ^= unitOffset(unit);
+        for (int i = offset; i < text.length; i++) {
+            int k = Byte.toUnsignedInt(text[i]);
+            nodePos ^= k;
+            unit = array.get(nodePos);
+            if (unitLabel(unit) != k) {
+                return false;
             }
-            return new int[] { wordIds[index++], length };
+            nodePos ^= unitOffset(unit);
         }
+        return true;
+    }
+
+    private static boolean unitHasLeaf(int unit) {
+        return ((unit >>> 8) & 1) == 1;
+    }
+
+    private static int unitValue(int unit) {
+        return unit & ((1 << 31) - 1);
+    }
+
+    private static int unitLabel(int unit) {
+        return unit & ((1 << 31) | 0xFF);
+    }
+
+    private static int unitOffset(int unit) {
+        return (unit >>> 10) << ((unit & (1 << 9)) >>> 6);
     }
 
     @Override
@@ -151,8 +205,44 @@ public class DoubleArrayLexicon implements Lexicon {
         return wordParams.size();
     }
 
+    void setCost(int wordId, short cost) {
+        wordParams.setCost(wordId, cost);
+    }
+
+    /**
+     * Copies the parameters of the words into arrays, and rejects the modifications
+     * after it.
+     *
+     * <p>
+     * This method must not be called concurrently with the other methods.
+     */
+    public void freeze() {
+        wordParams = wordParams.freeze();
+    }
+
     public void calculateCost(Tokenizer tokenizer) {
-        for (int wordId = 0; wordId < wordParams.size(); wordId++) {
+        calculateCost(tokenizer, 0, wordParams.size());
+    }
+
+    /**
+     * Calculates the costs of the words whose IDs are in the range.
+     *
+     * This method can be called concurrently for disjoint ranges with different
+     * tokenizers.
+     *
+     * @param tokenizer
+     *            the tokenizer to split the words
+     * @param begin
+     *            the first word ID, inclusive
+     * @param end
+     *            the last word ID, exclusive
+     */
+    public void calculateCost(Tokenizer tokenizer, int begin, int end) {
+        if (begin >= end) {
+            return;
+        }
+        wordParams.copyBuffer();
+        for (int wordId = begin; wordId < end; wordId++) {
             if (getCost(wordId) != Short.MIN_VALUE) {
                 continue;
             }
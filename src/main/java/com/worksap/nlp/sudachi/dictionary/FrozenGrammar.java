@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a grammar.
+ *
+ * <p>
+ * The connection costs are copied into an array, and all the fields are final,
+ * so the instance can be shared by any number of threads without
+ * synchronization. The methods which modify the grammar throw
+ * {@link IllegalStateException}.
+ *
+ * @see GrammarImpl#freeze()
+ */
+public final class FrozenGrammar implements Grammar {
+
+    private final List<List<String>> posList;
+    private final Map<List<String>, Short> posIds;
+    private final short[] connectCosts;
+    private final int leftIdSize;
+    private final CharacterCategory charCategory;
+    private final short[] bosParameter;
+    private final short[] eosParameter;
+
+    FrozenGrammar(List<List<String>> posList, short[] connectCosts, int leftIdSize, CharacterCategory charCategory,
+            short[] bosParameter, short[] eosParameter) {
+        this.posList = Collections.unmodifiableList(new ArrayList<>(posList));
+        Map<List<String>, Short> posIds = new HashMap<>();
+        for (int i = 0; i < posList.size(); i++) {
+            posIds.putIfAbsent(posList.get(i), (short) i);
+        }
+        this.posIds = posIds;
+        this.connectCosts = connectCosts;
+        this.leftIdSize = leftIdSize;
+        this.charCategory = charCategory;
+        this.bosParameter = bosParameter;
+        this.eosParameter = eosParameter;
+    }
+
+    @Override
+    public int getPartOfSpeechSize() {
+        return posList.size();
+    }
+
+    @Override
+    public List<String> getPartOfSpeechString(short posId) {
+        return posList.get(posId);
+    }
+
+    @Override
+    public short getPartOfSpeechId(List<String> pos) {
+        return posIds.getOrDefault(pos, (short) -1);
+    }
+
+    @Override
+    public short getConnectCost(short left, short right) {
+        return connectCosts[left + leftIdSize * right];
+    }
+
+    /**
+     * Throws {@link IllegalStateException}, since the grammar is frozen.
+     *
+     * @throws IllegalStateException
+     *             always
+     */
+    @Override
+    public void setConnectCost(short left, short right, short cost) {
+        throw new IllegalStateException("the grammar is frozen");
+    }
+
+    @Override
+    public short[] getBOSParameter() {
+        return bosParameter;
+    }
+
+    @Override
+    public short[] getEOSParameter() {
+        return eosParameter;
+    }
+
+    @Override
+    public CharacterCategory getCharacterCategory() {
+        return charCategory;
+    }
+
+    /**
+     * Throws {@link IllegalStateException}, since the grammar is frozen.
+     *
+     * @throws IllegalStateException
+     *             always
+     */
+    @Override
+    public void setCharacterCategory(CharacterCategory charCategory) {
+        throw new IllegalStateException("the grammar is frozen");
+    }
+}
@@ -40,6 +40,7 @@ public class GrammarImpl implements Grammar {
     private CharacterCategory charCategory;
 
     private int storageSize;
+    private volatile boolean isFrozen;
 
     public GrammarImpl(ByteBuffer bytes, int offset) {
         int originalOffset = offset;
@@ -71,6 +72,7 @@ public class GrammarImpl implements Grammar {
     }
 
     public void addPosList(GrammarImpl grammar) {
+        checkNotFrozen();
         posList.addAll(grammar.posList);
     }
 
@@ -96,6 +98,7 @@ public class GrammarImpl implements Grammar {
 
     @Override
     public void setConnectCost(short left, short right, short cost) {
+        checkNotFrozen();
         if (!isCopiedConnectTable) {
             copyConnectTable();
         }
@@ -119,9 +122,45 @@ public class GrammarImpl implements Grammar {
 
     @Override
     public void setCharacterCategory(CharacterCategory charCategory) {
+        checkNotFrozen();
         this.charCategory = charCategory;
     }
 
+    /**
+     * Takes an immutable snapshot of this grammar, and rejects the modifications
+     * after it.
+     *
+     * <p>
+     * The connection costs are copied from the dictionary into the heap. This
+     * method must not be called concurrently with the modifications.
+     *
+     * @return the snapshot
+     */
+    public FrozenGrammar freeze() {
+        isFrozen = true;
+        short[] connectCosts = new short[leftIdSize * rightIdSize];
+        ByteBuffer srcBuffer = connectTableBytes.duplicate().order(connectTableBytes.order());
+        Buffer buffer = srcBuffer; // a kludge for Java 9
+        buffer.position(connectTableOffset);
+        srcBuffer.asShortBuffer().get(connectCosts);
+        return new FrozenGrammar(posList, connectCosts, leftIdSize, charCategory, BOS_PARAMETER, EOS_PARAMETER);
+    }
+
+    /**
+     * Returns whether {@link #freeze} has been called.
+     *
+     * @return {@code true} if this grammar is frozen
+     */
+    public boolean isFrozen() {
+        return isFrozen;
+    }
+
+    private void checkNotFrozen() {
+        if (isFrozen) {
+            throw new IllegalStateException("the grammar is frozen");
+        }
+    }
+
     private String bufferToString(int offset) {
         int length = Byte.toUnsignedInt(bytes.get(offset++));
         char[] str = new char[length];
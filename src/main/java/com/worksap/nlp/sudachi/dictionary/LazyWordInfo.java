@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+/**
+ * A view of the informations of the morpheme in the dictionary buffer.
+ *
+ * <p>
+ * Each field is decoded on first access. Decoded values are kept, so an
+ * instance may be shared across threads like the other {@link WordInfo}.
+ */
+final class LazyWordInfo extends WordInfo {
+
+    private final WordInfoList list;
+    private final int wordId;
+    private final int surfaceOffset;
+
+    // the conversion of user dictionary entries in a LexiconSet
+    private final int dictionaryId;
+    private final short userPosStart;
+    private final short posOffset;
+
+    private int lengthOffset = -1;
+    private int normalizedFormOffset = -1;
+    private int readingFormOffset = -1;
+    private boolean posIdOverridden;
+    private short posIdOverride;
+
+    private String surface;
+    private String normalizedForm;
+    private String dictionaryForm;
+    private String readingForm;
+    private volatile int[] aUnitSplit;
+    private volatile int[] bUnitSplit;
+    private volatile int[] wordStructure;
+
+    LazyWordInfo(WordInfoList list, int wordId, int surfaceOffset) {
+        this(list, wordId, surfaceOffset, 0, Short.MAX_VALUE, (short) 0);
+    }
+
+    private LazyWordInfo(WordInfoList list, int wordId, int surfaceOffset, int dictionaryId, short userPosStart,
+            short posOffset) {
+        this.list = list;
+        this.wordId = wordId;
+        this.surfaceOffset = surfaceOffset;
+        this.dictionaryId = dictionaryId;
+        this.userPosStart = userPosStart;
+        this.posOffset = posOffset;
+    }
+
+    /**
+     * Returns a view in which the POS IDs not less than {@code userPosStart} are
+     * shifted to {@code posStart} and the word IDs of user dictionaries are moved
+     * to {@code dictionaryId}.
+     */
+    LazyWordInfo relocate(int dictionaryId, short userPosStart, short posStart) {
+        return new LazyWordInfo(list, wordId, surfaceOffset, dictionaryId, userPosStart,
+                (short) (posStart - userPosStart));
+    }
+
+    @Override
+    public String getSurface() {
+        String s = surface;
+        if (s == null) {
+            s = list.readString(surfaceOffset);
+            surface = s;
+        }
+        return s;
+    }
+
+    @Override
+    public short getLength() {
+        return (short) list.readStringLength(lengthOffset());
+    }
+
+    @Override
+    public short getPOSId() {
+        if (posIdOverridden) {
+            return posIdOverride;
+        }
+        short posId = list.readShort(list.skipStringLength(lengthOffset()));
+        if (posId >= userPosStart) {
+            posId = (short) (posId + posOffset);
+        }
+        return posId;
+    }
+
+    @Override
+    @Deprecated
+    public void setPOSId(short posId) {
+        checkNotFrozen();
+        posIdOverride = posId;
+        posIdOverridden = true;
+    }
+
+    @Override
+    public String getNormalizedForm() {
+        String s = normalizedForm;
+        if (s == null) {
+            s = list.readString(normalizedFormOffset());
+            if (s.isEmpty()) {
+                s = getSurface();
+            }
+            normalizedForm = s;
+        }
+        return s;
+    }
+
+    @Override
+    public int getDictionaryFormWordId() {
+        return list.readInt(list.skipString(normalizedFormOffset()));
+    }
+
+    @Override
+    public String getDictionaryForm() {
+        String s = dictionaryForm;
+        if (s == null) {
+            int dictionaryFormWordId = getDictionaryFormWordId();
+            if (dictionaryFormWordId >= 0 && dictionaryFormWordId != wordId) {
+                s = list.readSurface(dictionaryFormWordId);
+            } else {
+                s = getSurface();
+            }
+            dictionaryForm = s;
+        }
+        return s;
+    }
+
+    @Override
+    public String getReadingForm() {
+        String s = readingForm;
+        if (s == null) {
+            s = list.readString(readingFormOffset());
+            if (s.isEmpty()) {
+                s = getSurface();
+            }
+            readingForm = s;
+        }
+        return s;
+    }
+
+    @Override
+    public int[] getAunitSplit() {
+        return copyIfFrozen(aUnitSplit());
+    }
+
+    @Override
+    public int[] getBunitSplit() {
+        return copyIfFrozen(bUnitSplit());
+    }
+
+    @Override
+    public int[] getWordStructure() {
+        return copyIfFrozen(wordStructure());
+    }
+
+    @Override
+    int[] aUnitSplit() {
+        int[] a = aUnitSplit;
+        if (a == null) {
+            a = readSplit(aUnitSplitOffset());
+            aUnitSplit = a;
+        }
+        return a;
+    }
+
+    @Override
+    int[] bUnitSplit() {
+        int[] a = bUnitSplit;
+        if (a == null) {
+            a = readSplit(list.skipIntArray(aUnitSplitOffset()));
+            bUnitSplit = a;
+        }
+        return a;
+    }
+
+    @Override
+    int[] wordStructure() {
+        int[] a = wordStructure;
+        if (a == null) {
+            a = readSplit(list.skipIntArray(list.skipIntArray(aUnitSplitOffset())));
+            wordStructure = a;
+        }
+        return a;
+    }
+
+    @Override
+    long estimatedSize() {
+        long size = WORD_INFO_SIZE + 4 * 4 + 2 + 3 * REFERENCE_SIZE;
+        String s = surface;
+        size += sizeOf(s);
+        if (normalizedForm != s) {
+            size += sizeOf(normalizedForm);
+        }
+        if (dictionaryForm != s) {
+            size += sizeOf(dictionaryForm);
+        }
+        if (readingForm != s) {
+            size += sizeOf(readingForm);
+        }
+        return size + sizeOf(aUnitSplit) + sizeOf(bUnitSplit) + sizeOf(wordStructure);
+    }
+
+    private int lengthOffset() {
+        int offset = lengthOffset;
+        if (offset < 0) {
+            offset = list.skipString(surfaceOffset);
+            lengthOffset = offset;
+        }
+        return offset;
+    }
+
+    private int normalizedFormOffset() {
+        int offset = normalizedFormOffset;
+        if (offset < 0) {
+            offset = list.skipStringLength(lengthOffset()) + 2;
+            normalizedFormOffset = offset;
+        }
+        return offset;
+    }
+
+    private int readingFormOffset() {
+        int offset = readingFormOffset;
+        if (offset < 0) {
+            offset = list.skipString(normalizedFormOffset()) + 4;
+            readingFormOffset = offset;
+        }
+        return offset;
+    }
+
+    private int aUnitSplitOffset() {
+        return list.skipString(readingFormOffset());
+    }
+
+    private int[] readSplit(int position) {
+        int[] split = list.readIntArray(position);
+        if (dictionaryId > 0) {
+            for (int i = 0; i < split.length; i++) {
+                if ((split[i] >>> 28) > 0) {
+                    split[i] = (dictionaryId << 28) | (split[i] & 0x0fffffff);
+                }
+            }
+        }
+        return split;
+    }
+}
@@ -23,8 +23,70 @@ import java.util.Iterator;
  */
 public interface Lexicon {
 
+    /**
+     * A receiver of the results of {@link Lexicon#lookup(byte[], int, Sink)}.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * Receives a morpheme which matches the text.
+         *
+         * @param wordId
+         *            the word ID of the morpheme
+         * @param end
+         *            the end offset of the matched part
+         */
+        void accept(int wordId, int end);
+    }
+
     Iterator<int[]> lookup(byte[] text, int offset);
 
+    /**
+     * Passes the morphemes found by common prefix search to the sink.
+     *
+     * <p>
+     * The search begin with the position at the {@code offset} of the {@code text}.
+     * The results are passed in the same order as {@link #lookup(byte[], int)}
+     * returns them. Unlike that method, the implementations in this package
+     * allocate no objects per result.
+     *
+     * @param text
+     *            the key
+     * @param offset
+     *            the offset of the key
+     * @param sink
+     *            the receiver of the word ID and the end offset of the matched part
+     * @return the number of the results
+     */
+    default int lookup(byte[] text, int offset, Sink sink) {
+        int count = 0;
+        Iterator<int[]> iterator = lookup(text, offset);
+        while (iterator.hasNext()) {
+            int[] r = iterator.next();
+            sink.accept(r[0], r[1]);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether the common prefix search from the {@code offset} reads the
+     * {@code text} to its end, that is, whether it may find more morphemes if the
+     * text continued.
+     *
+     * <p>
+     * The default implementation always returns {@code true}.
+     *
+     * @param text
+     *            the key
+     * @param offset
+     *            the offset of the key
+     * @return {@code true} if the search reaches the end of the text
+     */
+    default boolean isLookupTruncated(byte[] text, int offset) {
+        return true;
+    }
+
     int getWordId(String headword, short posId, String readingForm);
 
     /**
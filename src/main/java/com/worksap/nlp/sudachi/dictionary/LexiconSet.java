@@ -17,9 +17,9 @@
 package com.worksap.nlp.sudachi.dictionary;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 
 public class LexiconSet implements Lexicon {
 
@@ -27,6 +27,8 @@ public class LexiconSet implements Lexicon {
 
     List<Lexicon> lexicons = new ArrayList<>();
     List<Short> posOffsets = new ArrayList<>();
+    private volatile WordInfoCache wordInfoCache;
+    private volatile boolean isFrozen;
 
     public LexiconSet(Lexicon systemLexicon) {
         lexicons.add(systemLexicon);
@@ -34,6 +36,9 @@ public class LexiconSet implements Lexicon {
     }
 
     public void add(Lexicon lexicon, short posOffset) {
+        if (isFrozen) {
+            throw new IllegalStateException("the lexicon is frozen");
+        }
         if (!lexicons.contains(lexicon)) {
             lexicons.add(lexicon);
             posOffsets.add(posOffset);
@@ -49,46 +54,47 @@ public class LexiconSet implements Lexicon {
         if (lexicons.size() == 1) {
             return lexicons.get(0).lookup(text, offset);
         }
-        return new Itr(text, offset);
+        List<int[]> results = new ArrayList<>();
+        lookup(text, offset, (wordId, end) -> results.add(new int[] { wordId, end }));
+        return results.iterator();
     }
 
-    private class Itr implements Iterator<int[]> {
-        byte[] text;
-        int offset;
-        int dictId;
-        Iterator<int[]> iterator;
-
-        Itr(byte[] text, int offset) {
-            this.text = text;
-            this.offset = offset;
-            dictId = 1;
-            iterator = lexicons.get(dictId).lookup(text, offset);
+    @Override
+    public int lookup(byte[] text, int offset, Sink sink) {
+        if (lexicons.size() == 1) {
+            return lexicons.get(0).lookup(text, offset, sink);
+        }
+        int count = 0;
+        for (int dictId = 1; dictId < lexicons.size(); dictId++) {
+            count += lookup(dictId, text, offset, sink);
         }
+        count += lookup(0, text, offset, sink);
+        return count;
+    }
 
-        @Override
-        public boolean hasNext() {
-            while (!iterator.hasNext()) {
-                if (dictId == 0) {
-                    return false;
-                }
-                dictId++;
-                if (dictId >= lexicons.size()) {
-                    dictId = 0;
-                }
-                iterator = lexicons.get(dictId).lookup(text, offset);
-            }
-            return true;
+    private int lookup(int dictId, byte[] text, int offset, Sink sink) {
+        Lexicon lexicon = lexicons.get(dictId);
+        if (lexicon instanceof DoubleArrayLexicon) {
+            return ((DoubleArrayLexicon) lexicon).lookup(text, offset, buildWordId(dictId, 0), sink);
         }
+        int count = 0;
+        Iterator<int[]> iterator = lexicon.lookup(text, offset);
+        while (iterator.hasNext()) {
+            int[] r = iterator.next();
+            sink.accept(buildWordId(dictId, r[0]), r[1]);
+            count++;
+        }
+        return count;
+    }
 
-        @Override
-        public int[] next() {
-            if (hasNext()) {
-                int[] r = iterator.next();
-                r[0] = buildWordId(dictId, r[0]);
-                return r;
+    @Override
+    public boolean isLookupTruncated(byte[] text, int offset) {
+        for (Lexicon lexicon : lexicons) {
+            if (lexicon.isLookupTruncated(text, offset)) {
+                return true;
             }
-            throw new NoSuchElementException();
         }
+        return false;
     }
 
     @Override
@@ -117,18 +123,132 @@ public class LexiconSet implements Lexicon {
         return lexicons.get(getDictionaryId(wordId)).getCost(getWordId(wordId));
     }
 
+    /**
+     * Returns the informations of the morpheme specified by the word ID.
+     *
+     * <p>
+     * The returned object is immutable when the cache is enabled, since it is
+     * shared with other callers, or after {@link #freeze}.
+     *
+     * @param wordId
+     *            the word ID of the morpheme
+     * @return the informations of the morpheme
+     */
     @Override
     public WordInfo getWordInfo(int wordId) {
+        WordInfoCache cache = wordInfoCache;
+        if (cache == null) {
+            return readWordInfo(wordId);
+        }
+        WordInfo wordInfo = cache.get(wordId);
+        if (wordInfo == null) {
+            wordInfo = readWordInfo(wordId);
+            cache.put(wordId, wordInfo);
+        }
+        return wordInfo;
+    }
+
+    /**
+     * Freezes the lexicons, and rejects adding lexicons after it.
+     *
+     * <p>
+     * The parameters of the words are copied into arrays. The informations of the
+     * words returned after it reject {@link WordInfo#setPOSId} and return copies of
+     * their arrays, and the cached ones are discarded. This method must not be
+     * called concurrently with the other methods.
+     *
+     * @see DoubleArrayLexicon#freeze()
+     */
+    public void freeze() {
+        for (Lexicon lexicon : lexicons) {
+            if (lexicon instanceof DoubleArrayLexicon) {
+                ((DoubleArrayLexicon) lexicon).freeze();
+            }
+        }
+        lexicons = Collections.unmodifiableList(new ArrayList<>(lexicons));
+        posOffsets = Collections.unmodifiableList(new ArrayList<>(posOffsets));
+        isFrozen = true;
+        WordInfoCache cache = wordInfoCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Enables the cache of the informations of morphemes.
+     *
+     * @param cache
+     *            the cache, or {@code null} to disable caching
+     */
+    public void setWordInfoCache(WordInfoCache cache) {
+        wordInfoCache = cache;
+    }
+
+    /**
+     * Returns the cache of the informations of morphemes.
+     *
+     * @return the cache, or {@code null} if caching is disabled
+     */
+    public WordInfoCache getWordInfoCache() {
+        return wordInfoCache;
+    }
+
+    /**
+     * Returns the word IDs which the morpheme is compounded of in A mode, without
+     * copying them even if the informations are frozen.
+     *
+     * <p>
+     * This is for the tokenizers, which only read the array. The array must not be
+     * modified.
+     *
+     * @param wordInfo
+     *            the informations of the morpheme
+     * @return the word IDs of A units
+     * @see WordInfo#getAunitSplit()
+     */
+    public static int[] readAunitSplit(WordInfo wordInfo) {
+        return wordInfo.aUnitSplit();
+    }
+
+    /**
+     * Returns the word IDs which the morpheme is compounded of in B mode, without
+     * copying them even if the informations are frozen.
+     *
+     * <p>
+     * This is for the tokenizers, which only read the array. The array must not be
+     * modified.
+     *
+     * @param wordInfo
+     *            the informations of the morpheme
+     * @return the word IDs of B units
+     * @see WordInfo#getBunitSplit()
+     */
+    public static int[] readBunitSplit(WordInfo wordInfo) {
+        return wordInfo.bUnitSplit();
+    }
+
+    private WordInfo readWordInfo(int wordId) {
+        WordInfo wordInfo = relocateWordInfo(wordId);
+        return isFrozen ? wordInfo.freeze() : wordInfo;
+    }
+
+    private WordInfo relocateWordInfo(int wordId) {
         int dictionaryId = getDictionaryId(wordId);
         WordInfo wordInfo = lexicons.get(dictionaryId).getWordInfo(getWordId(wordId));
+        if (dictionaryId == 0) {
+            return wordInfo;
+        }
+        if (wordInfo instanceof LazyWordInfo) {
+            return ((LazyWordInfo) wordInfo).relocate(dictionaryId, posOffsets.get(1), posOffsets.get(dictionaryId));
+        }
         short posId = wordInfo.getPOSId();
-        if (dictionaryId > 0 && posId >= posOffsets.get(1)) { // user defined part-of-speech
-            wordInfo.setPOSId((short) (wordInfo.getPOSId() - posOffsets.get(1) + posOffsets.get(dictionaryId)));
+        if (posId >= posOffsets.get(1)) { // user defined part-of-speech
+            posId = (short) (posId - posOffsets.get(1) + posOffsets.get(dictionaryId));
         }
-        convertSplit(wordInfo.getAunitSplit(), dictionaryId);
-        convertSplit(wordInfo.getBunitSplit(), dictionaryId);
-        convertSplit(wordInfo.getWordStructure(), dictionaryId);
-        return wordInfo;
+        return new WordInfo(wordInfo.getSurface(), wordInfo.getLength(), posId, wordInfo.getNormalizedForm(),
+                wordInfo.getDictionaryFormWordId(), wordInfo.getDictionaryForm(), wordInfo.getReadingForm(),
+                convertSplit(wordInfo.aUnitSplit(), dictionaryId), convertSplit(wordInfo.bUnitSplit(), dictionaryId),
+                convertSplit(wordInfo.wordStructure(), dictionaryId));
     }
 
     @Override
@@ -155,11 +275,16 @@ public class LexiconSet implements Lexicon {
         return (dictId << 28) | wordId;
     }
 
-    private void convertSplit(int[] split, int dictionaryId) {
+    private int[] convertSplit(int[] split, int dictionaryId) {
+        int[] converted = split;
         for (int i = 0; i < split.length; i++) {
             if (getDictionaryId(split[i]) > 0) {
-                split[i] = buildWordId(dictionaryId, getWordId(split[i]));
+                if (converted == split) {
+                    converted = split.clone();
+                }
+                converted[i] = buildWordId(dictionaryId, getWordId(split[i]));
             }
         }
+        return converted;
     }
 }
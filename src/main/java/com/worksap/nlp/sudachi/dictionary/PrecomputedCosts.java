@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.worksap.nlp.sudachi.Settings;
+import com.worksap.nlp.sudachi.Tokenizer;
+
+/**
+ * The costs of the words in a user dictionary which are computed at building.
+ *
+ * <p>
+ * The costs specified as {@code Short.MIN_VALUE} in the source are computed by
+ * tokenizing the headwords with the system dictionary. This class keeps the
+ * results with the size and the header checksum of that system dictionary and
+ * the checksum of the settings which affect the tokenization, so that the
+ * computation can be skipped at loading if the same system dictionary and
+ * settings are used.
+ */
+public class PrecomputedCosts {
+
+    /** The settings which affect the computed costs. */
+    static final List<String> COST_SETTINGS = Arrays.asList("characterDefinitionFile", "inputTextPlugin",
+            "oovProviderPlugin", "editConnectionCostPlugin");
+
+    private final long systemDictionarySize;
+    private final long systemDictionaryChecksum;
+    private final long settingsChecksum;
+    private final int[] wordIds;
+    private final short[] costs;
+
+    PrecomputedCosts(long systemDictionarySize, long systemDictionaryChecksum, long settingsChecksum, int[] wordIds,
+            short[] costs) {
+        this.systemDictionarySize = systemDictionarySize;
+        this.systemDictionaryChecksum = systemDictionaryChecksum;
+        this.settingsChecksum = settingsChecksum;
+        this.wordIds = wordIds;
+        this.costs = costs;
+    }
+
+    static PrecomputedCosts read(ByteBuffer bytes, int offset) {
+        long size = bytes.getLong(offset);
+        offset += 8;
+        long checksum = bytes.getLong(offset);
+        offset += 8;
+        long settingsChecksum = bytes.getLong(offset);
+        offset += 8;
+        int length = bytes.getInt(offset);
+        offset += 4;
+        int[] wordIds = new int[length];
+        short[] costs = new short[length];
+        for (int i = 0; i < length; i++) {
+            wordIds[i] = bytes.getInt(offset);
+            offset += 4;
+            costs[i] = bytes.getShort(offset);
+            offset += 2;
+        }
+        return new PrecomputedCosts(size, checksum, settingsChecksum, wordIds, costs);
+    }
+
+    /**
+     * Computes the costs of the words whose cost is {@code Short.MIN_VALUE}.
+     *
+     * @param lexicon
+     *            the lexicon of the user dictionary
+     * @param tokenizer
+     *            the tokenizer with the system dictionary
+     * @param systemDictionary
+     *            the system dictionary used by the tokenizer
+     * @param settings
+     *            the settings of the tokenizer
+     * @return the computed costs
+     */
+    static PrecomputedCosts compute(DoubleArrayLexicon lexicon, Tokenizer tokenizer, BinaryDictionary systemDictionary,
+            Settings settings) {
+        List<Integer> targets = new ArrayList<>();
+        for (int wordId = 0; wordId < lexicon.size(); wordId++) {
+            if (lexicon.getCost(wordId) == Short.MIN_VALUE) {
+                targets.add(wordId);
+            }
+        }
+        lexicon.calculateCost(tokenizer);
+
+        int[] wordIds = new int[targets.size()];
+        short[] costs = new short[targets.size()];
+        for (int i = 0; i < wordIds.length; i++) {
+            wordIds[i] = targets.get(i);
+            costs[i] = lexicon.getCost(wordIds[i]);
+        }
+        return new PrecomputedCosts(systemDictionary.size(), systemDictionary.headerChecksum(),
+                settingsChecksum(settings), wordIds, costs);
+    }
+
+    /**
+     * Returns the serialized form, which is followed by its offset in the file.
+     */
+    byte[] toByte(int offset) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 8 + 4 + 6 * wordIds.length + 4);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(systemDictionarySize);
+        buffer.putLong(systemDictionaryChecksum);
+        buffer.putLong(settingsChecksum);
+        buffer.putInt(wordIds.length);
+        for (int i = 0; i < wordIds.length; i++) {
+            buffer.putInt(wordIds[i]);
+            buffer.putShort(costs[i]);
+        }
+        buffer.putInt(offset);
+        return buffer.array();
+    }
+
+    /**
+     * Returns the checksum of the settings which affect the computed costs.
+     *
+     * @param settings
+     *            the settings of the tokenizer
+     * @return the checksum
+     */
+    public static long settingsChecksum(Settings settings) {
+        return settings.getChecksum(COST_SETTINGS);
+    }
+
+    /**
+     * Returns {@code true} if the costs are computed with the specified system
+     * dictionary and settings.
+     *
+     * @param systemDictionary
+     *            the system dictionary
+     * @param settingsChecksum
+     *            the checksum of the settings, returned by
+     *            {@link #settingsChecksum}
+     * @return {@code true} if the system dictionary and the settings are same as
+     *         the ones used at building
+     */
+    public boolean isComputedWith(BinaryDictionary systemDictionary, long settingsChecksum) {
+        return systemDictionary.size() == systemDictionarySize
+                && systemDictionary.headerChecksum() == systemDictionaryChecksum
+                && settingsChecksum == this.settingsChecksum;
+    }
+
+    /**
+     * Sets the costs to the lexicon.
+     *
+     * @param lexicon
+     *            the lexicon of the user dictionary
+     */
+    public void applyTo(DoubleArrayLexicon lexicon) {
+        for (int i = 0; i < wordIds.length; i++) {
+            lexicon.setCost(wordIds[i], costs[i]);
+        }
+    }
+
+    /**
+     * Returns the number of the words whose cost is computed.
+     *
+     * @return the number of the words
+     */
+    public int size() {
+        return wordIds.length;
+    }
+}
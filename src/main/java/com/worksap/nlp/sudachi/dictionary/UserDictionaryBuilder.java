@@ -20,10 +20,31 @@ import java.io.Console;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import com.google.common.io.ByteStreams;
+
+import com.worksap.nlp.sudachi.Dictionary;
+import com.worksap.nlp.sudachi.DictionaryFactory;
+import com.worksap.nlp.sudachi.MMap;
+import com.worksap.nlp.sudachi.Settings;
 
 /**
  * A user dictionary building tool. This class provide the converter from the
@@ -85,10 +106,14 @@ public class UserDictionaryBuilder extends DictionaryBuilder {
 
     static void printUsage() {
         Console console = System.console();
-        console.printf("usage: UserDictionaryBuilder -o file -s file [-d description] files...\n");
+        console.printf(
+                "usage: UserDictionaryBuilder -o file -s file [-d description] [-c [-r file] [-p directory]] files...\n");
         console.printf("\t-o file\toutput to file\n");
         console.printf("\t-s file\tsystem dictionary\n");
         console.printf("\t-d description\tcomment\n");
+        console.printf("\t-c\tcompute the costs of words at building\n");
+        console.printf("\t-r file\tread settings for computing the costs from file\n");
+        console.printf("\t-p directory\troot directory of resources for computing the costs\n");
     }
 
     /**
@@ -100,6 +125,11 @@ public class UserDictionaryBuilder extends DictionaryBuilder {
      * <li>{@code -s file} the path of the system dictionary</li>
      * <li>{@code -d string} (optional) the description which is embedded in the
      * dictionary</li>
+     * <li>{@code -c} (optional) computes the costs of the words whose cost is
+     * {@code Short.MIN_VALUE} and stores them in the dictionary</li>
+     * <li>{@code -r file} (optional) the settings for computing the costs</li>
+     * <li>{@code -p directory} (optional) the root directory of resources for
+     * computing the costs</li>
      * <li>the paths of the source file in the CSV format</li>
      * </ol>
      * 
@@ -114,6 +144,9 @@ public class UserDictionaryBuilder extends DictionaryBuilder {
         String description = "";
         String outputPath = null;
         String sysDictPath = null;
+        boolean computeCosts = false;
+        String settings = null;
+        String resourcesDirectory = null;
 
         int i = 0;
         for (i = 0; i < args.length; i++) {
@@ -123,6 +156,12 @@ public class UserDictionaryBuilder extends DictionaryBuilder {
                 sysDictPath = args[++i];
             } else if (args[i].equals("-d") && i + 1 < args.length) {
                 description = args[++i];
+            } else if (args[i].equals("-c")) {
+                computeCosts = true;
+            } else if (args[i].equals("-r") && i + 1 < args.length) {
+                settings = new String(Files.readAllBytes(Paths.get(args[++i])), StandardCharsets.UTF_8);
+            } else if (args[i].equals("-p") && i + 1 < args.length) {
+                resourcesDirectory = args[++i];
             } else if (args[i].equals("-h")) {
                 printUsage();
                 return;
@@ -151,6 +190,57 @@ public class UserDictionaryBuilder extends DictionaryBuilder {
                 UserDictionaryBuilder builder = new UserDictionaryBuilder(grammar, systemLexicon);
                 builder.build(lexiconPaths, output);
             }
+
+            if (computeCosts) {
+                PrecomputedCosts costs = computeCosts(outputPath, sysDictPath, systemDict, settings,
+                        resourcesDirectory);
+                DictionaryHeader newHeader = new DictionaryHeader(DictionaryVersion.USER_DICT_VERSION_3,
+                        header.getCreateTime(), description);
+                try (RandomAccessFile output = new RandomAccessFile(outputPath, "rw")) {
+                    long length = output.length();
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("the dictionary is too large");
+                    }
+                    output.seek(0);
+                    output.write(newHeader.toByte());
+                    output.seek(length);
+                    output.write(costs.toByte((int) length));
+                }
+                Logger.getLogger(UserDictionaryBuilder.class.getName())
+                        .info(() -> String.format("computed the costs of %,d words", costs.size()));
+            }
+        }
+    }
+
+    /**
+     * Computes the costs in the same way as loading the user dictionary, that is,
+     * with the system dictionary and no path rewrite plugin.
+     */
+    static PrecomputedCosts computeCosts(String userDictPath, String sysDictPath, BinaryDictionary systemDict,
+            String settings, String resourcesDirectory) throws IOException {
+        if (settings == null) {
+            try (InputStream input = UserDictionaryBuilder.class.getResourceAsStream("/sudachi.json")) {
+                settings = new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+            }
+        }
+        JsonObjectBuilder root = Json.createObjectBuilder();
+        try (JsonReader reader = Json.createReader(new StringReader(settings))) {
+            for (Map.Entry<String, JsonValue> entry : reader.readObject().entrySet()) {
+                root.add(entry.getKey(), entry.getValue());
+            }
+        }
+        root.add("userDict", Json.createArrayBuilder());
+        root.add("pathRewritePlugin", Json.createArrayBuilder());
+        String costSettings = root.build().toString();
+
+        ByteBuffer systemBytes = MMap.map(sysDictPath);
+        try (BinaryDictionary userDict = BinaryDictionary.readUserDictionary(Paths.get(userDictPath));
+                Dictionary dictionary = new DictionaryFactory().create(systemBytes, resourcesDirectory, costSettings,
+                        false)) {
+            return PrecomputedCosts.compute(userDict.getLexicon(), dictionary.create(), systemDict,
+                    Settings.parseSettings(resourcesDirectory, costSettings));
+        } finally {
+            MMap.unmap(systemBytes);
         }
     }
 }
@@ -34,13 +34,12 @@ class WordIdTable {
         return 4 + size;
     }
 
-    Integer[] get(int index) {
+    int forEach(int index, int dictionaryIdMask, int end, Lexicon.Sink sink) {
         int length = Byte.toUnsignedInt(bytes.get(offset + index++));
-        Integer[] result = new Integer[length];
         for (int i = 0; i < length; i++) {
-            result[i] = bytes.getInt(offset + index);
+            sink.accept(dictionaryIdMask | bytes.getInt(offset + index), end);
             index += 4;
         }
-        return result;
+        return length;
     }
 }
@@ -24,6 +24,12 @@ package com.worksap.nlp.sudachi.dictionary;
  */
 public class WordInfo {
 
+    static final int OBJECT_HEADER_SIZE = 16;
+    static final int REFERENCE_SIZE = 8;
+    static final int WORD_INFO_SIZE = OBJECT_HEADER_SIZE + 7 * REFERENCE_SIZE + 2 * 2 + 4;
+    static final int ARRAY_HEADER_SIZE = 16;
+    static final int STRING_SIZE = OBJECT_HEADER_SIZE + REFERENCE_SIZE + 2 * 4 + ARRAY_HEADER_SIZE;
+
     private final String surface;
     private final short headwordLength;
     private short posId;
@@ -34,6 +40,8 @@ public class WordInfo {
     private final int[] aUnitSplit;
     private final int[] bUnitSplit;
     private final int[] wordStructure;
+    // set before the instance is published by a frozen lexicon or the cache
+    private boolean isFrozen;
 
     WordInfo(String surface, short headwordLength, short posId, String normalizedForm, int dictionaryFormWordId,
             String dictionaryForm, String readingForm, int[] aUnitSplit, int[] bUnitSplit, int[] wordStructure) {
@@ -49,6 +57,13 @@ public class WordInfo {
         this.wordStructure = wordStructure;
     }
 
+    /**
+     * For the subclasses which decode the fields on demand.
+     */
+    WordInfo() {
+        this(null, (short) 0, (short) 0, null, -1, null, null, null, null, null);
+    }
+
     /**
      * Allocates informations of morpheme not in the lexicons.
      *
@@ -119,8 +134,14 @@ public class WordInfo {
      *
      * @param posId
      *            the POS ID
+     * @throws IllegalStateException
+     *             if this object is cached or returned by a frozen lexicon
+     * @deprecated the instances returned by {@link Lexicon#getWordInfo} may be
+     *             shared, and must not be modified.
      */
+    @Deprecated
     public void setPOSId(short posId) {
+        checkNotFrozen();
         this.posId = posId;
     }
 
@@ -166,27 +187,103 @@ public class WordInfo {
     /**
      * Returns the array of word IDs which the morpheme is compounded of in A mode.
      *
+     * <p>
+     * If this object is cached or returned by a frozen lexicon, the array is a
+     * copy.
+     *
      * @return the word IDs of A units
      */
     public int[] getAunitSplit() {
-        return aUnitSplit;
+        return copyIfFrozen(aUnitSplit());
     }
 
     /**
      * Returns the array of word IDs which the morpheme is compounded of in B mode.
      *
+     * <p>
+     * If this object is cached or returned by a frozen lexicon, the array is a
+     * copy.
+     *
      * @return the word IDs of B units
      */
     public int[] getBunitSplit() {
-        return bUnitSplit;
+        return copyIfFrozen(bUnitSplit());
     }
 
     /**
      * Returns the array of the morphemes which the morpheme is compounded of.
      *
+     * <p>
+     * If this object is cached or returned by a frozen lexicon, the array is a
+     * copy.
+     *
      * @return the word IDs of the constituents of the morpheme
      */
     public int[] getWordStructure() {
+        return copyIfFrozen(wordStructure());
+    }
+
+    /*
+     * The arrays of the splits without copying, for the callers in the library
+     * which only read them.
+     */
+
+    int[] aUnitSplit() {
+        return aUnitSplit;
+    }
+
+    int[] bUnitSplit() {
+        return bUnitSplit;
+    }
+
+    int[] wordStructure() {
         return wordStructure;
     }
+
+    /**
+     * Makes this object immutable, so that it can be shared by the callers of a
+     * frozen lexicon or of the cache.
+     *
+     * @return this object
+     */
+    WordInfo freeze() {
+        isFrozen = true;
+        return this;
+    }
+
+    void checkNotFrozen() {
+        if (isFrozen) {
+            throw new IllegalStateException("the word info is frozen");
+        }
+    }
+
+    int[] copyIfFrozen(int[] array) {
+        return (isFrozen && array != null && array.length > 0) ? array.clone() : array;
+    }
+
+    /**
+     * Returns the estimated number of bytes held by this object, assuming a 64-bit
+     * JVM without compressed references.
+     */
+    long estimatedSize() {
+        long size = WORD_INFO_SIZE + sizeOf(surface);
+        if (normalizedForm != surface) {
+            size += sizeOf(normalizedForm);
+        }
+        if (dictionaryForm != surface) {
+            size += sizeOf(dictionaryForm);
+        }
+        if (readingForm != surface) {
+            size += sizeOf(readingForm);
+        }
+        return size + sizeOf(aUnitSplit) + sizeOf(bUnitSplit) + sizeOf(wordStructure);
+    }
+
+    static long sizeOf(String s) {
+        return (s == null) ? 0 : STRING_SIZE + 2L * s.length();
+    }
+
+    static long sizeOf(int[] array) {
+        return (array == null) ? 0 : ARRAY_HEADER_SIZE + 4L * array.length;
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A size-bounded cache of the informations of morphemes keyed by word ID.
+ *
+ * <p>
+ * This class is thread-safe. The cached {@link WordInfo} instances are shared
+ * by all tokenizers, and are made immutable when they are put.
+ *
+ * @see LexiconSet#setWordInfoCache
+ */
+public class WordInfoCache {
+
+    private static final int ENTRY_SIZE = 16 + 4 + 8 + 48; // the boxed key and the map entry
+
+    private final long maximumSize;
+    private final Cache<Integer, WordInfo> cache;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize
+     *            the maximum number of entries
+     * @throws IllegalArgumentException
+     *             if {@code maximumSize} is negative
+     */
+    public WordInfoCache(long maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).concurrencyLevel(16).recordStats().build();
+    }
+
+    WordInfo get(int wordId) {
+        return cache.getIfPresent(wordId);
+    }
+
+    void put(int wordId, WordInfo wordInfo) {
+        cache.put(wordId, wordInfo.freeze());
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return the maximum number of entries
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the approximate number of entries.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a cached entry.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * Returns the number of lookups which decoded the entry from the dictionary.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the ratio of hits to all lookups, or {@code 1.0} if there has been no
+     * lookup.
+     *
+     * @return the hit rate
+     */
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * Returns the number of entries discarded because of the size limit.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the cached entries.
+     *
+     * <p>
+     * The estimation assumes a 64-bit JVM without compressed references, and walks
+     * all entries; do not call it on a hot path. Only the fields which have been
+     * decoded are counted.
+     *
+     * @return the estimated memory usage in bytes
+     */
+    public long getEstimatedMemoryUsage() {
+        long total = 0;
+        for (WordInfo wi : cache.asMap().values()) {
+            total += ENTRY_SIZE + wi.estimatedSize();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return String.format("WordInfoCache{size=%d, maximumSize=%d, hitRate=%.4f, hits=%d, misses=%d, evictions=%d}",
+                cache.size(), maximumSize, stats.hitRate(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+}
@@ -16,7 +16,6 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 class WordInfoList {
@@ -31,70 +30,77 @@ class WordInfoList {
         this.wordSize = wordSize;
     }
 
+    /**
+     * Returns a view of the informations of the morpheme. The fields are decoded on
+     * first access.
+     */
     WordInfo getWordInfo(int wordId) {
-        ByteBuffer buf = bytes.asReadOnlyBuffer();
-        buf.order(bytes.order());
-        ((Buffer) buf).position(wordIdToOffset(wordId)); // a kludge for Java 9
-
-        String surface = bufferToString(buf);
-        short headwordLength = (short) bufferToStringLength(buf);
-        short posId = buf.getShort();
-        String normalizedForm = bufferToString(buf);
-        if (normalizedForm.isEmpty()) {
-            normalizedForm = surface;
-        }
-        int dictionaryFormWordId = buf.getInt();
-        String readingForm = bufferToString(buf);
-        if (readingForm.isEmpty()) {
-            readingForm = surface;
-        }
-        int[] aUnitSplit = bufferToIntArray(buf);
-        int[] bUnitSplit = bufferToIntArray(buf);
-        int[] wordStructure = bufferToIntArray(buf);
-
-        String dictionaryForm = surface;
-        if (dictionaryFormWordId >= 0 && dictionaryFormWordId != wordId) {
-            WordInfo wi = getWordInfo(dictionaryFormWordId);
-            dictionaryForm = wi.getSurface();
-        }
-
-        return new WordInfo(surface, headwordLength, posId, normalizedForm, dictionaryFormWordId, dictionaryForm,
-                readingForm, aUnitSplit, bUnitSplit, wordStructure);
+        return new LazyWordInfo(this, wordId, wordIdToOffset(wordId));
     }
 
     int size() {
         return wordSize;
     }
 
-    private int wordIdToOffset(int wordId) {
+    int wordIdToOffset(int wordId) {
         return bytes.getInt(offset + 4 * wordId);
     }
 
-    private int bufferToStringLength(ByteBuffer buffer) {
-        byte length = buffer.get();
+    String readSurface(int wordId) {
+        return readString(wordIdToOffset(wordId));
+    }
+
+    short readShort(int position) {
+        return bytes.getShort(position);
+    }
+
+    int readInt(int position) {
+        return bytes.getInt(position);
+    }
+
+    int readStringLength(int position) {
+        byte length = bytes.get(position);
         if (length < 0) {
             int high = Byte.toUnsignedInt(length);
-            int low = Byte.toUnsignedInt(buffer.get());
+            int low = Byte.toUnsignedInt(bytes.get(position + 1));
             return ((high & 0x7F) << 8) | low;
         }
         return length;
     }
 
-    private String bufferToString(ByteBuffer buffer) {
-        int length = bufferToStringLength(buffer);
+    int skipStringLength(int position) {
+        return (bytes.get(position) < 0) ? position + 2 : position + 1;
+    }
+
+    String readString(int position) {
+        int length = readStringLength(position);
+        if (length == 0) {
+            return "";
+        }
+        position = skipStringLength(position);
         char[] str = new char[length];
         for (int i = 0; i < length; i++) {
-            str[i] = buffer.getChar();
+            str[i] = bytes.getChar(position);
+            position += 2;
         }
         return new String(str);
     }
 
-    private int[] bufferToIntArray(ByteBuffer buffer) {
-        int length = Byte.toUnsignedInt(buffer.get());
+    int skipString(int position) {
+        return skipStringLength(position) + 2 * readStringLength(position);
+    }
+
+    int[] readIntArray(int position) {
+        int length = Byte.toUnsignedInt(bytes.get(position++));
         int[] array = new int[length];
         for (int i = 0; i < length; i++) {
-            array[i] = buffer.getInt();
+            array[i] = bytes.getInt(position);
+            position += 4;
         }
         return array;
     }
+
+    int skipIntArray(int position) {
+        return position + 1 + 4 * Byte.toUnsignedInt(bytes.get(position));
+    }
 }
@@ -36,6 +36,10 @@ class WordParameterList {
         isCopied = false;
     }
 
+    private WordParameterList(int size) {
+        this.size = size;
+    }
+
     int storageSize() {
         return 4 + ELEMENT_SIZE * size;
     }
@@ -67,7 +71,19 @@ class WordParameterList {
         return offset + 4 + ELEMENT_SIZE * size;
     }
 
+    /**
+     * Takes an immutable snapshot of the parameters.
+     *
+     * @return the snapshot
+     */
+    WordParameterList freeze() {
+        return new Frozen(this);
+    }
+
     synchronized void copyBuffer() {
+        if (isCopied) {
+            return;
+        }
         ByteBuffer newBuffer = ByteBuffer.allocate(ELEMENT_SIZE * size);
         newBuffer.order(ByteOrder.LITTLE_ENDIAN);
         ByteBuffer srcBuffer = bytes.duplicate();
@@ -79,4 +95,54 @@ class WordParameterList {
         offset = 0;
         isCopied = true;
     }
+
+    /**
+     * The parameters copied into arrays, which reject the modifications.
+     */
+    private static final class Frozen extends WordParameterList {
+
+        // the left-ID, the right-ID and the cost of each word, which are read
+        // together
+        private final short[] params;
+
+        Frozen(WordParameterList list) {
+            super(list.size());
+            params = new short[3 * list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                params[3 * i] = list.getLeftId(i);
+                params[3 * i + 1] = list.getRightId(i);
+                params[3 * i + 2] = list.getCost(i);
+            }
+        }
+
+        @Override
+        short getLeftId(int wordId) {
+            return params[3 * wordId];
+        }
+
+        @Override
+        short getRightId(int wordId) {
+            return params[3 * wordId + 1];
+        }
+
+        @Override
+        short getCost(int wordId) {
+            return params[3 * wordId + 2];
+        }
+
+        @Override
+        void setCost(int wordId, short cost) {
+            throw new IllegalStateException("the lexicon is frozen");
+        }
+
+        @Override
+        WordParameterList freeze() {
+            return this;
+        }
+
+        @Override
+        void copyBuffer() {
+            throw new IllegalStateException("the lexicon is frozen");
+        }
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BeamSearchEvaluatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    Dictionary dict;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+        String path = temporaryFolder.getRoot().getPath();
+        dict = new DictionaryFactory().create(path, Utils.readAllResource("/sudachi.json"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dict.close();
+    }
+
+    @Test
+    public void evaluate() throws IOException {
+        Tokenizer exact = dict.create();
+        Tokenizer beam = dict.create();
+        beam.setBeam(1, -1);
+        BeamSearchEvaluator.Result result = new BeamSearchEvaluator.Result();
+        byte[] input = "東京都に行った\n東京府に行った\n".getBytes(StandardCharsets.UTF_8);
+        BeamSearchEvaluator.evaluate(exact, beam, Tokenizer.SplitMode.C, new ByteArrayInputStream(input), result);
+
+        assertThat(result.sentences, is(2));
+        assertThat(result.identicalSentences, is(2));
+        assertThat(result.matchedBoundaries, is(result.exactBoundaries));
+        assertThat(result.getFMeasure(), is(1.0));
+        assertTrue(result.prunedNodes > 0);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        result.print(new PrintStream(output, true, "UTF-8"));
+        assertTrue(output.toString("UTF-8").contains("identical sentences:\t2 (100.00%)"));
+    }
+
+    @Test
+    public void compare() {
+        Tokenizer tokenizer = dict.create();
+        List<Morpheme> expected = tokenizer.tokenize("東京都に行った");
+        List<Morpheme> actual = tokenizer.tokenize(Tokenizer.SplitMode.A, "東京都に行った");
+        BeamSearchEvaluator.Result result = new BeamSearchEvaluator.Result();
+        BeamSearchEvaluator.compare(expected, actual, result);
+
+        assertThat(result.sentences, is(1));
+        assertThat(result.identicalSentences, is(0));
+        assertThat(result.exactBoundaries, is((long) expected.size()));
+        assertThat(result.beamBoundaries, is((long) actual.size()));
+        assertThat(result.getRecall(), is(1.0));
+        assertTrue(result.getPrecision() < 1.0);
+    }
+}
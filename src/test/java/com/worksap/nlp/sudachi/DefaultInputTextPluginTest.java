@@ -21,26 +21,48 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import javax.json.Json;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.worksap.nlp.sudachi.dictionary.Grammar;
 
 public class DefaultInputTextPluginTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     // U+2F3C '⼼' should not be normalized to U+5FC3 '心'
     // 'Ⅲ' should not be normalized to 'III' but should be lower case 'ⅲ'
     static final String ORIGINAL_TEXT = "ÂＢΓД㈱ｶﾞウ゛⼼Ⅲ";
     static final String NORMALIZED_TEXT = "âbγд(株)ガヴ⼼ⅲ";
+    Grammar grammar;
     UTF8InputTextBuilder builder;
     UTF8InputText text;
     DefaultInputTextPlugin plugin;
 
     @Before
     public void setUp() {
-        builder = new UTF8InputTextBuilder(ORIGINAL_TEXT, new MockGrammar());
+        grammar = new MockGrammar();
+        builder = new UTF8InputTextBuilder(ORIGINAL_TEXT, grammar);
         plugin = new DefaultInputTextPlugin();
         try {
             plugin.rewriteDef = DefaultInputTextPluginTest.class.getClassLoader().getResource("rewrite.def").getPath();
@@ -129,4 +151,154 @@ public class DefaultInputTextPluginTest {
                 .getPath();
         plugin.setUp();
     }
+
+    @Test
+    public void rewriteSameAsReference() throws IOException {
+        File rewriteDef = temporaryFolder.newFile();
+        String rules = "Ⅲ\nⅰ\n髙\nＡ\nｶﾞ\tガ\nｳﾞ\tヴ\nab\tX\nabc\tY\nabcd\tZ\nb\t\u3042\u3044\n𡈽\t土\nΩ\tω\n";
+        Files.write(rewriteDef.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+        plugin = new DefaultInputTextPlugin();
+        plugin.rewriteDef = rewriteDef.getPath();
+        plugin.setUp();
+        Set<Integer> ignoreNormalizeSet = new HashSet<>();
+        Map<String, String> replaceCharMap = new HashMap<>();
+        for (String line : rules.split("\n")) {
+            String[] cols = line.split("\t");
+            if (cols.length == 1) {
+                ignoreNormalizeSet.add(cols[0].codePointAt(0));
+            } else {
+                replaceCharMap.put(cols[0], cols[1]);
+            }
+        }
+
+        String[] pool = { "a", "b", "c", "d", "A", "B", "Ａ", "ａ", "ｂ", "１", "ｶ", "ﾞ", "ｳ", "ガ", "あ", "ア", "㈱", "Ⅲ", "Ⅳ",
+                "ⅰ", "髙", "Ω", "Γ", "Д", "ß", "İ", "ﬁ", "①", "㍻", "⼼", "𡈽", "𝐀", "\uD800", "\uDC00", " ", "　", "ー" };
+        UTF8InputTextBuilder streamed = new UTF8InputTextBuilder(grammar);
+        InputTextTransducer transducer = plugin.createTransducer(streamed);
+        Random random = new Random(12345);
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                if (random.nextInt(8) == 0) {
+                    sb.appendCodePoint(random.nextInt(0x10000));
+                } else {
+                    sb.append(pool[random.nextInt(pool.length)]);
+                }
+            }
+            String input = sb.toString();
+            ReferenceBuilder expected = new ReferenceBuilder(input);
+            referenceRewrite(expected, replaceCharMap, ignoreNormalizeSet);
+            builder = new UTF8InputTextBuilder(input, grammar);
+            plugin.rewrite(builder);
+            assertThat(input, builder.getText(), is(expected.text.toString()));
+            transducer.begin(input);
+            for (int i = 0; i < input.length(); i = input.offsetByCodePoints(i, 1)) {
+                transducer.accept(input.codePointAt(i), i);
+            }
+            transducer.end();
+            assertThat(input, streamed.getText(), is(expected.text.toString()));
+            String modified = builder.getText();
+            if (modified.codePoints().anyMatch(c -> c >= 0xD800 && c <= 0xDFFF)) {
+                continue;
+            }
+            text = builder.build();
+            UTF8InputText streamedText = streamed.build();
+            for (int i = 0, j = 0; i <= modified.length(); i = modified.offsetByCodePoints(i, 1)) {
+                int bytes = (i < modified.length())
+                        ? new String(Character.toChars(modified.codePointAt(i))).getBytes(StandardCharsets.UTF_8).length
+                        : 1;
+                for (int k = 0; k < bytes; k++, j++) {
+                    assertThat(input, text.getOriginalIndex(j), is(expected.offsets.get(i)));
+                    assertThat(input, streamedText.getOriginalIndex(j), is(expected.offsets.get(i)));
+                }
+                if (i == modified.length()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** The text and the offsets rewritten as UTF8InputTextBuilder did originally */
+    @Test
+    public void normalizeEveryCodePointSameAsReference() {
+        Set<Integer> ignoreNormalizeSet = new HashSet<>();
+        for (String c : new String[] { "ⅲ", "ⅰ", "髙", "ｱ", "𝐀", "𝐛" }) {
+            ignoreNormalizeSet.add(c.codePointAt(0));
+        }
+        CharacterNormalizer normalizer = new CharacterNormalizer(Collections.emptyMap(), ignoreNormalizeSet);
+        for (int c = 0; c <= Character.MAX_CODE_POINT; c++) {
+            String input = new String(Character.toChars(c));
+            ReferenceBuilder expected = new ReferenceBuilder(input);
+            referenceRewrite(expected, Collections.emptyMap(), ignoreNormalizeSet);
+            String actual = normalizer.getNormalizedForm(c);
+            assertThat(Integer.toHexString(c), (actual == null) ? input : actual, is(expected.text.toString()));
+        }
+    }
+
+    static class ReferenceBuilder {
+        final StringBuilder text;
+        final List<Integer> offsets = new ArrayList<>();
+
+        ReferenceBuilder(String input) {
+            text = new StringBuilder(input);
+            for (int i = 0, j = 0; i < input.length(); i++) {
+                if (!Character.isLowSurrogate(input.charAt(i))) {
+                    j = i;
+                }
+                offsets.add(j);
+            }
+            offsets.add(input.length());
+        }
+
+        void replace(int begin, int end, String str) {
+            text.replace(begin, end, str);
+            int offset = offsets.get(begin);
+            offsets.subList(begin, end).clear();
+            offsets.addAll(begin, Collections.nCopies(str.length(), offset));
+        }
+    }
+
+    /** The rewriting of the original implementation of DefaultInputTextPlugin */
+    static void referenceRewrite(ReferenceBuilder builder, Map<String, String> replaceCharMap,
+            Set<Integer> ignoreNormalizeSet) {
+        Map<Character, Integer> keyLengths = new HashMap<>();
+        for (String key : replaceCharMap.keySet()) {
+            if (keyLengths.getOrDefault(key.charAt(0), -1) < key.length()) {
+                keyLengths.put(key.charAt(0), key.length());
+            }
+        }
+        int offset = 0;
+        int nextOffset = 0;
+        String text = builder.text.toString();
+        textloop: for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            offset += nextOffset;
+            nextOffset = 0;
+            for (int l = Math.min(keyLengths.getOrDefault(text.charAt(i), 0), text.length() - i); l > 0; l--) {
+                String replace = replaceCharMap.get(text.substring(i, i + l));
+                if (replace != null) {
+                    builder.replace(i + offset, i + l + offset, replace);
+                    nextOffset += replace.length() - l;
+                    i += l - 1;
+                    continue textloop;
+                }
+            }
+            int original = text.codePointAt(i);
+            int charLength = text.offsetByCodePoints(i, 1) - i;
+            int lower = Character.toLowerCase(original);
+            String replace;
+            if (ignoreNormalizeSet.contains(lower)) {
+                if (original == lower) {
+                    continue;
+                }
+                replace = new String(Character.toChars(lower));
+            } else {
+                replace = Normalizer.normalize(new String(Character.toChars(lower)), Form.NFKC);
+            }
+            nextOffset = replace.length() - charLength;
+            if (replace.length() != charLength || original != replace.codePointAt(0)) {
+                builder.replace(i + offset, i + charLength + offset, replace);
+            }
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DictionaryRegistryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    String path;
+    String settings;
+    DictionaryRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+        path = temporaryFolder.getRoot().getPath();
+        settings = Utils.readAllResource("/sudachi.json");
+        registry = new DictionaryRegistry();
+    }
+
+    @Test
+    public void shareDictionary() throws IOException {
+        Dictionary dict1 = registry.acquire(path, settings, false);
+        Dictionary dict2 = registry.acquire(path, settings, false);
+        assertThat(dict1, not(sameInstance(dict2)));
+        assertThat(registry.getLiveDictionaryCount(), is(1));
+        assertThat(registry.getLiveMappingCount(), is(2));
+        assertThat(((JapaneseTokenizer) dict1.create()).lexicon,
+                sameInstance(((JapaneseTokenizer) dict2.create()).lexicon));
+
+        dict1.close();
+        assertThat(registry.getLiveDictionaryCount(), is(1));
+        assertThat(dict2.create().tokenize("東京都").size(), is(1));
+
+        dict2.close();
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+        assertThat(registry.getLiveMappingCount(), is(0));
+    }
+
+    @Test
+    public void shareMappingWithDifferentSettings() throws IOException {
+        Dictionary dict1 = registry.acquire(path, settings, false);
+        Dictionary dict2 = registry.acquire(path, "{\"userDict\":[]}", true);
+        assertThat(registry.getLiveDictionaryCount(), is(2));
+        assertThat(registry.getLiveMappingCount(), is(2));
+        assertThat(dict1.create().tokenize("東京府").size(), is(1));
+        assertThat(dict2.create().tokenize("東京府").size(), is(2));
+
+        dict1.close();
+        assertThat(registry.getLiveDictionaryCount(), is(1));
+        assertThat(registry.getLiveMappingCount(), is(1));
+        assertThat(dict2.create().tokenize("東京府").size(), is(2));
+
+        dict2.close();
+        assertThat(registry.getLiveMappingCount(), is(0));
+    }
+
+    @Test
+    public void separateDictionariesWithDifferentSettings() throws IOException {
+        Dictionary dict1 = registry.acquire(path, "{\"beamWidth\":5}", true);
+        Dictionary dict2 = registry.acquire(path, "{\"beamWidth\":6}", true);
+        assertThat(registry.getLiveDictionaryCount(), is(2));
+        assertThat(((JapaneseTokenizer) dict1.create()).lexicon,
+                not(sameInstance(((JapaneseTokenizer) dict2.create()).lexicon)));
+
+        Dictionary dict3 = registry.acquire(path, "{ \"beamWidth\" : 5 }", true);
+        assertThat(registry.getLiveDictionaryCount(), is(2));
+
+        dict1.close();
+        dict2.close();
+        dict3.close();
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+    }
+
+    @Test
+    public void separateDictionariesWithChangedCharacterDefinition() throws IOException {
+        Dictionary dict1 = registry.acquire(path, settings, false);
+        File charDef = new File(path, "char.def");
+        assertThat(charDef.setLastModified(charDef.lastModified() - 10000), is(true));
+        Dictionary dict2 = registry.acquire(path, settings, false);
+        assertThat(registry.getLiveDictionaryCount(), is(2));
+
+        dict1.close();
+        dict2.close();
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+    }
+
+    @Test
+    public void readMorphemesAfterRelease() throws IOException {
+        Dictionary dict = registry.acquire(path, settings, false);
+        List<Morpheme> morphemes = dict.create().tokenize("東京都に行った");
+        dict.close();
+        assertThat(registry.getLiveMappingCount(), is(0));
+        System.gc();
+        assertThat(morphemes.get(0).surface(), is("東京都"));
+        assertThat(morphemes.get(0).readingForm(), is(notNullValue()));
+        assertThat(morphemes.get(0).split(Tokenizer.SplitMode.A).size(), is(2));
+    }
+
+    @Test
+    public void acquireConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Dictionary>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> registry.acquire(path, settings, false)));
+            }
+            List<Dictionary> dicts = new ArrayList<>();
+            for (Future<Dictionary> future : futures) {
+                dicts.add(future.get());
+            }
+            assertThat(registry.getLiveDictionaryCount(), is(1));
+            Object lexicon = ((JapaneseTokenizer) dicts.get(0).create()).lexicon;
+            for (Dictionary dict : dicts) {
+                assertThat(((JapaneseTokenizer) dict.create()).lexicon, sameInstance(lexicon));
+                dict.close();
+            }
+            assertThat(registry.getLiveDictionaryCount(), is(0));
+            assertThat(registry.getLiveMappingCount(), is(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void acquireAfterFailure() throws IOException {
+        String invalid = "{\"systemDict\":\"nonexistent.dic\"}";
+        try {
+            registry.acquire(path, invalid, true);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+        assertThat(registry.getLiveMappingCount(), is(0));
+
+        Dictionary dict = registry.acquire(path, settings, false);
+        assertThat(registry.getLiveDictionaryCount(), is(1));
+        dict.close();
+    }
+
+    @Test
+    public void closeTwice() throws IOException {
+        Dictionary dict1 = registry.acquire(path, settings, false);
+        Dictionary dict2 = registry.acquire(path, settings, false);
+        dict1.close();
+        dict1.close();
+        assertThat(registry.getLiveDictionaryCount(), is(1));
+        dict2.close();
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void createAfterClose() throws IOException {
+        Dictionary dict = registry.acquire(path, settings, false);
+        dict.close();
+        dict.create();
+    }
+
+    @Test
+    public void releaseMappingsOnFailure() throws IOException {
+        try {
+            registry.acquire(path, "{\"userDict\":[\"not_exist.dic\"]}", true);
+        } catch (IOException e) {
+            // expected
+        }
+        assertThat(registry.getLiveDictionaryCount(), is(0));
+        assertThat(registry.getLiveMappingCount(), is(0));
+    }
+
+    @Test
+    public void createShared() throws IOException {
+        try (Dictionary dict = new DictionaryFactory().createShared(path, settings, false)) {
+            assertThat(dict.create().tokenize("東京都").size(), is(1));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class DictionaryTest {
+
+    /** a dictionary implementing only the abstract methods */
+    static class MinimalDictionary implements Dictionary {
+        boolean isFrozen;
+
+        @Override
+        public Tokenizer create() {
+            return new Tokenizer() {
+                @Override
+                public List<Morpheme> tokenize(SplitMode mode, String text) {
+                    if (text.isEmpty()) {
+                        throw new IllegalArgumentException("empty");
+                    }
+                    return Collections.emptyList();
+                }
+
+                @Override
+                public void setDumpOutput(PrintStream output) {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int getPartOfSpeechSize() {
+            return 0;
+        }
+
+        @Override
+        public List<String> getPartOfSpeechString(short posId) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public void freeze() {
+            isFrozen = true;
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return isFrozen;
+        }
+    }
+
+    @Test
+    public void defaultMethods() {
+        Dictionary dict = new MinimalDictionary();
+        assertThat(dict.getWordInfoCache(), is(nullValue()));
+        assertThat(dict.getStartupTimings().getPhases().isEmpty(), is(true));
+        assertThat(dict.tokenizeInParallel(Tokenizer.SplitMode.C, "a").isEmpty(), is(true));
+
+        List<TokenizeResult> results = dict.tokenizeAll(Arrays.asList("a", ""), Tokenizer.SplitMode.C);
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(dict.tokenizeAll(Stream.of("a", "b"), Tokenizer.SplitMode.C).map(TokenizeResult::isSuccess)
+                .collect(Collectors.toList()), is(Arrays.asList(true, true)));
+
+        Tokenizer tokenizer = dict.create();
+        assertThat(tokenizer.getPrunedNodeCount(), is(0L));
+    }
+
+    @Test
+    public void createTokenizerPoolByDefault() {
+        TokenizerPool pool = new MinimalDictionary().createTokenizerPool(2, 0);
+        assertThat(pool.tokenize("a").isEmpty(), is(true));
+        assertThat(pool.tokenizeInParallel(Tokenizer.SplitMode.C, "a").isEmpty(), is(true));
+
+        List<TokenizeResult> results = pool.tokenizeAll(Arrays.asList("a", "", "b"), Tokenizer.SplitMode.C);
+        assertThat(results.stream().map(TokenizeResult::isSuccess).collect(Collectors.toList()),
+                is(Arrays.asList(true, false, true)));
+        assertThat(pool.getActiveCount(), is(0));
+        assertThat(pool.getDiscardCount(), is(0L));
+        assertThat(pool.getScratchBytes(), is(0L));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void setBeamOfDefaultTokenizerPool() {
+        new MinimalDictionary().createTokenizerPool(1).setBeam(1, 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void createStreamingTokenizerOfDefaultTokenizerPool() {
+        new MinimalDictionary().createTokenizerPool(1).createStreamingTokenizer(Tokenizer.SplitMode.C, m -> {
+        });
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void tokenizeBytesIsUnsupportedByDefault() {
+        new MinimalDictionary().create().tokenize(new byte[] { 'a' }, 0, 1);
+    }
+}
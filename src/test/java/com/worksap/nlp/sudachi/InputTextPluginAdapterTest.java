@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class InputTextPluginAdapterTest {
+
+    static class ReversePlugin extends InputTextPlugin {
+        @Override
+        public void rewrite(InputTextBuilder builder) {
+            String text = builder.getText();
+            if (text.isEmpty()) {
+                return;
+            }
+            builder.replace(0, text.length(), new StringBuilder(text).reverse().toString());
+        }
+    }
+
+    static class UpperCasePlugin extends InputTextPlugin {
+        @Override
+        public void rewrite(InputTextBuilder builder) {
+            assertThat(builder.getOriginalText(), is("abcd"));
+            String text = builder.getText();
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == 'b') {
+                    builder.replace(i, i + 1, "BB");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void chainAdapters() {
+        UTF8InputTextBuilder builder = new UTF8InputTextBuilder(new MockGrammar());
+        InputTextTransducer transducer = new ReversePlugin()
+                .createTransducer(new UpperCasePlugin().createTransducer(builder));
+        for (int n = 0; n < 2; n++) {
+            transducer.begin("abcd");
+            for (int i = 0; i < 4; i++) {
+                transducer.accept("abcd".charAt(i), i);
+            }
+            transducer.end();
+
+            UTF8InputText text = builder.build();
+            assertThat(text.getOriginalText(), is("abcd"));
+            assertThat(text.getText(), is("dcBBa"));
+            assertThat(text.getOriginalIndex(0), is(0));
+            assertThat(text.getOriginalIndex(2), is(0));
+            assertThat(text.getOriginalIndex(5), is(4));
+        }
+    }
+
+    @Test
+    public void emptyText() {
+        UTF8InputTextBuilder builder = new UTF8InputTextBuilder(new MockGrammar());
+        InputTextTransducer transducer = new ReversePlugin().createTransducer(builder);
+        transducer.begin("");
+        transducer.end();
+        assertThat(builder.getText(), is(""));
+        assertThat(builder.build().getOriginalIndex(0), is(0));
+    }
+}
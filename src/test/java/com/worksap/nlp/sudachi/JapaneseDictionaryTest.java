@@ -16,12 +16,28 @@
 
 package com.worksap.nlp.sudachi;
 
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.isA;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.After;
@@ -30,6 +46,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.worksap.nlp.sudachi.dictionary.FrozenGrammar;
+import com.worksap.nlp.sudachi.dictionary.LexiconSet;
+import com.worksap.nlp.sudachi.dictionary.UserDictionaryBuilder;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
+import com.worksap.nlp.sudachi.dictionary.WordInfoCache;
+
 public class JapaneseDictionaryTest {
 
     @Rule
@@ -85,4 +107,262 @@ public class JapaneseDictionaryTest {
         Tokenizer t = dict.create();
         assertThat(t.tokenize("東京府").size(), is(1));
     }
+
+    @Test
+    public void createWithSystemDictPath() throws IOException {
+        dict.close();
+        Path systemDict = temporaryFolder.getRoot().toPath().resolve("system.dic");
+        dict = new DictionaryFactory().create(systemDict, path, "{\"systemDict\":\"not_exist.dic\"}", true);
+        assertThat(dict.create().tokenize("東京都").size(), is(1));
+    }
+
+    @Test
+    public void createWithSystemDictBuffer() throws IOException {
+        dict.close();
+        byte[] bytes = Files.readAllBytes(temporaryFolder.getRoot().toPath().resolve("system.dic"));
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        buffer.put((byte) 0).put(bytes).flip();
+        buffer.position(1);
+        dict = new DictionaryFactory().create(buffer, path, "{\"systemDict\":\"not_exist.dic\"}", true);
+        assertThat(dict.create().tokenize("東京都").size(), is(1));
+        assertThat(buffer.position(), is(1));
+    }
+
+    @Test
+    public void closeReleasesBatchPool() throws IOException {
+        dict.tokenizeAll(Collections.singletonList("東京都"), Tokenizer.SplitMode.C);
+        JapaneseDictionary japaneseDictionary = (JapaneseDictionary) dict;
+        assertThat(japaneseDictionary.batchPool.get(), notNullValue());
+        dict.close();
+        assertThat(japaneseDictionary.batchPool.get(), nullValue());
+    }
+
+    @Test
+    public void readMorphemesAfterClose() throws IOException {
+        String text = "東京都に行った京都ｱｲｳ東京府";
+        Tokenizer tokenizer = dict.create();
+        List<Morpheme> expected = tokenizer.tokenize(text);
+        List<Morpheme> morphemes = tokenizer.tokenize(text);
+        dict.close();
+        System.gc();
+
+        assertThat(morphemes.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            Morpheme m = morphemes.get(i);
+            Morpheme e = expected.get(i);
+            assertThat(m.surface(), is(e.surface()));
+            assertThat(m.partOfSpeech(), is(e.partOfSpeech()));
+            assertThat(m.dictionaryForm(), is(e.dictionaryForm()));
+            assertThat(m.readingForm(), is(e.readingForm()));
+            assertThat(m.split(Tokenizer.SplitMode.A).size(), is(e.split(Tokenizer.SplitMode.A).size()));
+        }
+    }
+
+    @Test
+    public void freeze() {
+        String text = "東京都に行った京都ｱｲｳ東京府ーーー𡈽に行った";
+        Tokenizer before = dict.create();
+        List<Morpheme> expected = before.tokenize(text);
+        assertThat(dict.isFrozen(), is(false));
+
+        dict.freeze();
+        dict.freeze();
+        assertThat(dict.isFrozen(), is(true));
+        assertThat(dict.getPartOfSpeechSize(), is(9));
+
+        JapaneseTokenizer tokenizer = (JapaneseTokenizer) dict.create();
+        assertThat(tokenizer.grammar, is(instanceOf(FrozenGrammar.class)));
+        List<List<Morpheme>> results = Arrays.asList(tokenizer.tokenize(text), before.tokenize(text));
+        for (List<Morpheme> actual : results) {
+            assertThat(actual.size(), is(expected.size()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).surface(), is(expected.get(i).surface()));
+                assertThat(actual.get(i).partOfSpeech(), is(expected.get(i).partOfSpeech()));
+                assertThat(actual.get(i).getWordId(), is(expected.get(i).getWordId()));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void wordInfoAfterFreeze() throws IOException {
+        dict.close();
+        dict = new DictionaryFactory().create(path, "{\"wordInfoCacheSize\":16}", true);
+        int wordId = dict.create().tokenize("東京都").get(0).getWordId();
+        LexiconSet lexicon = ((JapaneseDictionary) dict).lexicon;
+        lexicon.getWordInfo(wordId).getAunitSplit();
+        dict.freeze();
+
+        WordInfo wordInfo = lexicon.getWordInfo(wordId);
+        assertThat(lexicon.getWordInfo(wordId), is(sameInstance(wordInfo)));
+        int[] split = wordInfo.getAunitSplit();
+        assertThat(split.length, is(2));
+        split[0] = -1;
+        assertThat(wordInfo.getAunitSplit()[0], is(not(-1)));
+        assertThat(LexiconSet.readAunitSplit(wordInfo), is(sameInstance(LexiconSet.readAunitSplit(wordInfo))));
+        assertThat(LexiconSet.readAunitSplit(wordInfo), is(not(sameInstance(wordInfo.getAunitSplit()))));
+        try {
+            wordInfo.setPOSId((short) 0);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(wordInfo.getPOSId(), is(not((short) 0)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setConnectCostAfterFreeze() {
+        dict.freeze();
+        ((JapaneseDictionary) dict).grammar.setConnectCost((short) 0, (short) 0, (short) 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addLexiconAfterFreeze() {
+        dict.freeze();
+        JapaneseDictionary japaneseDictionary = (JapaneseDictionary) dict;
+        japaneseDictionary.lexicon.add(japaneseDictionary.lexicon, (short) 0);
+    }
+
+    @Test
+    public void wordInfoCacheIsDisabledByDefault() {
+        assertThat(dict.getWordInfoCache(), nullValue());
+    }
+
+    @Test
+    public void wordInfoCache() throws IOException {
+        dict.close();
+        dict = new DictionaryFactory().create(path, "{\"wordInfoCacheSize\":2}", true);
+        WordInfoCache cache = dict.getWordInfoCache();
+        assertThat(cache.getMaximumSize(), is(2L));
+
+        Tokenizer t = dict.create();
+        List<Morpheme> ms = t.tokenize("東京都");
+        assertThat(ms.get(0).readingForm(), is("トウキョウト"));
+        long misses = cache.getMissCount();
+        assertThat(misses > 0, is(true));
+
+        ms = t.tokenize("東京都");
+        assertThat(ms.get(0).readingForm(), is("トウキョウト"));
+        assertThat(cache.getMissCount(), is(misses));
+        assertThat(cache.getHitCount() > 0, is(true));
+        assertThat(cache.getEstimatedMemoryUsage() > 0, is(true));
+
+        for (Morpheme m : t.tokenize("京都に行った")) {
+            m.readingForm();
+        }
+        assertThat(cache.size() <= 2, is(true));
+        assertThat(cache.getEvictionCount() > 0, is(true));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void cachedWordInfoIsImmutable() throws IOException {
+        dict.close();
+        dict = new DictionaryFactory().create(path, "{\"wordInfoCacheSize\":16}", true);
+        int wordId = dict.create().tokenize("東京都").get(0).getWordId();
+        LexiconSet lexicon = ((JapaneseDictionary) dict).lexicon;
+        assertThat(dict.isFrozen(), is(false));
+
+        WordInfo wordInfo = lexicon.getWordInfo(wordId);
+        assertThat(lexicon.getWordInfo(wordId), is(sameInstance(wordInfo)));
+        short posId = wordInfo.getPOSId();
+        try {
+            wordInfo.setPOSId((short) (posId + 1));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(wordInfo.getPOSId(), is(posId));
+        }
+        int[] split = wordInfo.getAunitSplit();
+        split[0] = -1;
+        assertThat(wordInfo.getAunitSplit()[0], is(not(-1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNegativeWordInfoCacheSize() throws IOException {
+        new DictionaryFactory().create(path, "{\"wordInfoCacheSize\":-1}", true);
+    }
+
+    @Test
+    public void startupTimings() {
+        StartupTimings timings = dict.getStartupTimings();
+        assertThat(timings.getPhases(), hasItems("systemDict", "characterDefinitionFile", "inputTextPlugin",
+                "oovProviderPlugin", "userDict", "calculateCost"));
+        assertThat(timings.getNanos("systemDict") > 0, is(true));
+        assertThat(timings.getNanos("not_exist"), is(0L));
+        assertThat(timings.getTotalNanos() >= timings.getNanos("systemDict"), is(true));
+    }
+
+    @Test
+    public void createWithStartupThreads() throws IOException {
+        try (Dictionary parallel = new DictionaryFactory().create(path, "{\"startupThreads\":4}", true)) {
+            Tokenizer expected = dict.create();
+            Tokenizer actual = parallel.create();
+            for (String text : new String[] { "東京都に行った", "ぴらる", "東京府" }) {
+                MorphemeList e = (MorphemeList) expected.tokenize(text);
+                MorphemeList a = (MorphemeList) actual.tokenize(text);
+                assertThat(a.size(), is(e.size()));
+                assertThat(a.getInternalCost(), is(e.getInternalCost()));
+                for (int i = 0; i < e.size(); i++) {
+                    assertThat(a.get(i).getWordId(), is(e.get(i).getWordId()));
+                }
+            }
+            assertThat(parallel.getStartupTimings().getTotalNanos() > 0, is(true));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNegativeStartupThreads() throws IOException {
+        new DictionaryFactory().create(path, "{\"startupThreads\":-1}", true);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void createWithStartupThreadsAndNoSystemDict() throws IOException {
+        new DictionaryFactory().create(path, "{\"startupThreads\":2,\"systemDict\":\"not_exist.dic\"}", true);
+    }
+
+    @Test
+    public void precomputedCosts() throws IOException {
+        dict.close();
+        String costsDict = buildDictionaryWithPrecomputedCosts((short) 1234);
+        dict = new DictionaryFactory().create(path, "{\"userDict\":[\"" + costsDict + "\"]}", true);
+        assertThat(((JapaneseDictionary) dict).lexicon.getCost(1 << 28), is((short) 1234));
+    }
+
+    @Test
+    public void precomputedCostsAfterOtherUserDictionary() throws IOException {
+        dict.close();
+        String costsDict = buildDictionaryWithPrecomputedCosts((short) 1234);
+        dict = new DictionaryFactory().create(path, "{\"userDict\":[\"user.dic\",\"" + costsDict + "\"]}", true);
+        assertThat(((JapaneseDictionary) dict).lexicon.getCost(2 << 28), is(not((short) 1234)));
+    }
+
+    @Test
+    public void precomputedCostsWithOtherSettings() throws IOException {
+        dict.close();
+        String costsDict = buildDictionaryWithPrecomputedCosts((short) 1234);
+        dict = new DictionaryFactory().create(path, "{\"userDict\":[\"" + costsDict + "\"],\"inputTextPlugin\":[]}",
+                true);
+        assertThat(((JapaneseDictionary) dict).lexicon.getCost(1 << 28), is(not((short) 1234)));
+    }
+
+    /**
+     * Builds a user dictionary with the precomputed costs, and overwrites the cost
+     * so that the tests can see whether it is used.
+     */
+    private String buildDictionaryWithPrecomputedCosts(short cost) throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/sudachi.json");
+        Path input = temporaryFolder.newFile().toPath();
+        Files.write(input, "ぴらる,8,8,-32768,ぴらる,名詞,普通名詞,一般,*,*,*,ピラル,ぴらる,*,A,*,*,*\n".getBytes(StandardCharsets.UTF_8));
+        Path output = temporaryFolder.getRoot().toPath().resolve("costs.dic");
+        UserDictionaryBuilder.main(new String[] { "-o", output.toString(), "-s",
+                temporaryFolder.getRoot().toPath().resolve("system.dic").toString(), "-c", "-r",
+                temporaryFolder.getRoot().toPath().resolve("sudachi.json").toString(), "-p", path, input.toString() });
+
+        // the last entry of the costs is followed by the offset of the costs
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putShort(cost).flip();
+            channel.write(buffer, channel.size() - 4 - 2);
+        }
+        return output.getFileName().toString();
+    }
 }
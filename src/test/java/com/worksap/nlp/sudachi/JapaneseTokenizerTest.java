@@ -19,17 +19,26 @@ package com.worksap.nlp.sudachi;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.worksap.nlp.sudachi.dictionary.CategoryType;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
+
 public class JapaneseTokenizerTest {
 
     @Rule
@@ -93,4 +102,298 @@ public class JapaneseTokenizerTest {
         assertThat(ms.size(), is(1));
         assertTrue(ms.get(0).getDictionaryId() < 0);
     }
+
+    static final String MIXED_TEXT = "京都ｱｲｳ東京府ーーー𡈽に行った";
+
+    void assertSameMorphemes(List<Morpheme> actual, List<Morpheme> expected, String text, boolean byteOffsets,
+            int base) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            Morpheme a = actual.get(i);
+            Morpheme e = expected.get(i);
+            assertThat(a.surface(), is(e.surface()));
+            assertThat(a.normalizedForm(), is(e.normalizedForm()));
+            assertThat(a.getWordId(), is(e.getWordId()));
+            if (byteOffsets) {
+                assertThat(a.begin(), is(base + text.substring(0, e.begin()).getBytes(StandardCharsets.UTF_8).length));
+                assertThat(a.end(), is(base + text.substring(0, e.end()).getBytes(StandardCharsets.UTF_8).length));
+            } else {
+                assertThat(a.begin(), is(base + e.begin()));
+                assertThat(a.end(), is(base + e.end()));
+            }
+        }
+    }
+
+    @Test
+    public void tokenizeBytes() {
+        byte[] utf8 = MIXED_TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[utf8.length + 5];
+        System.arraycopy(utf8, 0, bytes, 3, utf8.length);
+        List<Morpheme> expected = tokenizer.tokenize(MIXED_TEXT);
+        assertSameMorphemes(tokenizer.tokenize(bytes, 3, utf8.length), expected, MIXED_TEXT, true, 3);
+        assertSameMorphemes(tokenizer.tokenize(Tokenizer.SplitMode.A, bytes, 3, utf8.length),
+                tokenizer.tokenize(Tokenizer.SplitMode.A, MIXED_TEXT), MIXED_TEXT, true, 3);
+        assertThat(tokenizer.tokenize(bytes, 3, 0).isEmpty(), is(true));
+    }
+
+    @Test
+    public void tokenizeBytesNotRewrittenByInputTextPlugin() {
+        String text = "京都ぴらる東京府𡈽";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[utf8.length + 2];
+        System.arraycopy(utf8, 0, bytes, 2, utf8.length);
+        List<Morpheme> expected = tokenizer.tokenize(text);
+        List<Morpheme> actual = tokenizer.tokenize(bytes, 2, utf8.length);
+        assertSameMorphemes(actual, expected, text, true, 2);
+        assertThat(((MorphemeList) actual).getInternalCost(), is(((MorphemeList) expected).getInternalCost()));
+    }
+
+    @Test
+    public void tokenizeBytesWithoutInputTextPlugin() {
+        JapaneseTokenizer plain = new JapaneseTokenizer(tokenizer.grammar, tokenizer.lexicon, Collections.emptyList(),
+                tokenizer.oovProviderPlugins, Collections.emptyList());
+        String text = "京都ぴらる東京府";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[utf8.length + 2];
+        System.arraycopy(utf8, 0, bytes, 2, utf8.length);
+        List<Morpheme> expected = plain.tokenize(text);
+        List<Morpheme> actual = plain.tokenize(bytes, 2, utf8.length);
+        assertSameMorphemes(actual, expected, text, true, 2);
+        assertNotNull(actual.get(0).readingForm());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenizeMalformedBytes() {
+        byte[] bytes = { (byte) 0xE4, (byte) 0xBA, 0x41 };
+        tokenizer.tokenize(bytes, 0, bytes.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenizeMalformedBytesWithoutInputTextPlugin() {
+        JapaneseTokenizer plain = new JapaneseTokenizer(tokenizer.grammar, tokenizer.lexicon, Collections.emptyList(),
+                tokenizer.oovProviderPlugins, Collections.emptyList());
+        byte[] bytes = { 0x41, (byte) 0xED, (byte) 0xA0, (byte) 0x80 };
+        plain.tokenize(bytes, 0, bytes.length);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void tokenizeBytesOutOfRange() {
+        tokenizer.tokenize(new byte[3], 2, 2);
+    }
+
+    @Test
+    public void tokenizeByteBuffer() {
+        byte[] utf8 = MIXED_TEXT.getBytes(StandardCharsets.UTF_8);
+        List<Morpheme> expected = tokenizer.tokenize(MIXED_TEXT);
+
+        ByteBuffer heap = ByteBuffer.allocate(utf8.length + 4);
+        heap.position(4);
+        heap.put(utf8);
+        heap.position(4);
+        assertSameMorphemes(tokenizer.tokenize(heap), expected, MIXED_TEXT, true, 4);
+        assertThat(heap.position(), is(4));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length + 1);
+        direct.position(1);
+        direct.put(utf8);
+        direct.position(1);
+        assertSameMorphemes(tokenizer.tokenize(direct), expected, MIXED_TEXT, true, 1);
+        assertThat(direct.position(), is(1));
+    }
+
+    @Test
+    public void tokenizeCharSequence() {
+        StringBuilder text = new StringBuilder("ab").append(MIXED_TEXT).append("cd");
+        List<Morpheme> expected = tokenizer.tokenize(MIXED_TEXT);
+        assertSameMorphemes(tokenizer.tokenize(text, 2, text.length() - 2), expected, MIXED_TEXT, false, 2);
+        assertThat(tokenizer.tokenize(text, 1, 1).isEmpty(), is(true));
+    }
+
+    @Test
+    public void materializeOOVNodesLazily() {
+        MeCabOovProviderPlugin mecab = new MeCabOovProviderPlugin();
+        MeCabOovProviderPlugin.CategoryInfo cinfo = new MeCabOovProviderPlugin.CategoryInfo();
+        cinfo.type = CategoryType.KATAKANA;
+        cinfo.isInvoke = true;
+        cinfo.isGroup = true;
+        cinfo.length = 2;
+        mecab.categories.put(CategoryType.KATAKANA, cinfo);
+        MeCabOovProviderPlugin.OOV oov = new MeCabOovProviderPlugin.OOV();
+        oov.leftId = 8;
+        oov.rightId = 8;
+        oov.cost = 1000;
+        oov.posId = 4;
+        mecab.oovList.put(CategoryType.KATAKANA, Collections.singletonList(oov));
+        JapaneseTokenizer oovTokenizer = new JapaneseTokenizer(tokenizer.grammar, tokenizer.lexicon,
+                Collections.emptyList(), Arrays.asList(mecab, tokenizer.defaultOovProvider), Collections.emptyList());
+
+        UTF8InputText input = new UTF8InputTextBuilder("アイウ", tokenizer.grammar).build();
+        LatticeImpl lattice = oovTokenizer.buildLattice(input);
+        LatticeNodeImpl node = getOOVNode(lattice, 0, 9);
+        assertThat(node.getWordInfo().getSurface(), is("アイウ"));
+        assertThat(node.getWordInfo().getLength(), is((short) 9));
+        assertThat(node.getWordInfo().getPOSId(), is((short) 4));
+        assertThat(node.getPathCost(), is(1000));
+        assertTrue(getOOVNode(lattice, 0, 9) == node);
+        assertThat(getOOVNode(lattice, 0, 6).getWordInfo().getSurface(), is("アイ"));
+        assertThat(getOOVNode(lattice, 0, 3).getWordInfo().getSurface(), is("ア"));
+        lattice.clear();
+
+        List<Morpheme> morphemes = oovTokenizer.tokenize("アイウ");
+        assertThat(morphemes.size(), is(1));
+        assertThat(morphemes.get(0).surface(), is("アイウ"));
+    }
+
+    @Test
+    public void latticePositionsAreCharacterBoundaries() {
+        UTF8InputText input = new UTF8InputTextBuilder("東京都a", tokenizer.grammar).build();
+        LatticeImpl lattice = tokenizer.buildLattice(input);
+        assertThat(lattice.size(), is(4));
+        assertThat(lattice.getOffset(2), is(6));
+        assertThat(lattice.getOffset(4), is(10));
+        assertThat(lattice.getNodes(0, 9).get(0).getWordInfo().getSurface(), is("東京都"));
+        for (LatticeNode node : lattice.getNodesWithEnd(9)) {
+            assertThat(node.getEnd(), is(9));
+            assertThat(node.getBegin() % 3, is(0));
+        }
+        assertTrue(lattice.getNodesWithEnd(4).isEmpty());
+        assertThat(lattice.getMinimumNode(0, 4).isPresent(), is(false));
+        for (LatticeNode node : lattice.getNodesWithEnd(10)) {
+            assertThat(node.getBegin(), is(9));
+        }
+        lattice.clear();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insertInsideCharacter() {
+        UTF8InputText input = new UTF8InputTextBuilder("東京都", tokenizer.grammar).build();
+        LatticeImpl lattice = tokenizer.buildLattice(input);
+        lattice.insert(0, 4, lattice.createNode());
+    }
+
+    @Test
+    public void legacyOovProviderPlugin() {
+        OovProviderPlugin legacy = new OovProviderPlugin() {
+            @Override
+            public List<LatticeNode> provideOOV(InputText inputText, int offset, boolean hasOtherWords) {
+                int length = inputText.getCharCategoryContinuousLength(offset);
+                String s = inputText.getSubstring(offset, offset + length);
+                LatticeNode node = createNode();
+                node.setParameter((short) 8, (short) 8, (short) -10000);
+                node.setWordInfo(new WordInfo(s, (short) length, (short) 4, "legacy", s, ""));
+                return Collections.singletonList(node);
+            }
+        };
+        JapaneseTokenizer oovTokenizer = new JapaneseTokenizer(tokenizer.grammar, tokenizer.lexicon,
+                Collections.emptyList(), Collections.singletonList(legacy), Collections.emptyList());
+
+        List<Morpheme> morphemes = oovTokenizer.tokenize("アイウ");
+        assertThat(morphemes.size(), is(1));
+        assertThat(morphemes.get(0).surface(), is("アイウ"));
+        assertThat(morphemes.get(0).normalizedForm(), is("legacy"));
+        assertTrue(morphemes.get(0).isOOV());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oovProviderPluginWithoutProvideOOV() {
+        new OovProviderPlugin() {
+        };
+    }
+
+    @Test
+    public void supplyWordInfoOfOOVLazily() {
+        AtomicInteger provided = new AtomicInteger();
+        AtomicInteger supplied = new AtomicInteger();
+        OovProviderPlugin plugin = new OovProviderPlugin() {
+            @Override
+            public void provideOOV(InputText inputText, int offset, boolean hasOtherWords, Sink sink) {
+                provided.incrementAndGet();
+                int length = inputText.getCodePointsOffsetLength(offset, 1);
+                sink.accept(length, (short) 8, (short) 8, (short) 6000, (short) 4, () -> {
+                    supplied.incrementAndGet();
+                    String s = inputText.getSubstring(offset, offset + length);
+                    return new WordInfo(s, (short) length, (short) 4, "lazy", s, "");
+                });
+            }
+        };
+        JapaneseTokenizer oovTokenizer = new JapaneseTokenizer(tokenizer.grammar, tokenizer.lexicon,
+                Collections.emptyList(), Collections.singletonList(plugin), Collections.emptyList());
+
+        List<Morpheme> morphemes = oovTokenizer.tokenize("京都に行った");
+        int oovs = 0;
+        for (Morpheme morpheme : morphemes) {
+            if (morpheme.isOOV()) {
+                assertThat(morpheme.normalizedForm(), is("lazy"));
+                oovs++;
+            }
+        }
+        assertThat(supplied.get(), is(oovs));
+        assertThat(provided.get(), is(6));
+
+        List<LatticeNode> nodes = plugin.provideOOV(new UTF8InputTextBuilder("アイ", tokenizer.grammar).build(), 0,
+                false);
+        assertThat(nodes.size(), is(1));
+        assertThat(nodes.get(0).getWordInfo().getSurface(), is("ア"));
+        assertThat(nodes.get(0).getEnd(), is(3));
+    }
+
+    @Test
+    public void tokenizeWithBeam() {
+        List<Morpheme> expected = tokenizer.tokenize("東京都に行った");
+        assertThat(tokenizer.getPrunedNodeCount(), is(0L));
+
+        tokenizer.setBeam(1, -1);
+        List<Morpheme> actual = tokenizer.tokenize("東京都に行った");
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).surface(), is(expected.get(i).surface()));
+        }
+        assertTrue(tokenizer.getPrunedNodeCount() > 0);
+        assertThat(tokenizer.getBeamFallbackCount(), is(0L));
+
+        long pruned = tokenizer.getPrunedNodeCount();
+        tokenizer.setBeam(0, -1);
+        tokenizer.tokenize("東京都に行った");
+        assertThat(tokenizer.getPrunedNodeCount(), is(pruned));
+    }
+
+    @Test
+    public void tokenizeWithZeroBeamThreshold() {
+        List<Morpheme> expected = tokenizer.tokenize("東京都に行った");
+        tokenizer.setBeam(0, 0);
+        List<Morpheme> actual = tokenizer.tokenize("東京都に行った");
+        assertThat(actual.size(), is(expected.size()));
+        assertTrue(tokenizer.getPrunedNodeCount() > 0);
+    }
+
+    @Test
+    public void tokenizeWithBeamInSettings() throws IOException {
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        try (Dictionary beamDict = new DictionaryFactory().create(path,
+                settings.replaceFirst("\\{", "{ \"beamWidth\" : 1, \"beamThreshold\" : 5000,"))) {
+            Tokenizer beamTokenizer = beamDict.create();
+            assertThat(beamTokenizer.tokenize("東京都に行った").size(), is(tokenizer.tokenize("東京都に行った").size()));
+            assertTrue(beamTokenizer.getPrunedNodeCount() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNegativeBeamWidth() throws IOException {
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        new DictionaryFactory().create(path, settings.replaceFirst("\\{", "{ \"beamWidth\" : -1,"));
+    }
+
+    static LatticeNodeImpl getOOVNode(LatticeImpl lattice, int begin, int end) {
+        LatticeNodeImpl oov = null;
+        for (LatticeNodeImpl node : lattice.getNodes(begin, end)) {
+            if (node.isOOV()) {
+                assertThat(oov == null, is(true));
+                oov = node;
+            }
+        }
+        assertNotNull(oov);
+        return oov;
+    }
 }
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.worksap.nlp.sudachi.dictionary.Grammar;
+
+public class LatticeImplTest {
+
+    static final int NUM_IDS = 6;
+
+    static class CountingGrammar extends MockGrammar {
+        int reads;
+
+        @Override
+        public short getConnectCost(short left, short right) {
+            reads++;
+            return super.getConnectCost(left, right);
+        }
+
+        @Override
+        public short[] getBOSParameter() {
+            return new short[] { 0, 0, 0 };
+        }
+
+        @Override
+        public short[] getEOSParameter() {
+            return new short[] { 0, 0, 0 };
+        }
+    }
+
+    static class Node {
+        int begin;
+        int end;
+        short leftId;
+        short rightId;
+        short cost;
+        int totalCost;
+        Node previous;
+        boolean connected;
+    }
+
+    static class Reference {
+        final List<Node> nodes = new ArrayList<>();
+        final Node bos = new Node();
+        final Grammar grammar;
+        int reads;
+        int beamWidth;
+        int beamThreshold = -1;
+        long pruned;
+        int prunedPosition = -1;
+
+        Reference(Grammar grammar) {
+            this.grammar = grammar;
+            bos.connected = true;
+            nodes.add(bos);
+        }
+
+        List<Node> previousNodes(int position) {
+            List<Node> previous = new ArrayList<>();
+            for (Node l : nodes) {
+                if (l.end == position && l.connected) {
+                    previous.add(l);
+                }
+            }
+            if (beamWidth == 0 && beamThreshold < 0) {
+                return previous;
+            }
+            List<Node> sorted = new ArrayList<>(previous);
+            sorted.sort((a, b) -> Integer.compare(a.totalCost, b.totalCost)); // stable
+            List<Node> beam = new ArrayList<>();
+            for (Node l : sorted) {
+                if ((beamWidth > 0 && beam.size() >= beamWidth)
+                        || (beamThreshold >= 0 && l.totalCost - sorted.get(0).totalCost > beamThreshold)) {
+                    break;
+                }
+                beam.add(l);
+            }
+            if (position > prunedPosition) {
+                pruned += previous.size() - beam.size();
+                prunedPosition = position;
+            }
+            previous.retainAll(beam);
+            return previous;
+        }
+
+        void insert(Node node) {
+            int totalCost = Integer.MAX_VALUE;
+            Node best = null;
+            for (Node l : previousNodes(node.begin)) {
+                reads++;
+                short connectCost = grammar.getConnectCost(l.rightId, node.leftId);
+                if (connectCost == Grammar.INHIBITED_CONNECTION) {
+                    continue;
+                }
+                int cost = l.totalCost + connectCost;
+                if (cost < totalCost) {
+                    totalCost = cost;
+                    best = l;
+                }
+            }
+            node.previous = best;
+            node.connected = best != null;
+            node.totalCost = totalCost + node.cost;
+            nodes.add(node);
+        }
+    }
+
+    @Test
+    public void connectSameAsPlainSearch() {
+        Random random = new Random(42);
+        int readsOfLattice = 0;
+        int readsOfReference = 0;
+        for (int n = 0; n < 200; n++) {
+            CountingGrammar grammar = new CountingGrammar();
+            for (short l = 0; l < NUM_IDS; l++) {
+                for (short r = 0; r < NUM_IDS; r++) {
+                    short cost = (random.nextInt(8) == 0) ? Grammar.INHIBITED_CONNECTION
+                            : (short) (random.nextInt(200) - 100);
+                    grammar.setConnectCost(l, r, cost);
+                }
+            }
+            int size = 1 + random.nextInt(30);
+            boolean insertsBackward = n % 2 == 0;
+            LatticeImpl lattice = new LatticeImpl(grammar, null);
+            lattice.resize(size);
+            Reference reference = new Reference(grammar);
+            grammar.reads = 0;
+
+            for (int begin = 0; begin < size; begin++) {
+                int count = 1 + random.nextInt(12);
+                for (int i = 0; i < count; i++) {
+                    Node node = randomNode(random, begin, size);
+                    if (insertsBackward && random.nextInt(10) == 0) {
+                        // a node inserted afterward, as the plugins do
+                        node = randomNode(random, random.nextInt(begin + 1), size);
+                    }
+                    lattice.insert(node.begin, node.end, node.leftId, node.rightId, node.cost, 0);
+                    reference.insert(node);
+                }
+            }
+            Node eos = new Node();
+            eos.begin = eos.end = size;
+            reference.insert(eos);
+            lattice.connectEosNode();
+
+            for (int end = 1; end <= size; end++) {
+                List<LatticeNodeImpl> actual = lattice.getNodesWithEnd(end);
+                List<Node> expected = new ArrayList<>();
+                for (Node node : reference.nodes) {
+                    if (node != eos && node.end == end && node != reference.bos) {
+                        expected.add(node);
+                    }
+                }
+                assertThat(actual.size(), is(expected.size()));
+                for (int i = 0; i < actual.size(); i++) {
+                    assertThat(actual.get(i).isConnectedToBOS, is(expected.get(i).connected));
+                    if (expected.get(i).connected) {
+                        assertThat(actual.get(i).totalCost, is(expected.get(i).totalCost));
+                    }
+                }
+            }
+
+            if (!eos.connected) {
+                try {
+                    lattice.getBestPath();
+                    fail();
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+            } else {
+                List<Node> expectedPath = new ArrayList<>();
+                for (Node node = eos.previous; node != reference.bos; node = node.previous) {
+                    expectedPath.add(0, node);
+                }
+                List<LatticeNode> path = lattice.getBestPath();
+                assertThat(path.size(), is(expectedPath.size()));
+                for (int i = 0; i < path.size(); i++) {
+                    LatticeNodeImpl actual = (LatticeNodeImpl) path.get(i);
+                    Node expected = expectedPath.get(i);
+                    assertThat(actual.getBegin(), is(expected.begin));
+                    assertThat(actual.getEnd(), is(expected.end));
+                    assertThat(actual.leftId, is(expected.leftId));
+                    assertThat(actual.rightId, is(expected.rightId));
+                    assertThat(actual.totalCost, is(expected.totalCost));
+                }
+            }
+            if (!insertsBackward) {
+                readsOfLattice += grammar.reads - reference.reads;
+                readsOfReference += reference.reads;
+            }
+        }
+        assertTrue(readsOfLattice < readsOfReference);
+    }
+
+    @Test
+    public void connectWithBeam() {
+        Random random = new Random(7);
+        long pruned = 0;
+        for (int n = 0; n < 300; n++) {
+            CountingGrammar grammar = new CountingGrammar();
+            for (short l = 0; l < NUM_IDS; l++) {
+                for (short r = 0; r < NUM_IDS; r++) {
+                    grammar.setConnectCost(l, r, (short) random.nextInt(100));
+                }
+            }
+            int size = 1 + random.nextInt(30);
+            LatticeImpl lattice = new LatticeImpl(grammar, null);
+            Reference reference = new Reference(grammar);
+            int width = random.nextInt(4);
+            int threshold = (width == 0 || random.nextBoolean()) ? random.nextInt(150) : -1;
+            lattice.setBeam(width, threshold);
+            reference.beamWidth = width;
+            reference.beamThreshold = threshold;
+            lattice.resize(size);
+
+            for (int begin = 0; begin < size; begin++) {
+                if (!lattice.hasPreviousNode(begin)) {
+                    continue;
+                }
+                int count = 1 + random.nextInt(8);
+                for (int i = 0; i < count; i++) {
+                    Node node = randomNode(random, begin, size);
+                    lattice.insert(node.begin, node.end, node.leftId, node.rightId, node.cost, 0);
+                    reference.insert(node);
+                }
+            }
+            Node eos = new Node();
+            eos.begin = eos.end = size;
+            reference.insert(eos);
+            lattice.connectEosNode();
+
+            assertThat(lattice.isEosConnected(), is(true));
+            List<LatticeNode> path = lattice.getBestPath();
+            List<Node> expectedPath = new ArrayList<>();
+            for (Node node = eos.previous; node != reference.bos; node = node.previous) {
+                expectedPath.add(0, node);
+            }
+            assertThat(path.size(), is(expectedPath.size()));
+            for (int i = 0; i < path.size(); i++) {
+                assertThat(((LatticeNodeImpl) path.get(i)).totalCost, is(expectedPath.get(i).totalCost));
+                assertThat(path.get(i).getEnd(), is(expectedPath.get(i).end));
+            }
+            assertThat(lattice.getPrunedNodeCount(), is(reference.pruned));
+            pruned += reference.pruned;
+        }
+        assertTrue(pruned > 0);
+    }
+
+    @Test
+    public void nodeIdentity() {
+        LatticeImpl lattice = new LatticeImpl(new CountingGrammar(), null);
+        lattice.resize(2);
+        lattice.insert(0, 1, (short) 0, (short) 0, (short) 10, 0);
+        lattice.insert(0, 1, (short) 1, (short) 1, (short) 20, 0);
+        lattice.insert(1, 2, (short) 0, (short) 0, (short) 10, 0);
+        lattice.connectEosNode();
+
+        LatticeNodeImpl node = lattice.getNodesWithEnd(1).get(0);
+        assertThat(lattice.getNodes(0, 1).get(0), is(sameInstance(node)));
+        assertThat(lattice.getMinimumNode(0, 1).get(), is(sameInstance(node)));
+        assertThat(lattice.getBestPath().get(0), is(sameInstance(node)));
+
+        node.setParameter((short) 3, (short) 4, (short) 5);
+        LatticeNodeImpl again = lattice.getNodesWithEnd(1).get(0);
+        assertThat(again.leftId, is((short) 3));
+        assertThat(again.getPathCost(), is(5));
+
+        lattice.remove(0, 1, node);
+        assertThat(lattice.getNodesWithEnd(1).size(), is(1));
+        assertThat(lattice.getNodesWithEnd(1).get(0).getPathCost(), is(20));
+    }
+
+    @Test
+    public void insertNodeObjectsSameAsPlainSearch() {
+        Random random = new Random(11);
+        for (int n = 0; n < 200; n++) {
+            CountingGrammar grammar = new CountingGrammar();
+            for (short l = 0; l < NUM_IDS; l++) {
+                for (short r = 0; r < NUM_IDS; r++) {
+                    grammar.setConnectCost(l, r, (short) (random.nextInt(200) - 100));
+                }
+            }
+            int size = 1 + random.nextInt(20);
+            LatticeImpl lattice = new LatticeImpl(grammar, null);
+            lattice.resize(size);
+            Reference reference = new Reference(grammar);
+
+            for (int begin = 0; begin < size; begin++) {
+                int count = 1 + random.nextInt(6);
+                for (int i = 0; i < count; i++) {
+                    Node node = randomNode(random, begin, size);
+                    if (random.nextBoolean()) {
+                        LatticeNode object = lattice.createNode();
+                        object.setParameter(node.leftId, node.rightId, node.cost);
+                        lattice.insert(node.begin, node.end, object);
+                    } else {
+                        lattice.insert(node.begin, node.end, node.leftId, node.rightId, node.cost, 0);
+                    }
+                    reference.insert(node);
+                }
+            }
+            Node eos = new Node();
+            eos.begin = eos.end = size;
+            reference.insert(eos);
+            lattice.connectEosNode();
+
+            List<Node> expectedPath = new ArrayList<>();
+            for (Node node = eos.previous; node != reference.bos; node = node.previous) {
+                expectedPath.add(0, node);
+            }
+            List<LatticeNode> path = lattice.getBestPath();
+            assertThat(path.size(), is(expectedPath.size()));
+            for (int i = 0; i < path.size(); i++) {
+                assertThat(path.get(i).getBegin(), is(expectedPath.get(i).begin));
+                assertThat(path.get(i).getEnd(), is(expectedPath.get(i).end));
+                assertThat(((LatticeNodeImpl) path.get(i)).totalCost, is(expectedPath.get(i).totalCost));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setNegativeBeamWidth() {
+        new LatticeImpl(new CountingGrammar(), null).setBeam(-1, 0);
+    }
+
+    static Node randomNode(Random random, int begin, int size) {
+        Node node = new Node();
+        node.begin = begin;
+        node.end = Math.min(size, begin + 1 + random.nextInt(4));
+        node.leftId = (short) random.nextInt(NUM_IDS);
+        node.rightId = (short) random.nextInt(NUM_IDS);
+        node.cost = (short) (random.nextInt(200) - 100);
+        return node;
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.worksap.nlp.sudachi;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.isA;
 import static org.junit.Assert.assertThat;
 
@@ -23,6 +24,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -48,6 +51,36 @@ public class MMapTest {
         assertThat(MMap.map(filename), isA(ByteBuffer.class));
     }
 
+    @Test
+    public void mapIsMemoryMapped() throws IOException {
+        String filename = new File(path, "system.dic").getPath();
+        ByteBuffer buffer = MMap.map(filename);
+        assertThat(buffer instanceof MappedByteBuffer, is(true));
+        assertThat(buffer.isReadOnly(), is(true));
+        assertThat(buffer.order(), is(ByteOrder.LITTLE_ENDIAN));
+        MMap.unmap(buffer);
+    }
+
+    @Test
+    public void mapWithPath() throws IOException {
+        ByteBuffer buffer = MMap.map(new File(path, "system.dic").toPath());
+        assertThat(buffer instanceof MappedByteBuffer, is(true));
+        assertThat(buffer.capacity(), is((int) new File(path, "system.dic").length()));
+        MMap.unmap(buffer);
+    }
+
+    @Test
+    public void mapFromClassPath() throws IOException {
+        ByteBuffer buffer = MMap.map("system.dic");
+        assertThat(buffer.capacity(), is((int) new File(path, "system.dic").length()));
+        assertThat(buffer.order(), is(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void mapWithPathNotExist() throws IOException {
+        MMap.map(new File(path, "not_exist_file").toPath());
+    }
+
     @Test(expected = FileNotFoundException.class)
     public void mapWithNotExist() throws IOException {
         String filename = new File(path, "not_exist_file").getPath();
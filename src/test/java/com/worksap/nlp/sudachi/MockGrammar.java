@@ -28,6 +28,7 @@ import com.worksap.nlp.sudachi.dictionary.Grammar;
 public class MockGrammar implements Grammar {
 
     Map<Short, Map<Short, Short>> matrix = new HashMap<>();
+    CharacterCategory charCategory;
 
     @Override
     public int getPartOfSpeechSize() {
@@ -66,11 +67,13 @@ public class MockGrammar implements Grammar {
 
     @Override
     public CharacterCategory getCharacterCategory() {
-        CharacterCategory charCategory = new CharacterCategory();
-        try {
-            charCategory.readCharacterDefinition(MockGrammar.class.getResource("/char.def").getPath());
-        } catch (IOException ex) {
-            ex.printStackTrace();
+        if (charCategory == null) {
+            charCategory = new CharacterCategory();
+            try {
+                charCategory.readCharacterDefinition(MockGrammar.class.getResource("/char.def").getPath());
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
         }
         return charCategory;
     }
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MorphemePublisherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static final String TEXT = "東京都に行った\n京都ｱｲｳ東京府ーーー𡈽に行った\n\n東京府";
+
+    Dictionary dict;
+    Tokenizer tokenizer;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        dict = new DictionaryFactory().create(path, settings);
+        tokenizer = dict.create();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dict.close();
+    }
+
+    static class TrackingReader extends StringReader {
+        boolean isClosed;
+
+        TrackingReader(String text) {
+            super(text);
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+            super.close();
+        }
+    }
+
+    static class RecordingSubscriber implements MorphemePublisher.Subscriber {
+        final List<List<Morpheme>> received = new ArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        MorphemePublisher.Subscription subscription;
+        Throwable error;
+        boolean isCompleted;
+
+        @Override
+        public void onSubscribe(MorphemePublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(List<Morpheme> morphemes) {
+            received.add(morphemes);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            isCompleted = true;
+            terminated.countDown();
+        }
+    }
+
+    static List<String> surfaces(List<Morpheme> morphemes) {
+        return morphemes.stream().map(Morpheme::surface).collect(Collectors.toList());
+    }
+
+    List<List<String>> expectedLines() {
+        List<List<String>> expected = new ArrayList<>();
+        for (String line : TEXT.split("\n")) {
+            expected.add(surfaces(tokenizer.tokenize(line)));
+        }
+        return expected;
+    }
+
+    @Test
+    public void tokenizeLines() {
+        try (Stream<List<Morpheme>> segments = tokenizer.tokenizeSegments(Tokenizer.SplitMode.C,
+                Tokenizer.Segmentation.LINE, new StringReader(TEXT))) {
+            assertThat(segments.map(MorphemePublisherTest::surfaces).collect(Collectors.toList()), is(expectedLines()));
+        }
+    }
+
+    @Test
+    public void tokenizeSentencesOfInputStream() {
+        byte[] bytes = "東京都に行った。京都？東京府".getBytes(StandardCharsets.UTF_8);
+        try (Stream<List<Morpheme>> segments = tokenizer.tokenizeSegments(Tokenizer.SplitMode.C,
+                Tokenizer.Segmentation.SENTENCE, new ByteArrayInputStream(bytes))) {
+            List<List<Morpheme>> result = segments.collect(Collectors.toList());
+            assertThat(result.size(), is(3));
+            assertThat(surfaces(result.get(1)), is(surfaces(tokenizer.tokenize("京都？"))));
+            assertThat(result.get(2).get(0).begin(), is(0));
+        }
+    }
+
+    @Test
+    public void tokenizeLongSegments() {
+        String text = "東京都に行った京都ｱｲｳ東京府ーーー𡈽に行った東京都に行った東京都に行った";
+        SegmentReader segments = new SegmentReader(new StringReader(text), Tokenizer.Segmentation.LINE, 4);
+        SegmentIterator iterator = new SegmentIterator(tokenizer, Tokenizer.SplitMode.C, segments);
+        List<Morpheme> morphemes = new ArrayList<>();
+        while (iterator.hasNext()) {
+            morphemes.addAll(iterator.next());
+        }
+        List<Morpheme> expected = tokenizer.tokenize(text);
+        assertThat(surfaces(morphemes), is(surfaces(expected)));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(morphemes.get(i).begin(), is(expected.get(i).begin()));
+            assertThat(morphemes.get(i).getWordId(), is(expected.get(i).getWordId()));
+        }
+    }
+
+    @Test
+    public void closeStream() {
+        TrackingReader reader = new TrackingReader(TEXT);
+        try (Stream<List<Morpheme>> segments = tokenizer.tokenizeSegments(Tokenizer.SplitMode.C,
+                Tokenizer.Segmentation.LINE, reader)) {
+            assertThat(segments.findFirst().isPresent(), is(true));
+        }
+        assertThat(reader.isClosed, is(true));
+    }
+
+    @Test
+    public void publishOnDemand() {
+        TrackingReader reader = new TrackingReader(TEXT);
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                reader, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(subscriber.received.size(), is(0));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.received.size(), is(1));
+        subscriber.subscription.request(2);
+        assertThat(subscriber.received.size(), is(3));
+        assertThat(subscriber.isCompleted, is(false));
+        assertThat(reader.isClosed, is(false));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.received.size(), is(4));
+        assertThat(subscriber.isCompleted, is(true));
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(reader.isClosed, is(true));
+        List<List<String>> actual = subscriber.received.stream().map(MorphemePublisherTest::surfaces)
+                .collect(Collectors.toList());
+        assertThat(actual, is(expectedLines()));
+    }
+
+    @Test
+    public void requestFromOnNext() {
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                new StringReader(TEXT), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(List<Morpheme> morphemes) {
+                super.onNext(morphemes);
+                subscription.request(1);
+            }
+        };
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertThat(subscriber.received.size(), is(4));
+        assertThat(subscriber.isCompleted, is(true));
+    }
+
+    @Test
+    public void cancel() {
+        TrackingReader reader = new TrackingReader(TEXT);
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                reader, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        assertThat(subscriber.received.size(), is(1));
+        assertThat(subscriber.isCompleted, is(false));
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(reader.isClosed, is(true));
+    }
+
+    @Test
+    public void publishIOException() {
+        Reader reader = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("broken");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                reader, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertThat(subscriber.error, is(instanceOf(IOException.class)));
+    }
+
+    @Test
+    public void rejectedExecution() {
+        TrackingReader reader = new TrackingReader(TEXT);
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                reader, command -> {
+                    throw new RejectedExecutionException("rejected");
+                });
+        AtomicInteger errors = new AtomicInteger();
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onError(Throwable throwable) {
+                errors.incrementAndGet();
+                super.onError(throwable);
+            }
+        };
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.request(1);
+        assertThat(subscriber.error, is(instanceOf(RejectedExecutionException.class)));
+        assertThat(errors.get(), is(1));
+        assertThat(subscriber.received.size(), is(0));
+        assertThat(reader.isClosed, is(true));
+    }
+
+    @Test
+    public void cancelWhileReading() throws InterruptedException {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicBoolean isClosedWhileReading = new AtomicBoolean();
+        Reader reader = new Reader() {
+            volatile boolean isReading;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                isReading = true;
+                reading.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    isReading = false;
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+                isClosedWhileReading.set(isReading);
+                closed.countDown();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                    reader, executor);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(1);
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            subscriber.subscription.cancel();
+            resume.countDown();
+            assertTrue(closed.await(10, TimeUnit.SECONDS));
+            assertThat(isClosedWhileReading.get(), is(false));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void nonPositiveRequest() {
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                new StringReader(TEXT), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+    }
+
+    @Test
+    public void subscribeTwice() {
+        MorphemePublisher publisher = tokenizer.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                new StringReader(TEXT), Runnable::run);
+        publisher.subscribe(new RecordingSubscriber());
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(subscriber.error, is(instanceOf(IllegalStateException.class)));
+    }
+
+    @Test
+    public void publishOnExecutorWithPool() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            TokenizerPool pool = dict.createTokenizerPool(2);
+            MorphemePublisher publisher = pool.createPublisher(Tokenizer.SplitMode.C, Tokenizer.Segmentation.LINE,
+                    new StringReader(TEXT), executor);
+            RecordingSubscriber subscriber = new RecordingSubscriber() {
+                @Override
+                public void onSubscribe(MorphemePublisher.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    subscription.request(Long.MAX_VALUE);
+                }
+            };
+            publisher.subscribe(subscriber);
+            assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+            assertThat(subscriber.isCompleted, is(true));
+            List<List<String>> actual = subscriber.received.stream().map(MorphemePublisherTest::surfaces)
+                    .collect(Collectors.toList());
+            assertThat(actual, is(expectedLines()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
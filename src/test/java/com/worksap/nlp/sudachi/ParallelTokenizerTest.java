@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelTokenizerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static final String[] SENTENCES = { "東京都に行った", "京都ｱｲｳ東京府ーーー𡈽に行った", "ぴらる", "アイウ東京府", "京都\n" };
+
+    Dictionary dict;
+    Tokenizer tokenizer;
+    ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        dict = new DictionaryFactory().create(path, settings);
+        tokenizer = dict.create();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        dict.close();
+    }
+
+    static String text(int size) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            text.append(SENTENCES[(i * 7) % SENTENCES.length]);
+        }
+        return text.toString();
+    }
+
+    static void assertSameMorphemes(List<Morpheme> actual, List<Morpheme> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            Morpheme a = actual.get(i);
+            Morpheme e = expected.get(i);
+            assertThat(a.begin(), is(e.begin()));
+            assertThat(a.end(), is(e.end()));
+            assertThat(a.surface(), is(e.surface()));
+            assertThat(a.partOfSpeechId(), is(e.partOfSpeechId()));
+            assertThat(a.normalizedForm(), is(e.normalizedForm()));
+            assertThat(a.getWordId(), is(e.getWordId()));
+            assertThat(a.isOOV(), is(e.isOOV()));
+        }
+    }
+
+    @Test
+    public void sameAsWholeText() {
+        String text = text(200);
+        for (Tokenizer.SplitMode mode : Tokenizer.SplitMode.values()) {
+            List<Morpheme> expected = tokenizer.tokenize(mode, text);
+            for (int chunkLength = 8; chunkLength <= 256; chunkLength *= 2) {
+                for (int overlap = 0; overlap <= 32; overlap += 8) {
+                    TokenizerPool pool = dict.createTokenizerPool(4);
+                    List<Morpheme> actual = pool.tokenizeInParallel(mode, text, executor, chunkLength, overlap);
+                    assertSameMorphemes(actual, expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stitchWindows() {
+        String text = text(200);
+        int chunkLength = 64;
+        int windows = ParallelTokenizer.split(text, chunkLength).length - 1;
+        TokenizerPool pool = dict.createTokenizerPool(2);
+        List<Morpheme> actual = pool.tokenizeInParallel(Tokenizer.SplitMode.C, text, executor, chunkLength, 32);
+        assertSameMorphemes(actual, tokenizer.tokenize(text));
+        // the windows are tokenized again only where they cannot be stitched
+        assertTrue(pool.getAcquisitionCount() < 2 + windows / 2);
+    }
+
+    @Test
+    public void sameAsWholeTextWithoutTerminators() {
+        String text = text(200).replace("\n", "");
+        TokenizerPool pool = dict.createTokenizerPool(4);
+        assertSameMorphemes(pool.tokenizeInParallel(Tokenizer.SplitMode.C, text, executor, 32, 16),
+                tokenizer.tokenize(text));
+    }
+
+    @Test
+    public void tokenizeShortText() {
+        String text = "東京都に行った";
+        TokenizerPool pool = dict.createTokenizerPool(4);
+        assertSameMorphemes(pool.tokenizeInParallel(Tokenizer.SplitMode.C, text, executor, 8, 4),
+                tokenizer.tokenize(text));
+        assertThat(pool.getAcquisitionCount(), is(1L));
+    }
+
+    @Test
+    public void tokenizeEmptyText() {
+        assertTrue(dict.tokenizeInParallel(Tokenizer.SplitMode.C, "").isEmpty());
+    }
+
+    @Test
+    public void tokenizeInParallelOnDictionary() {
+        String text = text(20000);
+        assertSameMorphemes(dict.tokenizeInParallel(Tokenizer.SplitMode.C, text), tokenizer.tokenize(text));
+    }
+
+    @Test
+    public void split() {
+        String text = "東京都\n京都に行った\n京都";
+        assertThat(ParallelTokenizer.split(text, 4), is(new int[] { 0, 4, 8, 13 }));
+        assertThat(ParallelTokenizer.split(text, 3), is(new int[] { 0, 3, 6, 9, 13 }));
+        assertThat(ParallelTokenizer.split(text, 7), is(new int[] { 0, 13 }));
+        assertThat(ParallelTokenizer.split("𡈽𡈽", 1), is(new int[] { 0, 2, 4 }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenizeWithZeroChunkLength() {
+        dict.createTokenizerPool(1).tokenizeInParallel(Tokenizer.SplitMode.C, "京都", executor, 0, 0);
+    }
+}
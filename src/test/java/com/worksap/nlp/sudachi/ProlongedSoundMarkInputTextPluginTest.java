@@ -171,6 +171,30 @@ public class ProlongedSoundMarkInputTextPluginTest {
         assertThat(text.getOriginalIndex(18), is(12));
     }
 
+    @Test
+    public void transducerSameAsRewrite() {
+        String[] texts = { "ゴーール", "スーパーー", "エーービーーーシーーーー", "エーービ〜〜〜シ〰〰〰〰", "ー", "ーー", "aー𡈽ーーb", "" };
+        UTF8InputTextBuilder streamed = new UTF8InputTextBuilder(new MockGrammar());
+        InputTextTransducer transducer = plugin.createTransducer(streamed);
+        for (String original : texts) {
+            builder = new UTF8InputTextBuilder(original, new MockGrammar());
+            plugin.rewrite(builder);
+            UTF8InputText expected = builder.build();
+
+            transducer.begin(original);
+            for (int i = 0; i < original.length(); i = original.offsetByCodePoints(i, 1)) {
+                transducer.accept(original.codePointAt(i), i);
+            }
+            transducer.end();
+            text = streamed.build();
+
+            assertThat(text.getText(), is(expected.getText()));
+            for (int i = 0; i <= expected.getByteText().length; i++) {
+                assertThat(text.getOriginalIndex(i), is(expected.getOriginalIndex(i)));
+            }
+        }
+    }
+
     class MockGrammar implements Grammar {
         @Override
         public int getPartOfSpeechSize() {
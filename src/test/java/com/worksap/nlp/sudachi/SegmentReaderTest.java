@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SegmentReaderTest {
+
+    static class OneCharReader extends FilterReader {
+        OneCharReader(String text) {
+            super(new StringReader(text));
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+
+    static List<String> readAll(Reader reader, Tokenizer.Segmentation segmentation, int maxLength) throws IOException {
+        SegmentReader segments = new SegmentReader(reader, segmentation, maxLength);
+        List<String> result = new ArrayList<>();
+        for (String segment = segments.read(); segment != null; segment = segments.read()) {
+            result.add(segments.isSegmentEnd() ? segment : segment + "|");
+        }
+        return result;
+    }
+
+    static List<String> readAll(String text, Tokenizer.Segmentation segmentation, int maxLength) throws IOException {
+        List<String> result = readAll(new StringReader(text), segmentation, maxLength);
+        assertThat(readAll(new OneCharReader(text), segmentation, maxLength), is(result));
+        return result;
+    }
+
+    @Test
+    public void readLines() throws IOException {
+        assertThat(readAll("東京\n京都\r\n\r大阪", Tokenizer.Segmentation.LINE, 16), is(Arrays.asList("東京", "京都", "", "大阪")));
+        assertThat(readAll("東京\n", Tokenizer.Segmentation.LINE, 16), is(Arrays.asList("東京")));
+        assertThat(readAll("\n\n", Tokenizer.Segmentation.LINE, 16), is(Arrays.asList("", "")));
+        assertThat(readAll("", Tokenizer.Segmentation.LINE, 16), is(Arrays.asList()));
+    }
+
+    @Test
+    public void readLinesDoesNotSplitSentences() throws IOException {
+        assertThat(readAll("東京。京都！\n", Tokenizer.Segmentation.LINE, 16), is(Arrays.asList("東京。京都！")));
+    }
+
+    @Test
+    public void readSentences() throws IOException {
+        assertThat(readAll("東京に行った。「京都？」と聞いた！！\n\r\n大阪", Tokenizer.Segmentation.SENTENCE, 16),
+                is(Arrays.asList("東京に行った。", "「京都？」", "と聞いた！！", "大阪")));
+        assertThat(readAll("。。\n", Tokenizer.Segmentation.SENTENCE, 16), is(Arrays.asList("。。")));
+    }
+
+    @Test
+    public void readLongSegments() throws IOException {
+        assertThat(readAll("東京都に行った\n京都", Tokenizer.Segmentation.LINE, 3),
+                is(Arrays.asList("東京都|", "に行っ|", "た", "京都")));
+        assertThat(readAll("東京。。。。。", Tokenizer.Segmentation.SENTENCE, 4), is(Arrays.asList("東京。。", "。。。")));
+    }
+
+    @Test
+    public void readLongSegmentsWithSurrogatePairs() throws IOException {
+        assertThat(readAll("東𡈽𡈽", Tokenizer.Segmentation.LINE, 2), is(Arrays.asList("東|", "𡈽|", "𡈽|")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxLength() {
+        new SegmentReader(new StringReader(""), Tokenizer.Segmentation.LINE, 1);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StreamingTokenizerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static final String TEXT = "東京都に行った京都ｱｲｳ東京府ーーー𡈽に行った東京都に行った";
+
+    JapaneseTokenizer tokenizer;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        Dictionary dict = new DictionaryFactory().create(path, settings);
+        tokenizer = (JapaneseTokenizer) dict.create();
+    }
+
+    List<List<Morpheme>> feed(JapaneseTokenizer tokenizer, Tokenizer.SplitMode mode, String text, int pieceLength) {
+        List<List<Morpheme>> output = new ArrayList<>();
+        StreamingTokenizer stream = new StreamingTokenizerImpl(tokenizer, tokenizer.grammar.getBOSParameter()[1], mode,
+                output::add, 1);
+        for (int i = 0; i < text.length(); i += pieceLength) {
+            stream.feed(text.subSequence(i, Math.min(i + pieceLength, text.length())));
+        }
+        stream.finish();
+        return output;
+    }
+
+    void assertSameMorphemes(List<List<Morpheme>> actual, List<Morpheme> expected) {
+        List<Morpheme> morphemes = new ArrayList<>();
+        actual.forEach(morphemes::addAll);
+        assertThat(morphemes.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            Morpheme a = morphemes.get(i);
+            Morpheme e = expected.get(i);
+            assertThat(a.begin(), is(e.begin()));
+            assertThat(a.end(), is(e.end()));
+            assertThat(a.surface(), is(e.surface()));
+            assertThat(a.partOfSpeechId(), is(e.partOfSpeechId()));
+            assertThat(a.normalizedForm(), is(e.normalizedForm()));
+            assertThat(a.getWordId(), is(e.getWordId()));
+            assertThat(a.isOOV(), is(e.isOOV()));
+        }
+    }
+
+    @Test
+    public void sameAsWholeText() {
+        for (Tokenizer.SplitMode mode : Tokenizer.SplitMode.values()) {
+            List<Morpheme> expected = tokenizer.tokenize(mode, TEXT);
+            for (int pieceLength = 1; pieceLength <= 4; pieceLength++) {
+                List<List<Morpheme>> actual = feed(tokenizer, mode, TEXT, pieceLength);
+                assertTrue(actual.size() > 1);
+                assertSameMorphemes(actual, expected);
+            }
+        }
+    }
+
+    @Test
+    public void splitSurrogatePair() {
+        String text = "𡈽に行った𡈽𡈽に行った";
+        assertSameMorphemes(feed(tokenizer, Tokenizer.SplitMode.C, text, 1), tokenizer.tokenize(text));
+    }
+
+    @Test
+    public void holdWithPathRewritePluginWhichCannotSplit() {
+        tokenizer.pathRewritePlugins = Collections.singletonList(new PathRewritePlugin() {
+            @Override
+            public void rewrite(InputText text, List<LatticeNode> path, Lattice lattice) {
+            }
+        });
+        List<List<Morpheme>> actual = feed(tokenizer, Tokenizer.SplitMode.C, TEXT, 1);
+        assertThat(actual.size(), is(1));
+        assertSameMorphemes(actual, tokenizer.tokenize(TEXT));
+    }
+
+    @Test
+    public void holdWithInputTextPluginWithoutTransducer() {
+        InputTextPlugin plugin = new InputTextPlugin() {
+            @Override
+            public void rewrite(InputTextBuilder builder) {
+            }
+        };
+        JapaneseTokenizer tokenizer = new JapaneseTokenizer(this.tokenizer.grammar, this.tokenizer.lexicon,
+                Collections.singletonList(plugin), this.tokenizer.oovProviderPlugins, Collections.emptyList());
+        List<List<Morpheme>> actual = feed(tokenizer, Tokenizer.SplitMode.C, TEXT, 1);
+        assertThat(actual.size(), is(1));
+        assertSameMorphemes(actual, tokenizer.tokenize(TEXT));
+    }
+
+    @Test
+    public void tokenizeBetweenPieces() {
+        List<List<Morpheme>> output = new ArrayList<>();
+        StreamingTokenizer stream = tokenizer.createStreamingTokenizer(Tokenizer.SplitMode.C, output::add);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            stream.feed(TEXT);
+            text.append(TEXT);
+            assertThat(tokenizer.tokenize("京都").size(), is(1));
+        }
+        stream.finish();
+        assertTrue(output.size() > 1);
+        assertSameMorphemes(output, tokenizer.tokenize(text.toString()));
+    }
+
+    @Test
+    public void finishEmptyText() {
+        List<List<Morpheme>> output = new ArrayList<>();
+        StreamingTokenizer stream = tokenizer.createStreamingTokenizer(Tokenizer.SplitMode.C, output::add);
+        stream.feed("");
+        stream.finish();
+        assertTrue(output.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void feedAfterFinish() {
+        StreamingTokenizer stream = tokenizer.createStreamingTokenizer(Tokenizer.SplitMode.C, m -> {
+        });
+        stream.feed(TEXT);
+        stream.finish();
+        stream.feed(TEXT);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TokenizerPoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static final String[] TEXTS = { "東京都に行った", "京都", "東京府", "ぴらる", "京都ｱｲｳ東京府ーーー𡈽に行った" };
+
+    Dictionary dict;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/system.dic", "/user.dic", "/char.def", "/unk.def");
+
+        String path = temporaryFolder.getRoot().getPath();
+        String settings = Utils.readAllResource("/sudachi.json");
+        dict = new DictionaryFactory().create(path, settings);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dict.close();
+    }
+
+    static List<String> surfaces(List<Morpheme> morphemes) {
+        List<String> surfaces = new ArrayList<>();
+        for (Morpheme m : morphemes) {
+            surfaces.add(m.surface() + "/" + m.begin() + "/" + m.end());
+        }
+        return surfaces;
+    }
+
+    @Test
+    public void tokenizeConcurrently() throws Exception {
+        Tokenizer tokenizer = dict.create();
+        List<List<String>> expected = new ArrayList<>();
+        for (String text : TEXTS) {
+            expected.add(surfaces(tokenizer.tokenize(text)));
+        }
+
+        TokenizerPool pool = dict.createTokenizerPool(2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String text = TEXTS[i % TEXTS.length];
+                futures.add(executor.submit(() -> surfaces(pool.tokenize(text))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertThat(futures.get(i).get(), is(expected.get(i % TEXTS.length)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getSize() <= 2);
+        assertThat(pool.getActiveCount(), is(0));
+        assertThat(pool.getAcquisitionCount(), is(400L));
+        assertTrue(pool.getScratchBytes() > 0);
+    }
+
+    @Test
+    public void waitForTokenizer() throws Exception {
+        TokenizerPool pool = dict.createTokenizerPool(1);
+        CountDownLatch borrowed = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        StreamingTokenizer stream = pool.createStreamingTokenizer(Tokenizer.SplitMode.C, morphemes -> {
+            borrowed.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stream.feed("東京都に行った");
+        Thread holder = new Thread(stream::finish);
+        holder.start();
+        borrowed.await();
+        assertThat(pool.getActiveCount(), is(1));
+
+        Thread waiter = new Thread(() -> pool.tokenize("京都"));
+        waiter.start();
+        while (pool.getWaitingCount() == 0) {
+            Thread.sleep(1);
+        }
+        done.countDown();
+        holder.join();
+        waiter.join();
+
+        assertThat(pool.getSize(), is(1));
+        assertThat(pool.getActiveCount(), is(0));
+        assertThat(pool.getAcquisitionCount(), is(2L));
+        assertTrue(pool.getWaitNanos() > 0);
+    }
+
+    @Test
+    public void discardLargeTokenizer() {
+        List<String> expected = surfaces(dict.create().tokenize("東京都に行った"));
+        TokenizerPool pool = dict.createTokenizerPool(1, 0);
+        assertThat(surfaces(pool.tokenize("東京都に行った")), is(expected));
+        assertThat(pool.getSize(), is(0));
+        assertThat(pool.getDiscardCount(), is(1L));
+        assertThat(pool.getScratchBytes(), is(0L));
+
+        assertThat(surfaces(pool.tokenize("東京都に行った")), is(expected));
+        assertThat(pool.getDiscardCount(), is(2L));
+    }
+
+    @Test
+    public void reuseTokenizer() {
+        TokenizerPool pool = dict.createTokenizerPool(4);
+        pool.tokenize("東京都に行った");
+        long bytes = pool.getScratchBytes();
+        assertTrue(bytes > 0);
+        pool.tokenize("京都");
+        assertThat(pool.getSize(), is(1));
+        assertThat(pool.getScratchBytes(), is(bytes));
+        assertThat(pool.getDiscardCount(), is(0L));
+    }
+
+    @Test
+    public void setBeam() {
+        TokenizerPool pool = dict.createTokenizerPool(1);
+        pool.tokenize("東京都に行った");
+        assertThat(pool.getPrunedNodeCount(), is(0L));
+
+        pool.setBeam(1, -1);
+        pool.tokenize("東京都に行った");
+        long pruned = pool.getPrunedNodeCount();
+        assertTrue(pruned > 0);
+
+        pool.setBeam(0, -1);
+        pool.tokenize("東京都に行った");
+        assertThat(pool.getPrunedNodeCount(), is(pruned));
+    }
+
+    @Test
+    public void tokenizeStreaming() {
+        TokenizerPool pool = dict.createTokenizerPool(1);
+        String text = "京都ｱｲｳ東京府ーーー𡈽に行った";
+        List<Morpheme> actual = new ArrayList<>();
+        StreamingTokenizer stream = pool.createStreamingTokenizer(Tokenizer.SplitMode.C, actual::addAll);
+        stream.feed(text);
+        stream.finish();
+        assertThat(surfaces(actual), is(surfaces(pool.tokenize(text))));
+        assertThat(pool.getAcquisitionCount(), is(2L));
+    }
+
+    List<String> texts(int size) {
+        return IntStream.range(0, size).mapToObj(i -> TEXTS[i % TEXTS.length]).collect(Collectors.toList());
+    }
+
+    void assertResults(List<TokenizeResult> results, List<String> texts) {
+        Tokenizer tokenizer = dict.create();
+        assertThat(results.size(), is(texts.size()));
+        for (int i = 0; i < texts.size(); i++) {
+            assertTrue(results.get(i).isSuccess());
+            assertThat(results.get(i).getError(), is(nullValue()));
+            assertThat(surfaces(results.get(i).getMorphemes()), is(surfaces(tokenizer.tokenize(texts.get(i)))));
+        }
+    }
+
+    @Test
+    public void tokenizeAll() {
+        List<String> texts = texts(1000);
+        assertResults(dict.tokenizeAll(texts, Tokenizer.SplitMode.C), texts);
+    }
+
+    @Test
+    public void tokenizeAllWithExecutor() {
+        List<String> texts = texts(1000);
+        TokenizerPool pool = dict.createTokenizerPool(3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertResults(pool.tokenizeAll(texts, Tokenizer.SplitMode.C, executor), texts);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getSize() <= 3);
+        assertTrue(pool.getAcquisitionCount() <= 3);
+    }
+
+    @Test
+    public void tokenizeAllWithError() {
+        List<String> texts = Arrays.asList("東京都", null, "京都");
+        List<TokenizeResult> results = dict.tokenizeAll(texts, Tokenizer.SplitMode.C);
+        assertThat(results.size(), is(3));
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertThat(results.get(1).getError(), is(instanceOf(NullPointerException.class)));
+        assertThat(surfaces(results.get(2).getMorphemes()), is(surfaces(dict.create().tokenize("京都"))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getMorphemesOfError() {
+        dict.tokenizeAll(Collections.singletonList(null), Tokenizer.SplitMode.C).get(0).getMorphemes();
+    }
+
+    @Test
+    public void tokenizeAllEmpty() {
+        assertTrue(dict.tokenizeAll(Collections.emptyList(), Tokenizer.SplitMode.C).isEmpty());
+    }
+
+    @Test
+    public void tokenizeAllStream() {
+        List<String> texts = texts(1000);
+        List<TokenizeResult> results = dict.tokenizeAll(texts.stream(), Tokenizer.SplitMode.C)
+                .collect(Collectors.toList());
+        assertResults(results, texts);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroSize() {
+        dict.createTokenizerPool(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNegativeScratchBytes() {
+        dict.createTokenizerPool(1, -1);
+    }
+}
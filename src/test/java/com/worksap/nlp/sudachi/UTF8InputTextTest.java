@@ -24,7 +24,11 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -216,6 +220,67 @@ public class UTF8InputTextTest {
         assertThat(input.getOriginalIndex(24), is(13));
     }
 
+    @Test
+    public void replaceBackward() {
+        builder.replace(10, 12, "土");
+        builder.replace(0, 1, "a");
+        builder.replace(1, 2, "b");
+        input = builder.build();
+        assertThat(input.getText(), is("abC1あ234漢字土アｺﾞ"));
+        assertThat(input.getOriginalIndex(1), is(1));
+        assertThat(input.getOriginalIndex(18), is(10));
+        assertThat(input.getOriginalIndex(21), is(12));
+    }
+
+    @Test
+    public void replaceAtEnd() {
+        builder.replace(15, 16, "ゴ");
+        builder.replace(14, 16, "ー");
+        input = builder.build();
+        assertThat(input.getText(), is("âｂC1あ234漢字𡈽アｺー"));
+        assertThat(input.getOriginalIndex(26), is(13));
+        assertThat(input.getOriginalIndex(29), is(14));
+        assertThat(input.getOriginalIndex(32), is(15));
+    }
+
+    @Test
+    public void replaceRandomly() {
+        String base = "あいうえおabcdeカキクケコ12345漢字";
+        String[] replacements = { "", "x", "ゔ", "yz", "ーー", "ABC" };
+        Random random = new Random(42);
+        for (int n = 0; n < 100; n++) {
+            builder.reset(base);
+            StringBuilder expectedText = new StringBuilder(base);
+            List<Integer> expectedOffsets = new ArrayList<>();
+            for (int i = 0; i <= base.length(); i++) {
+                expectedOffsets.add(i);
+            }
+            for (int m = 0; m < 10 && expectedText.length() > 0; m++) {
+                int begin = random.nextInt(expectedText.length());
+                int end = begin + 1 + random.nextInt(Math.min(3, expectedText.length() - begin));
+                String str = replacements[random.nextInt(replacements.length)];
+                builder.replace(begin, end, str);
+                expectedText.replace(begin, end, str);
+                int offset = expectedOffsets.get(begin);
+                expectedOffsets.subList(begin, end).clear();
+                expectedOffsets.addAll(begin, Collections.nCopies(str.length(), offset));
+                if (random.nextInt(4) == 0) {
+                    assertThat(builder.getText(), is(expectedText.toString()));
+                }
+            }
+            input = builder.build();
+            assertThat(input.getText(), is(expectedText.toString()));
+            for (int i = 0, j = 0; i <= expectedText.length(); i++) {
+                int length = (i < expectedText.length())
+                        ? expectedText.substring(i, i + 1).getBytes(StandardCharsets.UTF_8).length
+                        : 1;
+                for (int k = 0; k < length; k++, j++) {
+                    assertThat(input.getOriginalIndex(j), is(expectedOffsets.get(i)));
+                }
+            }
+        }
+    }
+
     @Test
     public void getByteLengthByCodePoints() {
         input = builder.build();
@@ -256,6 +321,68 @@ public class UTF8InputTextTest {
         assertTrue(input.canBow(23)); // ア
     }
 
+    @Test
+    public void getCharCategoryTypesOfRange() {
+        input = builder.build();
+        assertThat(input.getCharCategoryTypes(0, 6), hasItem(CategoryType.ALPHA));
+        assertThat(input.getCharCategoryTypes(7, 10), hasItem(CategoryType.HIRAGANA));
+        assertThat(input.getCharCategoryTypes(0, 7).isEmpty(), is(true));
+        assertThat(input.getCharCategoryTypes(6, 7), is(input.getCharCategoryTypes(6)));
+    }
+
+    @Test
+    public void resetBuilder() {
+        builder.replace(3, 4, "ｄ");
+        input = builder.build();
+        builder.reset("あいう");
+        assertThat(builder.getOriginalText(), is("あいう"));
+        assertThat(builder.getText(), is("あいう"));
+        UTF8InputText other = builder.build();
+        assertThat(other.getByteText().length, is(9));
+        assertThat(other.getOriginalIndex(9), is(3));
+        assertThat(other.getCharCategoryContinuousLength(0), is(9));
+        assertThat(other.getCharCategoryTypes(3), hasItem(CategoryType.HIRAGANA));
+
+        assertThat(input.getText(), is("âｂCｄあ234漢字𡈽アｺﾞ"));
+        assertThat(input.getOriginalIndex(8), is(3));
+        assertThat(input.getOriginalIndex(9), is(4));
+        assertThat(input.getCharCategoryTypes(0), hasItem(CategoryType.ALPHA));
+    }
+
+    @Test
+    public void isUnchanged() {
+        builder.begin(TEXT);
+        for (int i = 0; i < TEXT.length(); i += Character.charCount(TEXT.codePointAt(i))) {
+            builder.accept(TEXT.codePointAt(i), i);
+        }
+        builder.end();
+        assertTrue(builder.isUnchanged());
+
+        builder.begin(TEXT);
+        builder.accept('a', 0);
+        builder.end();
+        assertFalse(builder.isUnchanged());
+
+        builder.begin("ab");
+        builder.accept('a', 0);
+        builder.accept('c', 1);
+        builder.end();
+        assertFalse(builder.isUnchanged());
+
+        builder.begin("ab");
+        builder.accept('a', 0);
+        builder.accept('b', 0);
+        builder.end();
+        assertFalse(builder.isUnchanged());
+
+        builder.begin("ab");
+        builder.accept('a', 0);
+        builder.accept('b', 1);
+        builder.end();
+        builder.replace(0, 1, "a");
+        assertFalse(builder.isUnchanged());
+    }
+
     class MockGrammar implements Grammar {
         @Override
         public int getPartOfSpeechSize() {
@@ -115,4 +115,21 @@ public class UserDictionaryTest {
             assertThat(m.partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "カボス"));
         }
     }
+
+    @Test
+    public void userDefinedPosWithWordInfoCache() throws IOException {
+        String settings = COMMON_SETTINGS + USER_DICT2 + ", " + USER_DICT + "], \"wordInfoCacheSize\":100}";
+        try (Dictionary dict = new DictionaryFactory().create(path, settings)) {
+            Tokenizer tokenizer = dict.create();
+            for (int i = 0; i < 3; i++) {
+                List<Morpheme> morphs = tokenizer.tokenize("すだちかぼす");
+                assertThat(morphs.size(), is(2));
+                Morpheme m = morphs.get(0);
+                assertThat(m.partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "スダチ"));
+                m = morphs.get(1);
+                assertThat(m.partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "カボス"));
+            }
+            assertThat(dict.getWordInfoCache().getHitCount() > 0, is(true));
+        }
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CategoryTypeSetTest {
+
+    @Test
+    public void of() {
+        Set<CategoryType> set = CategoryTypeSet
+                .of(CategoryType.KATAKANA.getId() | CategoryType.ALPHA.getId() | CategoryType.NOOOVBOW.getId());
+        assertThat(set.size(), is(3));
+        assertThat(set.contains(CategoryType.ALPHA), is(true));
+        assertThat(set.contains(CategoryType.KANJI), is(false));
+        assertThat(set.contains("ALPHA"), is(false));
+        assertThat(new ArrayList<>(set),
+                is(Arrays.asList(CategoryType.ALPHA, CategoryType.KATAKANA, CategoryType.NOOOVBOW)));
+    }
+
+    @Test
+    public void empty() {
+        Set<CategoryType> set = CategoryTypeSet.of(0);
+        assertThat(set.isEmpty(), is(true));
+        assertThat(set.iterator().hasNext(), is(false));
+    }
+
+    @Test
+    public void toBits() {
+        int bits = CategoryTypeSet.toBits(EnumSet.of(CategoryType.KANJI, CategoryType.KANJINUMERIC));
+        assertThat(bits, is(CategoryType.KANJI.getId() | CategoryType.KANJINUMERIC.getId()));
+        assertThat(CategoryTypeSet.toBits(CategoryTypeSet.of(bits)), is(bits));
+    }
+
+    @Test
+    public void equalsToEnumSet() {
+        Set<CategoryType> set = CategoryTypeSet.of(CategoryType.KANJI.getId() | CategoryType.KANJINUMERIC.getId());
+        EnumSet<CategoryType> enumSet = EnumSet.of(CategoryType.KANJI, CategoryType.KANJINUMERIC);
+        assertThat(set.equals(enumSet), is(true));
+        assertThat(enumSet.equals(set), is(true));
+        assertThat(set.hashCode(), is(enumSet.hashCode()));
+        assertThat(set.containsAll(enumSet), is(true));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void add() {
+        CategoryTypeSet.of(0).add(CategoryType.ALPHA);
+    }
+}
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertThat;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.EnumSet;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -95,4 +96,42 @@ public class CharacterCategoryTest {
         CharacterCategory category = new CharacterCategory();
         category.readCharacterDefinition(inputFile.getPath());
     }
+
+    @Test
+    public void getCategoryTypeBits() throws IOException {
+        File inputFile = temporaryFolder.newFile();
+        try (FileWriter writer = new FileWriter(inputFile)) {
+            writer.write("0x0030..0x0039 NUMERIC\n");
+            writer.write("0x0035         KANJINUMERIC\n");
+            writer.write("0xFFF0..0x100FF SYMBOL\n");
+            writer.write("0x20000..0x2A6DF KANJI\n");
+        }
+        CharacterCategory category = new CharacterCategory();
+        category.readCharacterDefinition(inputFile.getPath());
+        int numeric = CategoryType.NUMERIC.getId();
+        int symbol = CategoryType.SYMBOL.getId();
+        int kanji = CategoryType.KANJI.getId();
+        int defaultId = CategoryType.DEFAULT.getId();
+        assertThat(category.getCategoryTypeBits(0x0030), is(numeric));
+        assertThat(category.getCategoryTypeBits(0x0035), is(numeric | CategoryType.KANJINUMERIC.getId()));
+        assertThat(category.getCategoryTypeBits(0x0041), is(defaultId));
+        assertThat(category.getCategoryTypeBits(0xFFFF), is(symbol));
+        assertThat(category.getCategoryTypeBits(0x10000), is(symbol));
+        assertThat(category.getCategoryTypeBits(0x100FF), is(symbol));
+        assertThat(category.getCategoryTypeBits(0x10100), is(defaultId));
+        assertThat(category.getCategoryTypeBits(0x1FFFF), is(defaultId));
+        assertThat(category.getCategoryTypeBits(0x20000), is(kanji));
+        assertThat(category.getCategoryTypeBits(0x2A6DF), is(kanji));
+        assertThat(category.getCategoryTypeBits(0x2A6E0), is(defaultId));
+        assertThat(category.getCategoryTypeBits(Character.MAX_CODE_POINT), is(defaultId));
+        assertThat(category.getCategoryTypeBits(Character.MAX_CODE_POINT + 1), is(defaultId));
+        assertThat(category.getCategoryTypeBits(-1), is(defaultId));
+    }
+
+    @Test
+    public void getCategoryTypeBitsWithoutDefinition() {
+        CharacterCategory category = new CharacterCategory();
+        assertThat(category.getCategoryTypeBits(0x0030), is(CategoryType.DEFAULT.getId()));
+        assertThat(category.getCategoryTypes(0x0030), is(EnumSet.of(CategoryType.DEFAULT)));
+    }
 }
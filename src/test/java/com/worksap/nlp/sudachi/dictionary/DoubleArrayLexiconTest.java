@@ -18,6 +18,8 @@ package com.worksap.nlp.sudachi.dictionary;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -60,6 +62,42 @@ public class DoubleArrayLexiconTest {
         assertEquals(0, results.size());
     }
 
+    @Test
+    public void isLookupTruncated() {
+        byte[] text = "東京都に".getBytes(StandardCharsets.UTF_8);
+        assertTrue(lexicon.isLookupTruncated(text, 9)); // に
+        assertTrue(lexicon.isLookupTruncated(text, 12));
+        assertFalse(lexicon.isLookupTruncated(text, 0));
+        assertTrue(lexicon.isLookupTruncated("東京".getBytes(StandardCharsets.UTF_8), 0));
+        assertFalse(lexicon.isLookupTruncated("あれ".getBytes(StandardCharsets.UTF_8), 0));
+    }
+
+    @Test
+    public void lookupWithSink() {
+        byte[] text = "東京都に行った東京府京都".getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < text.length; offset++) {
+            List<int[]> expected = iteratorToList(lexicon.lookup(text, offset));
+            List<int[]> results = new ArrayList<>();
+            int count = lexicon.lookup(text, offset, (wordId, end) -> results.add(new int[] { wordId, end }));
+            assertEquals(expected.size(), count);
+            assertEquals(expected.size(), results.size());
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(expected.get(i), results.get(i));
+            }
+        }
+
+        List<int[]> results = new ArrayList<>();
+        assertEquals(3, lexicon.lookup("東京都に".getBytes(StandardCharsets.UTF_8), 0,
+                (wordId, end) -> results.add(new int[] { wordId, end })));
+        assertArrayEquals(new int[] { 4, 3 }, results.get(0)); // 東
+        assertArrayEquals(new int[] { 5, 6 }, results.get(1)); // 東京
+        assertArrayEquals(new int[] { 6, 9 }, results.get(2)); // 東京都
+
+        assertEquals(0, lexicon.lookup("あれ".getBytes(StandardCharsets.UTF_8), 0, (wordId, end) -> {
+            throw new AssertionError();
+        }));
+    }
+
     @Test
     public void parameters() {
         // た
@@ -78,6 +116,23 @@ public class DoubleArrayLexiconTest {
         assertEquals(2914, lexicon.getCost(9));
     }
 
+    @Test
+    public void freeze() {
+        lexicon.freeze();
+        assertEquals(1, lexicon.getLeftId(0));
+        assertEquals(1, lexicon.getRightId(0));
+        assertEquals(8729, lexicon.getCost(0));
+        assertEquals(6, lexicon.getLeftId(6));
+        assertEquals(8, lexicon.getRightId(6));
+        assertEquals(5320, lexicon.getCost(6));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setCostAfterFreeze() {
+        lexicon.freeze();
+        lexicon.setCost(0, (short) 0);
+    }
+
     @Test
     public void wordInfo() {
         // た
@@ -108,6 +163,27 @@ public class DoubleArrayLexiconTest {
         assertArrayEquals(new int[] { 5, 9 }, wi.getWordStructure());
     }
 
+    @Test
+    public void wordInfoInReverseOrder() {
+        // 行っ
+        WordInfo wi = lexicon.getWordInfo(8);
+        assertArrayEquals(new int[0], wi.getWordStructure());
+        assertArrayEquals(new int[0], wi.getBunitSplit());
+        assertArrayEquals(new int[0], wi.getAunitSplit());
+        assertEquals("イッ", wi.getReadingForm());
+        assertEquals("行く", wi.getDictionaryForm());
+        assertEquals(7, wi.getDictionaryFormWordId());
+        assertEquals("行く", wi.getNormalizedForm());
+        assertEquals(6, wi.getLength());
+        assertEquals("行っ", wi.getSurface());
+
+        // 東京都
+        wi = lexicon.getWordInfo(6);
+        assertArrayEquals(new int[] { 5, 9 }, wi.getWordStructure());
+        assertEquals("東京都", wi.getSurface());
+        assertArrayEquals(new int[] { 5, 9 }, wi.getAunitSplit());
+    }
+
     @Test
     public void wordInfoWithLongWord() {
         // 0123456789 * 30
@@ -17,6 +17,8 @@
 package com.worksap.nlp.sudachi.dictionary;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -82,6 +84,41 @@ public class GrammarImplTest {
         assertEquals(300, grammar.getConnectCost((short) 0, (short) 0));
     }
 
+    @Test
+    public void freeze() {
+        grammar.setConnectCost((short) 0, (short) 0, (short) 300);
+        assertFalse(grammar.isFrozen());
+        FrozenGrammar frozen = grammar.freeze();
+        assertTrue(grammar.isFrozen());
+
+        assertEquals(3, frozen.getPartOfSpeechSize());
+        assertEquals("五段-サ行", frozen.getPartOfSpeechString((short) 2).get(4));
+        assertEquals(0, frozen.getPartOfSpeechId(Arrays.asList("BOS/EOS", "*", "*", "*", "*", "*")));
+        assertEquals(-1, frozen.getPartOfSpeechId(Arrays.asList("*", "*", "*", "*", "*", "*")));
+        for (short left = 0; left < 3; left++) {
+            for (short right = 0; right < 3; right++) {
+                assertEquals(grammar.getConnectCost(left, right), frozen.getConnectCost(left, right));
+            }
+        }
+        assertEquals(300, frozen.getConnectCost((short) 0, (short) 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setConnectCostAfterFreeze() {
+        grammar.freeze();
+        grammar.setConnectCost((short) 0, (short) 0, (short) 300);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setConnectCostOfFrozenGrammar() {
+        grammar.freeze().setConnectCost((short) 0, (short) 0, (short) 300);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void modifyPartOfSpeechOfFrozenGrammar() {
+        grammar.freeze().getPartOfSpeechString((short) 0).set(0, "*");
+    }
+
     @Test
     public void getBOSParameter() {
         assertEquals(0, grammar.getBOSParameter()[0]);
@@ -111,6 +148,13 @@ public class GrammarImplTest {
         assertEquals(1180, grammar.getConnectCost((short) 7, (short) 2));
         assertEquals(3319, grammar.getConnectCost((short) 5, (short) 7));
         assertEquals(470, grammar.storageSize());
+
+        FrozenGrammar frozen = grammar.freeze();
+        assertEquals(8, frozen.getPartOfSpeechSize());
+        assertEquals(-3361, frozen.getConnectCost((short) 1, (short) 1));
+        assertEquals(126, frozen.getConnectCost((short) 3, (short) 6));
+        assertEquals(1180, frozen.getConnectCost((short) 7, (short) 2));
+        assertEquals(3319, frozen.getConnectCost((short) 5, (short) 7));
     }
 
     void buildPartOfSpeech() {
@@ -17,6 +17,7 @@
 package com.worksap.nlp.sudachi.dictionary;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -26,6 +27,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -33,6 +35,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.worksap.nlp.sudachi.DictionaryFactory;
+import com.worksap.nlp.sudachi.Morpheme;
+import com.worksap.nlp.sudachi.Settings;
 import com.worksap.nlp.sudachi.Utils;
 
 public class UserDictionaryBuilderTest {
@@ -118,4 +123,80 @@ public class UserDictionaryBuilderTest {
             assertFalse(i.hasNext());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void commandLineWithComputingCosts() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/char.def", "/sudachi.json");
+        File inputFile = temporaryFolder.newFile();
+        try (FileWriter writer = new FileWriter(inputFile)) {
+            writer.write("ぴらる,8,8,-32768,ぴらる,名詞,普通名詞,一般,*,*,*,ピラル,ぴらる,*,A,*,*,*\n");
+            writer.write("市,-1,-1,0,市,名詞,普通名詞,一般,*,*,*,シ,市,*,A,*,*,*\n");
+        }
+        File settingsFile = new File(temporaryFolder.getRoot(), "sudachi.json");
+        File expectedFile = temporaryFolder.newFile();
+        UserDictionaryBuilder.main(
+                new String[] { "-o", expectedFile.getPath(), "-s", systemDictFile.getPath(), inputFile.getPath() });
+        File outputFile = temporaryFolder.newFile();
+        UserDictionaryBuilder
+                .main(new String[] { "-o", outputFile.getPath(), "-s", systemDictFile.getPath(), "-d", "test", "-c",
+                        "-r", settingsFile.getPath(), "-p", temporaryFolder.getRoot().getPath(), inputFile.getPath() });
+
+        short expectedCost;
+        try (BinaryDictionary expected = new BinaryDictionary(expectedFile.getPath());
+                com.worksap.nlp.sudachi.Dictionary dict = new DictionaryFactory()
+                        .create(temporaryFolder.getRoot().getPath(), "{\"userDict\":[]}", true)) {
+            assertThat(expected.getPrecomputedCosts(), is(nullValue()));
+            expected.getLexicon().calculateCost(dict.create());
+            expectedCost = expected.getLexicon().getCost(0);
+        }
+
+        try (BinaryDictionary dictionary = new BinaryDictionary(outputFile.getPath())) {
+            DictionaryHeader header = dictionary.getDictionaryHeader();
+            assertThat(header.getVersion(), is(DictionaryVersion.USER_DICT_VERSION_3));
+            assertThat(header.getDescription(), is("test"));
+
+            PrecomputedCosts costs = dictionary.getPrecomputedCosts();
+            assertThat(costs.size(), is(1));
+            long settingsChecksum = PrecomputedCosts
+                    .settingsChecksum(Settings.parseSettings(null, Utils.readAllResource("/sudachi.json")));
+            assertTrue(costs.isComputedWith(systemDict, settingsChecksum));
+            assertFalse(costs.isComputedWith(systemDict, settingsChecksum + 1));
+
+            DoubleArrayLexicon lexicon = dictionary.getLexicon();
+            assertThat(lexicon.size(), is(2));
+            assertThat(lexicon.getCost(0), is(Short.MIN_VALUE));
+            costs.applyTo(lexicon);
+            assertThat(lexicon.getCost(0), is(expectedCost));
+            assertThat(lexicon.getCost(1), is((short) 0));
+            assertThat(lexicon.getWordInfo(0).getSurface(), is("ぴらる"));
+        }
+
+        String settings = Utils.readAllResource("/sudachi.json").replace("user.dic", outputFile.getName());
+        try (com.worksap.nlp.sudachi.Dictionary dict = new DictionaryFactory()
+                .create(temporaryFolder.getRoot().getPath(), settings)) {
+            List<Morpheme> morphemes = dict.create().tokenize("ぴらる");
+            assertThat(morphemes.size(), is(1));
+            assertThat(morphemes.get(0).getDictionaryId(), is(1));
+        }
+    }
+
+    @Test
+    public void precomputedCostsWithOtherSystemDictionary() throws IOException {
+        Utils.copyResource(temporaryFolder.getRoot().toPath(), "/char.def", "/sudachi.json");
+        File settingsFile = new File(temporaryFolder.getRoot(), "sudachi.json");
+        File inputFile = temporaryFolder.newFile();
+        try (FileWriter writer = new FileWriter(inputFile)) {
+            writer.write("ぴらる,8,8,-32768,ぴらる,名詞,普通名詞,一般,*,*,*,ピラル,ぴらる,*,A,*,*,*\n");
+        }
+        File outputFile = temporaryFolder.newFile();
+        UserDictionaryBuilder.main(new String[] { "-o", outputFile.getPath(), "-s", systemDictFile.getPath(), "-c",
+                "-r", settingsFile.getPath(), "-p", temporaryFolder.getRoot().getPath(), inputFile.getPath() });
+        try (BinaryDictionary dictionary = new BinaryDictionary(outputFile.getPath());
+                BinaryDictionary other = new BinaryDictionary(outputFile.getPath())) {
+            long settingsChecksum = PrecomputedCosts
+                    .settingsChecksum(Settings.parseSettings(null, Utils.readAllResource("/sudachi.json")));
+            assertTrue(dictionary.getPrecomputedCosts().isComputedWith(systemDict, settingsChecksum));
+            assertFalse(dictionary.getPrecomputedCosts().isComputedWith(other, settingsChecksum));
+        }
+    }
+}